@@ -0,0 +1,83 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Lookups and re-indexing on a {@link MovieInfoNgramIndex} holding {@code size} generated movieInfos, with names of
+ * 2 to 4 words and casts of 3 to 6 members drawn from a vocabulary of 2000 words.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MovieInfoNgramIndexBenchmark {
+
+  @Param({"10000", "100000"})
+  private int size;
+
+  private MovieInfoNgramIndex ngramIndex;
+  private List<String> vocabulary;
+  private Random random;
+
+  @Setup
+  public void setUp() {
+    random = new Random(42);
+    vocabulary = IntStream.range(0, 2000).mapToObj(i -> word()).toList();
+    ngramIndex = new MovieInfoNgramIndex(15);
+    for (int i = 0; i < size; i++) {
+      ngramIndex.put(movieInfo(String.valueOf(i)));
+    }
+  }
+
+  @Benchmark
+  public List<MovieInfo> searchOneCharacter() {
+    return ngramIndex.search("k", 10);
+  }
+
+  @Benchmark
+  public List<MovieInfo> searchPrefix() {
+    return ngramIndex.search(vocabulary.get(7).substring(0, 3), 10);
+  }
+
+  @Benchmark
+  public List<MovieInfo> searchTwoWords() {
+    return ngramIndex.search(vocabulary.get(7) + " " + vocabulary.get(11).substring(0, 2), 10);
+  }
+
+  @Benchmark
+  public void put() {
+    ngramIndex.put(movieInfo(String.valueOf(random.nextInt(size))));
+  }
+
+  private MovieInfo movieInfo(String movieInfoId) {
+    var name = String.join(" ", words(2 + random.nextInt(3)));
+    var cast = IntStream.range(0, 3 + random.nextInt(4))
+        .mapToObj(i -> String.join(" ", words(2)))
+        .toList();
+    return new MovieInfo(movieInfoId, name, 2000 + random.nextInt(25), cast, LocalDate.of(2005, 6, 15));
+  }
+
+  private List<String> words(int count) {
+    return IntStream.range(0, count).mapToObj(i -> vocabulary.get(random.nextInt(vocabulary.size()))).toList();
+  }
+
+  private String word() {
+    var word = new StringBuilder();
+    for (int i = 0, length = 4 + random.nextInt(6); i < length; i++) {
+      word.append((char) ('a' + random.nextInt(26)));
+    }
+    return word.toString();
+  }
+}
@@ -0,0 +1,46 @@
+package com.reactivespring.config;
+
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import reactor.core.publisher.Flux;
+
+/**
+ * Creates the indexes declared on the {@link Document} classes (@Indexed, @CompoundIndex) once, at startup, instead of
+ * leaving auto-index-creation on or the queries to collection scans. It runs with the application runners, so before
+ * the application reports it is ready to accept traffic. Creating an index that already exists is a no-op, an index
+ * conflicting with an existing one or not created within {@code mongo.indexes.timeout} fails the startup.
+ */
+@Configuration
+@Slf4j
+public class MongoIndexConfig implements ApplicationRunner {
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final Duration timeout;
+
+  public MongoIndexConfig(ReactiveMongoTemplate mongoTemplate,
+                          @Value("${mongo.indexes.timeout:1m}") Duration timeout) {
+    this.mongoTemplate = mongoTemplate;
+    this.timeout = timeout;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    var mappingContext = mongoTemplate.getConverter().getMappingContext();
+    var indexResolver = new MongoPersistentEntityIndexResolver(mappingContext);
+    Flux.fromIterable(mappingContext.getPersistentEntities())
+        .filter(entity -> entity.isAnnotationPresent(Document.class))
+        .map(MongoPersistentEntity::getType)
+        .concatMap(type -> Flux.fromIterable(indexResolver.resolveIndexFor(type))
+            .concatMap(index -> mongoTemplate.indexOps(type).ensureIndex(index))
+            .doOnNext(name -> log.info("Index {} ensured on {}", name, mongoTemplate.getCollectionName(type))))
+        .blockLast(timeout);
+  }
+}
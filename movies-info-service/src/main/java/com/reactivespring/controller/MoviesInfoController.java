@@ -1,20 +1,36 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoImportResult;
+import com.reactivespring.service.MovieInfoBulkService;
+import com.reactivespring.service.MovieInfoSearchService;
 import com.reactivespring.service.MovieInfoService;
+import com.reactivespring.service.MovieInfoStreamService;
 import jakarta.validation.Valid;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -23,9 +39,28 @@ import reactor.core.publisher.Mono;
 public class MoviesInfoController {
 
   private MovieInfoService moviesInfoService;
+  private MovieInfoStreamService movieInfoStreamService;
+  private MovieInfoSearchService movieInfoSearchService;
+  private MovieInfoBulkService movieInfoBulkService;
+  private int defaultPageSize;
+  private int maxPageSize;
+  private int defaultSearchLimit;
+  private int maxSearchLimit;
 
-  public MoviesInfoController(MovieInfoService movieInfoService) {
+  public MoviesInfoController(MovieInfoService movieInfoService, MovieInfoStreamService movieInfoStreamService,
+      MovieInfoSearchService movieInfoSearchService, MovieInfoBulkService movieInfoBulkService,
+      @Value("${movieInfo.query.defaultPageSize:100}") int defaultPageSize,
+      @Value("${movieInfo.query.maxPageSize:1000}") int maxPageSize,
+      @Value("${movieInfo.search.defaultLimit:10}") int defaultSearchLimit,
+      @Value("${movieInfo.search.maxLimit:100}") int maxSearchLimit) {
     this.moviesInfoService = movieInfoService;
+    this.movieInfoStreamService = movieInfoStreamService;
+    this.movieInfoSearchService = movieInfoSearchService;
+    this.movieInfoBulkService = movieInfoBulkService;
+    this.defaultPageSize = defaultPageSize;
+    this.maxPageSize = maxPageSize;
+    this.defaultSearchLimit = defaultSearchLimit;
+    this.maxSearchLimit = maxSearchLimit;
   }
 
   @PostMapping("/movieInfos")
@@ -34,19 +69,121 @@ public class MoviesInfoController {
     return moviesInfoService.addMovieInfo(movieInfo).log();
   }
 
+  /**
+   * One page of movieInfos. When the page is full, the Link header points to the next one.
+   * {@code fields} restricts the fetched fields, e.g. {@code fields=name,year} leaves the cast lists in the database.
+   */
   @GetMapping("/movieInfos")
-  public Flux<MovieInfo> getAllMovieInfos(
-      @RequestParam(value = "year", required = false) Integer year) {
-    if (year != null) {
-      return moviesInfoService.getMovieByYear(year);
+  public Mono<ResponseEntity<List<MovieInfo>>> getAllMovieInfos(
+      @RequestParam(value = "year", required = false) Integer year,
+      @RequestParam(value = "after", required = false) String after,
+      @RequestParam(value = "limit", required = false) Integer limit,
+      @RequestParam(value = "sort", required = false) String sort,
+      @RequestParam(value = "fields", required = false) List<String> fields,
+      ServerHttpRequest request) {
+    if (limit != null && limit <= 0) {
+      return Mono.error(badRequest("limit must be positive : " + limit));
     }
-    return moviesInfoService.getAllMovieInfos();
+    var pageSize = limit == null ? defaultPageSize : Math.min(limit, maxPageSize);
+    return moviesInfoService.getMovieInfos(year, after, pageSize, sort, fields == null ? List.of() : fields)
+        .collectList()
+        .map(page -> {
+          var response = ResponseEntity.ok();
+          if (page.size() == pageSize) {
+            var next = UriComponentsBuilder.fromUri(request.getURI())
+                .replaceQueryParam("after", page.get(page.size() - 1).getMovieInfoId())
+                .replaceQueryParam("limit", pageSize)
+                .build()
+                .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+          }
+          return response.body(page);
+        });
   }
 
+  /**
+   * MovieInfos whose name or cast match {@code q}, best matches first.
+   */
+  @GetMapping("/movieInfos/search")
+  public Flux<MovieInfo> searchMovieInfos(@RequestParam("q") String query,
+      @RequestParam(value = "limit", required = false) Integer limit) {
+    if (query.isBlank()) {
+      return Flux.error(badRequest("q must not be blank"));
+    }
+    if (limit != null && limit <= 0) {
+      return Flux.error(badRequest("limit must be positive : " + limit));
+    }
+    return movieInfoSearchService.search(query.strip(),
+        limit == null ? defaultSearchLimit : Math.min(limit, maxSearchLimit));
+  }
+
+  /**
+   * Upserts the NDJSON movieInfos of the request body by movieInfoId, the body being read as the batches are written.
+   */
+  @PostMapping(value = "/movieInfos/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+  public Mono<MovieInfoImportResult> importMovieInfos(@RequestBody Flux<String> lines) {
+    return movieInfoBulkService.importMovieInfos(lines);
+  }
+
+  /**
+   * Every movieInfo as NDJSON, in movieInfoId order : the format of /movieInfos/import.
+   */
+  @GetMapping(value = "/movieInfos/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<MovieInfo> exportMovieInfos() {
+    return movieInfoBulkService.exportMovieInfos();
+  }
+
+  @PostMapping("/movieInfos/batch")
+  public Flux<MovieInfo> getMovieInfosByIds(@RequestBody List<String> movieIds) {
+    return moviesInfoService.getMovieInfosByIds(movieIds);
+  }
+
+  /**
+   * Inserted and updated MovieInfos, from now on or right after {@code resumeToken}.
+   */
+  @GetMapping(value = "/movieInfos/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<MovieInfo> streamMovieInfos(
+      @RequestParam(value = "resumeToken", required = false) String resumeToken) {
+    return movieInfoStreamService.events(resumeToken)
+        .filter(event -> event.getMovieInfo() != null)
+        .map(MovieInfoEvent::getMovieInfo);
+  }
+
+  /**
+   * Every change as a server-sent event : the event id is the resume token, so a reconnecting EventSource
+   * resumes on its own through the Last-Event-ID header.
+   */
+  @GetMapping(value = "/movieInfos/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public Flux<ServerSentEvent<MovieInfoEvent>> streamMovieInfoEvents(
+      @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+      @RequestParam(value = "resumeToken", required = false) String resumeToken) {
+    return movieInfoStreamService.events(resumeToken != null ? resumeToken : lastEventId)
+        .map(event -> ServerSentEvent.builder(event)
+            .id(event.getResumeToken())
+            .event(event.getType().name().toLowerCase())
+            .build());
+  }
+
+  /**
+   * The ETag header is the version of the movieInfo, to send back as If-Match with a PATCH.
+   */
   @GetMapping("/movieInfos/{movieId}")
   public Mono<ResponseEntity<MovieInfo>> getMovieInfoById(@PathVariable String movieId) {
     return moviesInfoService.getMovieInfoById(movieId)
-        .map(ResponseEntity.ok()::body)
+        .map(movieInfo -> ResponseEntity.ok().eTag(eTag(movieInfo)).body(movieInfo))
+        .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
+  }
+
+  /**
+   * Sets the fields of the body, the ones left out keep their value. With If-Match, the movieInfo is only updated
+   * while its version is one of the ETags, 412 otherwise.
+   */
+  @PatchMapping("/movieInfos/{movieId}")
+  public Mono<ResponseEntity<MovieInfo>> patchMovieInfo(@PathVariable String movieId,
+      @RequestBody MovieInfo changes,
+      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) List<String> ifMatch) {
+    return moviesInfoService.patchMovieInfo(movieId, changes, versions(ifMatch))
+        .map(movieInfo -> ResponseEntity.ok().eTag(eTag(movieInfo)).body(movieInfo))
         .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
   }
 
@@ -54,13 +191,57 @@ public class MoviesInfoController {
   public Mono<ResponseEntity<MovieInfo>> updateMovieInfo(@PathVariable String movieId,
       @RequestBody @Valid MovieInfo movieInfo) {
     return moviesInfoService.updateMovieInfo(movieId, movieInfo)
-        .map(ResponseEntity.ok()::body)
+        .map(updated -> ResponseEntity.ok().eTag(eTag(updated)).body(updated))
         .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
         .log();
   }
 
+  /**
+   * 204, or 404 when there was no such movieInfo.
+   */
   @DeleteMapping("/movieInfos/{movieId}")
-  public Mono<Void> deleteMovieInfo(@PathVariable String movieId) {
-    return moviesInfoService.deleteMovieInfo(movieId);
+  public Mono<ResponseEntity<Void>> deleteMovieInfo(@PathVariable String movieId) {
+    return moviesInfoService.deleteMovieInfo(movieId)
+        .map(deleted -> deleted ? ResponseEntity.noContent().<Void>build() : ResponseEntity.notFound().<Void>build());
+  }
+
+  /**
+   * MovieInfos written before versioning have no version : they are at version 0.
+   */
+  private static String eTag(MovieInfo movieInfo) {
+    return "\"" + (movieInfo.getVersion() == null ? 0L : movieInfo.getVersion()) + "\"";
+  }
+
+  /**
+   * @return the versions of the If-Match ETags, null without If-Match or with {@code *}. An ETag that is not a
+   * version matches no movieInfo.
+   */
+  private static List<Long> versions(List<String> ifMatch) {
+    if (ifMatch == null || ifMatch.isEmpty()) {
+      return null;
+    }
+    var versions = new ArrayList<Long>();
+    for (var header : ifMatch) {
+      for (var eTag : header.split(",")) {
+        var value = eTag.strip();
+        if (value.equals("*")) {
+          return null;
+        }
+        value = value.startsWith("W/") ? value.substring(2) : value;
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+          value = value.substring(1, value.length() - 1);
+        }
+        try {
+          versions.add(Long.valueOf(value));
+        } catch (NumberFormatException ex) {
+          // never matches
+        }
+      }
+    }
+    return versions;
+  }
+
+  private static ResponseStatusException badRequest(String reason) {
+    return new ResponseStatusException(HttpStatus.BAD_REQUEST, reason);
   }
 }
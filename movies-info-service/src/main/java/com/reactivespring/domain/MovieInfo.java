@@ -1,5 +1,6 @@
 package com.reactivespring.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -9,22 +10,43 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Document
+// findByYear and findByName run on the prefix of these, the pages sorted on a field (either order) on the whole index
+@CompoundIndex(name = "year_id", def = "{'year': 1, '_id': 1}")
+@CompoundIndex(name = "name_id", def = "{'name': 1, '_id': 1}")
+@CompoundIndex(name = "releaseDate_id", def = "{'releaseDate': 1, '_id': 1}")
+// the search by name prefix, case-insensitive : MovieInfoSearchService queries it with the same collation
+@CompoundIndex(name = "name_ci", def = "{'name': 1}", collation = "{'locale': 'en', 'strength': 2}")
 public class MovieInfo {
 
   @Id
   private String movieInfoId;
   @NotBlank(message = "movieInfo.name must not be blank")
+  @TextIndexed(weight = 2)
   private String name;
   @NotNull
   @Positive(message = "movieInfo.year must be a Positive value")
   private Integer year; //the movie year released
 
+  @TextIndexed
   private List<@NotBlank(message = "movieInfo.cast must be present") String> cast;
   private LocalDate releaseDate;
+  /**
+   * Incremented by every write of the movieInfo, sent as its ETag.
+   */
+  @Version
+  @JsonIgnore
+  private Long version;
+
+  public MovieInfo(String movieInfoId, String name, Integer year, List<String> cast, LocalDate releaseDate) {
+    this(movieInfoId, name, year, cast, releaseDate, null);
+  }
 }
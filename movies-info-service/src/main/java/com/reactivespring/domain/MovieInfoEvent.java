@@ -0,0 +1,26 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A change of the movieInfo collection. {@code movieInfo} is null for deletes, {@code resumeToken} is opaque
+ * and lets a client reconnect right after this event.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovieInfoEvent {
+
+  public enum Type {
+    INSERT,
+    UPDATE,
+    DELETE
+  }
+
+  private String resumeToken;
+  private Type type;
+  private String movieInfoId;
+  private MovieInfo movieInfo;
+}
@@ -0,0 +1,49 @@
+package com.reactivespring.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of a POST /v1/movieInfos/import.
+ */
+@Data
+@NoArgsConstructor
+public class MovieInfoImportResult {
+
+  /**
+   * Non-blank lines read.
+   */
+  private long received;
+  private long inserted;
+  /**
+   * MovieInfos replaced, changed or not.
+   */
+  private long updated;
+  /**
+   * Written with an unacknowledged write concern : whether they were inserted or updated is unknown.
+   */
+  private long unacknowledged;
+  /**
+   * Malformed, invalid or refused by the database.
+   */
+  private long rejected;
+  /**
+   * The first rejected lines, at most {@code movieInfo.import.maxErrors} of them.
+   */
+  private List<LineError> errors = new ArrayList<>();
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class LineError {
+
+    /**
+     * 1-based line number in the request body.
+     */
+    private long line;
+    private String message;
+  }
+}
@@ -3,6 +3,8 @@ package com.reactivespring.exception;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -25,4 +27,13 @@ public class GlobalExceptionHandler {
     return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
   }
 
+  /**
+   * A concurrent write changed the movieInfo since it was read, or its movieInfoId is taken already.
+   */
+  @ExceptionHandler({OptimisticLockingFailureException.class, DuplicateKeyException.class})
+  public ResponseEntity<String> handleConflict(RuntimeException ex) {
+    log.error("Exception: {} ", ex.getMessage(), ex);
+    return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+  }
+
 }
@@ -0,0 +1,207 @@
+package com.reactivespring.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent.Type;
+import com.reactivespring.domain.MovieInfoImportResult;
+import com.reactivespring.domain.MovieInfoImportResult.LineError;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * NDJSON import and export of the movieInfos.
+ * <p>
+ * An import upserts by movieInfoId. Every line is parsed and validated on its own. The valid movieInfos are written in
+ * batches of {@code batchSize}, one unordered bulk of upserting replacements per batch, with the {@code writeConcern}
+ * write concern. A replacement increments the version of the movieInfo, so the ETags read before the import no longer
+ * match. The next batch is only read from the request body once the previous one is written, so a slow
+ * database slows the upload down instead of filling up the memory. A database failure fails the import : it can be
+ * run again, except for the movieInfos without a movieInfoId, which get a new one every time.
+ * <p>
+ * An export streams the collection in movieInfoId order, {@code export.batchSize} documents per cursor batch, read as
+ * the client consumes them. Importing an export restores the same movieInfos.
+ */
+@Service
+public class MovieInfoBulkService {
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final MovieInfoStreamService movieInfoStreamService;
+  private final ObjectMapper objectMapper;
+  private final Validator validator;
+  private final int batchSize;
+  private final WriteConcern writeConcern;
+  private final int maxErrors;
+  private final int exportBatchSize;
+
+  public MovieInfoBulkService(ReactiveMongoTemplate mongoTemplate, MovieInfoStreamService movieInfoStreamService,
+      ObjectMapper objectMapper, Validator validator,
+      @Value("${movieInfo.import.batchSize:1000}") int batchSize,
+      @Value("${movieInfo.import.writeConcern:ACKNOWLEDGED}") String writeConcern,
+      @Value("${movieInfo.import.maxErrors:100}") int maxErrors,
+      @Value("${movieInfo.export.batchSize:1000}") int exportBatchSize) {
+    this.mongoTemplate = mongoTemplate;
+    this.movieInfoStreamService = movieInfoStreamService;
+    this.objectMapper = objectMapper;
+    this.validator = validator;
+    this.batchSize = batchSize;
+    this.writeConcern = WriteConcern.valueOf(writeConcern);
+    if (this.writeConcern == null) {
+      throw new IllegalArgumentException("Unknown write concern : " + writeConcern);
+    }
+    this.maxErrors = maxErrors;
+    this.exportBatchSize = exportBatchSize;
+  }
+
+  public Mono<MovieInfoImportResult> importMovieInfos(Flux<String> lines) {
+    return Mono.defer(() -> {
+      // only updated from concatMap, one batch at a time
+      var result = new MovieInfoImportResult();
+      return lines.index((index, line) -> parse(index + 1, line))
+          .filter(line -> line.movieInfo() != null || line.error() != null)
+          .buffer(batchSize)
+          .concatMap(batch -> write(batch, result), 1)
+          .then(Mono.fromSupplier(() -> result));
+    });
+  }
+
+  public Flux<MovieInfo> exportMovieInfos() {
+    return mongoTemplate.find(new Query()
+        .with(Sort.by(MovieInfoService.ID))
+        .cursorBatchSize(exportBatchSize), MovieInfo.class);
+  }
+
+  private Line parse(long number, String json) {
+    if (json.isBlank()) {
+      return new Line(number, null, null);
+    }
+    MovieInfo movieInfo;
+    try {
+      movieInfo = objectMapper.readValue(json, MovieInfo.class);
+    } catch (JsonProcessingException ex) {
+      return new Line(number, null, "malformed movieInfo : " + ex.getOriginalMessage());
+    }
+    var violations = validator.validate(movieInfo);
+    if (!violations.isEmpty()) {
+      return new Line(number, null, violations.stream()
+          .map(ConstraintViolation::getMessage)
+          .sorted()
+          .collect(Collectors.joining(",")));
+    }
+    if (movieInfo.getMovieInfoId() == null) {
+      movieInfo.setMovieInfoId(new ObjectId().toHexString());
+    }
+    return new Line(number, movieInfo, null);
+  }
+
+  private Mono<Void> write(List<Line> batch, MovieInfoImportResult result) {
+    result.setReceived(result.getReceived() + batch.size());
+    batch.stream()
+        .filter(line -> line.error() != null)
+        .forEach(line -> reject(result, line.number(), line.error()));
+    var valid = batch.stream()
+        .filter(line -> line.movieInfo() != null)
+        .toList();
+    if (valid.isEmpty()) {
+      return Mono.empty();
+    }
+    var replacements = valid.stream()
+        .map(line -> replacement(line.movieInfo()))
+        .toList();
+
+    return mongoTemplate.getCollection(mongoTemplate.getCollectionName(MovieInfo.class))
+        .flatMap(collection -> Mono.from(collection.withWriteConcern(writeConcern)
+            .bulkWrite(replacements, new BulkWriteOptions().ordered(false))))
+        .map(bulkWriteResult -> new BatchOutcome(bulkWriteResult, List.of()))
+        .onErrorResume(MongoBulkWriteException.class,
+            ex -> Mono.just(new BatchOutcome(ex.getWriteResult(), ex.getWriteErrors())))
+        .doOnNext(outcome -> record(valid, outcome, result))
+        .then();
+  }
+
+  /**
+   * The whole movieInfo as an update rather than a replacement document, which could not increment the version :
+   * every field is set, or unset when absent from the line.
+   */
+  private UpdateOneModel<Document> replacement(MovieInfo movieInfo) {
+    var document = new Document();
+    mongoTemplate.getConverter().write(movieInfo, document);
+    var id = document.remove("_id");
+    document.remove(MovieInfoService.VERSION);
+    var unset = new Document();
+    MovieInfoService.PROJECTABLE_FIELDS.stream()
+        .filter(field -> !field.equals(MovieInfoService.ID) && !document.containsKey(field))
+        .forEach(field -> unset.append(field, ""));
+    var update = new Document("$set", document).append("$inc", new Document(MovieInfoService.VERSION, 1L));
+    if (!unset.isEmpty()) {
+      update.append("$unset", unset);
+    }
+    return new UpdateOneModel<>(Filters.eq("_id", id), update, new UpdateOptions().upsert(true));
+  }
+
+  /**
+   * Counts the batch and feeds the in-process change feed, as the single writes of {@link MovieInfoService} do.
+   */
+  private void record(List<Line> valid, BatchOutcome outcome, MovieInfoImportResult result) {
+    var errors = new HashMap<Integer, String>();
+    outcome.writeErrors().forEach(error -> errors.put(error.getIndex(), error.getMessage()));
+    var acknowledged = outcome.writeResult().wasAcknowledged();
+    Set<Integer> inserted = acknowledged
+        ? outcome.writeResult().getUpserts().stream().map(BulkWriteUpsert::getIndex).collect(Collectors.toSet())
+        : Set.of();
+    if (acknowledged) {
+      result.setInserted(result.getInserted() + inserted.size());
+      result.setUpdated(result.getUpdated() + outcome.writeResult().getMatchedCount());
+    } else {
+      result.setUnacknowledged(result.getUnacknowledged() + valid.size());
+    }
+    for (int i = 0; i < valid.size(); i++) {
+      var line = valid.get(i);
+      var error = errors.get(i);
+      if (error != null) {
+        reject(result, line.number(), error);
+      } else {
+        movieInfoStreamService.publish(inserted.contains(i) ? Type.INSERT : Type.UPDATE,
+            line.movieInfo().getMovieInfoId(), line.movieInfo());
+      }
+    }
+  }
+
+  private void reject(MovieInfoImportResult result, long line, String message) {
+    result.setRejected(result.getRejected() + 1);
+    if (result.getErrors().size() < maxErrors) {
+      result.getErrors().add(new LineError(line, message));
+    }
+  }
+
+  /**
+   * A parsed line : the valid movieInfo, or why it is rejected, or neither for a blank line.
+   */
+  private record Line(long number, MovieInfo movieInfo, String error) {
+  }
+
+  private record BatchOutcome(BulkWriteResult writeResult, List<BulkWriteError> writeErrors) {
+  }
+}
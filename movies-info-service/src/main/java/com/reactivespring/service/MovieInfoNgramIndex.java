@@ -0,0 +1,300 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory autocomplete index over the name and cast of the movieInfos.
+ * <p>
+ * Every word is indexed under its edge n-grams (its prefixes, up to {@code maxGram} characters) and every query word
+ * has to be the prefix of a word of the name or of the cast. A movieInfo scores, per query word, 2 when it prefixes a
+ * name word and 1 when it only prefixes a cast word, plus 1 when the name starts with the whole query. Equal scores
+ * are ordered by name.
+ * <p>
+ * The movieInfos of an n-gram fall in three tiers : names starting with the n-gram, other name words, cast words
+ * only. The short n-grams, shared by a large part of the movieInfos, keep each tier sorted by name so that a one-word
+ * query, the autocomplete case, reads its first {@code limit} movieInfos whatever the size of the index. The longer
+ * n-grams, only shared by a few movieInfos, are sorted at lookup time instead, which keeps indexing cheap. A longer
+ * query scans the tiers of its rarest word and stops at the first tier that cannot beat the movieInfos found so far.
+ * <p>
+ * Writes are serialized, lookups run concurrently with them and may see a movieInfo half re-indexed.
+ */
+public class MovieInfoNgramIndex {
+
+  static final double NAME_WEIGHT = 2.0;
+  static final double CAST_WEIGHT = 1.0;
+  static final double NAME_PREFIX_BONUS = 1.0;
+  static final int SORTED_GRAM_LENGTH = 2;
+
+  private static final int NAME_PREFIX = 0;
+  private static final int NAME = 1;
+  private static final int CAST = 2;
+  private static final double[] TIER_WEIGHTS = {NAME_WEIGHT, NAME_WEIGHT, CAST_WEIGHT};
+  private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private final int maxGram;
+  private final Map<String, Postings> postings = new ConcurrentHashMap<>();
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  public MovieInfoNgramIndex(int maxGram) {
+    if (maxGram <= 0) {
+      throw new IllegalArgumentException("maxGram must be positive : " + maxGram);
+    }
+    this.maxGram = maxGram;
+  }
+
+  public synchronized void put(MovieInfo movieInfo) {
+    var movieInfoId = movieInfo.getMovieInfoId();
+    remove(movieInfoId);
+
+    var normalizedName = normalize(movieInfo.getName());
+    var nameWords = words(movieInfo.getName());
+    var castWords = movieInfo.getCast() == null ? List.<String>of()
+        : movieInfo.getCast().stream().flatMap(member -> words(member).stream()).toList();
+    var tiers = new HashMap<String, Integer>();
+    castWords.forEach(word -> addGrams(tiers, word, CAST));
+    nameWords.forEach(word -> addGrams(tiers, word, NAME));
+    tiers.replaceAll((gram, tier) -> tier == NAME && normalizedName.startsWith(gram) ? NAME_PREFIX : tier);
+
+    var entry = new Entry(movieInfo, new SortKey(normalizedName, movieInfoId), tiers, nameWords, castWords);
+    tiers.forEach((gram, tier) -> postings.computeIfAbsent(gram, Postings::new).add(entry.key(), tier));
+    entries.put(movieInfoId, entry);
+  }
+
+  public synchronized void remove(String movieInfoId) {
+    var entry = entries.remove(movieInfoId);
+    if (entry == null) {
+      return;
+    }
+    entry.tiers().forEach((gram, tier) -> postings.computeIfPresent(gram,
+        (key, gramPostings) -> gramPostings.remove(entry.key(), tier) ? null : gramPostings));
+  }
+
+  /**
+   * @return at most {@code limit} movieInfos matching every word of {@code query}, best ranked first.
+   */
+  public List<MovieInfo> search(String query, int limit) {
+    var queryWords = words(query);
+    if (queryWords.isEmpty() || limit <= 0) {
+      return List.of();
+    }
+    var queryPostings = new ArrayList<Postings>(queryWords.size());
+    for (var word : queryWords) {
+      var gramPostings = postings.get(gram(word));
+      if (gramPostings == null) {
+        return List.of();
+      }
+      queryPostings.add(gramPostings);
+    }
+    if (queryWords.size() == 1 && queryWords.get(0).length() <= maxGram) {
+      return firstOfTiers(queryPostings.get(0), limit);
+    }
+    return topScored(query, queryWords, queryPostings, limit);
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * One-word query : the tiers rank exactly as the scores (3, 2, 1), names order each tier.
+   */
+  private List<MovieInfo> firstOfTiers(Postings gramPostings, int limit) {
+    var results = new ArrayList<MovieInfo>(limit);
+    for (int tier = NAME_PREFIX; tier <= CAST; tier++) {
+      for (var key : gramPostings.sortedTier(tier)) {
+        var entry = entries.get(key.movieInfoId());
+        if (entry != null) {
+          results.add(entry.movieInfo());
+          if (results.size() == limit) {
+            return results;
+          }
+        }
+      }
+    }
+    return results;
+  }
+
+  private List<MovieInfo> topScored(String query, List<String> queryWords, List<Postings> queryPostings, int limit) {
+    var driver = 0;
+    for (int i = 1; i < queryPostings.size(); i++) {
+      if (queryPostings.get(i).size < queryPostings.get(driver).size) {
+        driver = i;
+      }
+    }
+    var otherWordsMax = NAME_WEIGHT * (queryWords.size() - 1);
+    var normalizedQuery = normalize(query);
+    var hitOrder = Comparator.comparingDouble(Hit::score).reversed().thenComparing(Hit::key);
+    // worst of the best hits at the head
+    var best = new PriorityQueue<Hit>(limit + 1, hitOrder.reversed());
+
+    for (int tier = NAME_PREFIX; tier <= CAST; tier++) {
+      var bonusPossible = tier == NAME_PREFIX || driver != 0;
+      var tierMax = TIER_WEIGHTS[tier] + otherWordsMax + (bonusPossible ? NAME_PREFIX_BONUS : 0);
+      if (best.size() == limit && tierMax < best.peek().score()) {
+        break;
+      }
+      for (var key : queryPostings.get(driver).tier(tier)) {
+        var entry = entries.get(key.movieInfoId());
+        if (entry == null) {
+          continue;
+        }
+        var score = score(entry, queryWords);
+        if (score == 0) {
+          continue;
+        }
+        if (key.name().startsWith(normalizedQuery)) {
+          score += NAME_PREFIX_BONUS;
+        }
+        best.add(new Hit(entry.movieInfo(), key, score));
+        if (best.size() > limit) {
+          best.poll();
+        }
+      }
+    }
+    return best.stream().sorted(hitOrder).map(Hit::movieInfo).toList();
+  }
+
+  /**
+   * Sum of the weight per query word, 0 when a word matches nothing.
+   */
+  private static double score(Entry entry, List<String> queryWords) {
+    var score = 0.0;
+    for (var word : queryWords) {
+      var weight = weight(entry, word);
+      if (weight == 0) {
+        return 0;
+      }
+      score += weight;
+    }
+    return score;
+  }
+
+  private static double weight(Entry entry, String word) {
+    for (var nameWord : entry.nameWords()) {
+      if (nameWord.startsWith(word)) {
+        return NAME_WEIGHT;
+      }
+    }
+    for (var castWord : entry.castWords()) {
+      if (castWord.startsWith(word)) {
+        return CAST_WEIGHT;
+      }
+    }
+    return 0;
+  }
+
+  private void addGrams(Map<String, Integer> tiers, String word, int tier) {
+    for (int length = 1; length <= Math.min(word.length(), maxGram); length++) {
+      tiers.merge(word.substring(0, length), tier, Math::min);
+    }
+  }
+
+  private String gram(String word) {
+    return word.length() <= maxGram ? word : word.substring(0, maxGram);
+  }
+
+  private static List<String> words(String text) {
+    if (text == null) {
+      return List.of();
+    }
+    return Arrays.stream(WORD_SEPARATOR.split(normalize(text)))
+        .filter(word -> !word.isEmpty())
+        .toList();
+  }
+
+  private static String normalize(String text) {
+    return text == null ? "" : text.toLowerCase(Locale.ROOT).strip();
+  }
+
+  /**
+   * The movieInfos of one n-gram, by tier : kept sorted by name for the short n-grams, sorted on lookup otherwise.
+   */
+  private static class Postings {
+
+    private final NavigableSet<SortKey>[] sortedTiers;
+    private final Map<SortKey, Integer> tiers;
+    private volatile int size;
+
+    @SuppressWarnings("unchecked")
+    Postings(String gram) {
+      if (gram.length() <= SORTED_GRAM_LENGTH) {
+        sortedTiers = new NavigableSet[] {
+            new ConcurrentSkipListSet<>(), new ConcurrentSkipListSet<>(), new ConcurrentSkipListSet<>()};
+        tiers = null;
+      } else {
+        sortedTiers = null;
+        tiers = new ConcurrentHashMap<>();
+      }
+    }
+
+    void add(SortKey key, int tier) {
+      if (sortedTiers != null) {
+        sortedTiers[tier].add(key);
+      } else {
+        tiers.put(key, tier);
+      }
+      size++;
+    }
+
+    /**
+     * @return whether no movieInfo is left.
+     */
+    boolean remove(SortKey key, int tier) {
+      if (sortedTiers != null) {
+        sortedTiers[tier].remove(key);
+      } else {
+        tiers.remove(key);
+      }
+      return --size == 0;
+    }
+
+    Iterable<SortKey> tier(int tier) {
+      if (sortedTiers != null) {
+        return sortedTiers[tier];
+      }
+      return () -> tiers.entrySet().stream()
+          .filter(keyTier -> keyTier.getValue() == tier)
+          .map(Map.Entry::getKey)
+          .iterator();
+    }
+
+    Iterable<SortKey> sortedTier(int tier) {
+      if (sortedTiers != null) {
+        return sortedTiers[tier];
+      }
+      return () -> tiers.entrySet().stream()
+          .filter(keyTier -> keyTier.getValue() == tier)
+          .map(Map.Entry::getKey)
+          .sorted()
+          .iterator();
+    }
+  }
+
+  private record SortKey(String name, String movieInfoId) implements Comparable<SortKey> {
+
+    @Override
+    public int compareTo(SortKey other) {
+      var byName = name.compareTo(other.name);
+      return byName != 0 ? byName : movieInfoId.compareTo(other.movieInfoId);
+    }
+  }
+
+  private record Entry(MovieInfo movieInfo, SortKey key, Map<String, Integer> tiers, List<String> nameWords,
+      List<String> castWords) {
+  }
+
+  private record Hit(MovieInfo movieInfo, SortKey key, double score) {
+  }
+}
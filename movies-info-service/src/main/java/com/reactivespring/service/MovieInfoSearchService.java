@@ -0,0 +1,113 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoEvent.Type;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Search of the movieInfos by name and cast.
+ * <p>
+ * By default the search runs on MongoDB : the movieInfos whose name starts with the query, whatever the case, come
+ * first. The prefix is a range of the case-insensitive name_ci index, [query, query + U+FFFF) in its collation where
+ * U+FFFF sorts after every character, so only the matching keys are scanned (a case-insensitive regex scans them all).
+ * Then come the full-text matches of the name and cast words ranked by text score (served by the text index).
+ * <p>
+ * With {@code movieInfo.search.ngram.enabled} the search runs on a {@link MovieInfoNgramIndex} instead, once it is
+ * loaded : every query word is a prefix of a name or cast word, answered from memory. The index is loaded from the
+ * collection at startup and kept up to date from {@link MovieInfoStreamService}, so it only sees the writes of this
+ * instance when change streams are unavailable.
+ */
+@Service
+@Slf4j
+public class MovieInfoSearchService {
+
+  /**
+   * The collation of the name_ci index, a query only uses the index with the very same collation.
+   */
+  static final Collation NAME_COLLATION = Collation.of("en").strength(2);
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final MovieInfoStreamService movieInfoStreamService;
+  private final MovieInfoNgramIndex ngramIndex;
+  private final AtomicBoolean ngramIndexLoaded = new AtomicBoolean();
+  private Disposable ngramIndexRefresh;
+
+  public MovieInfoSearchService(ReactiveMongoTemplate mongoTemplate, MovieInfoStreamService movieInfoStreamService,
+      @Value("${movieInfo.search.ngram.enabled:false}") boolean ngramEnabled,
+      @Value("${movieInfo.search.ngram.maxGram:15}") int maxGram) {
+    this.mongoTemplate = mongoTemplate;
+    this.movieInfoStreamService = movieInfoStreamService;
+    this.ngramIndex = ngramEnabled ? new MovieInfoNgramIndex(maxGram) : null;
+  }
+
+  public Flux<MovieInfo> search(String query, int limit) {
+    if (ngramIndexLoaded.get()) {
+      return Flux.defer(() -> Flux.fromIterable(ngramIndex.search(query, limit)));
+    }
+    var prefixQuery = Query.query(Criteria.where("name").gte(query).lt(query + '\uffff'))
+        .collation(NAME_COLLATION)
+        .with(Sort.by("name"))
+        .limit(limit);
+    var textQuery = TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(query))
+        .sortByScore()
+        .limit(limit);
+    return mongoTemplate.find(prefixQuery, MovieInfo.class)
+        .concatWith(mongoTemplate.find(textQuery, MovieInfo.class))
+        .distinct(MovieInfo::getMovieInfoId)
+        .take(limit);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void startNgramIndex() {
+    if (ngramIndex == null || ngramIndexRefresh != null) {
+      return;
+    }
+    // the feed is subscribed before the collection is read, so no change made meanwhile is missed
+    ngramIndexRefresh = Flux.defer(() -> Flux.merge(
+            movieInfoStreamService.events(null).doOnNext(this::apply).then(),
+            mongoTemplate.findAll(MovieInfo.class)
+                .doOnNext(ngramIndex::put)
+                .then(Mono.fromRunnable(() -> {
+                  ngramIndexLoaded.set(true);
+                  log.info("Search index loaded : {} movieInfos", ngramIndex.size());
+                }))))
+        .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+            .maxBackoff(Duration.ofSeconds(30))
+            .doBeforeRetry(signal -> log.warn("Reloading the search index after : {}", signal.failure().getMessage())))
+        .subscribe();
+  }
+
+  @PreDestroy
+  public void stopNgramIndex() {
+    if (ngramIndexRefresh != null) {
+      ngramIndexRefresh.dispose();
+    }
+  }
+
+  private void apply(MovieInfoEvent event) {
+    if (event.getType() == Type.DELETE) {
+      ngramIndex.remove(event.getMovieInfoId());
+    } else if (event.getMovieInfo() != null) {
+      ngramIndex.put(event.getMovieInfo());
+    }
+  }
+}
@@ -1,55 +1,224 @@
 package com.reactivespring.service;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent.Type;
 import com.reactivespring.repository.IMovieInfoRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
 public class MovieInfoService {
 
+  static final String ID = "movieInfoId";
+  static final String VERSION = "version";
+  static final Set<String> SORTABLE_FIELDS = Set.of(ID, "name", "year", "releaseDate");
+  static final Set<String> PROJECTABLE_FIELDS = Set.of(ID, "name", "year", "cast", "releaseDate");
 
   private IMovieInfoRepository movieInfoRepository;
+  private MovieInfoStreamService movieInfoStreamService;
+  private ReactiveMongoTemplate mongoTemplate;
+  private Validator validator;
 
-  public MovieInfoService(IMovieInfoRepository movieInfoRepository){
+  public MovieInfoService(IMovieInfoRepository movieInfoRepository, MovieInfoStreamService movieInfoStreamService,
+      ReactiveMongoTemplate mongoTemplate, Validator validator){
     this.movieInfoRepository = movieInfoRepository;
+    this.movieInfoStreamService = movieInfoStreamService;
+    this.mongoTemplate = mongoTemplate;
+    this.validator = validator;
   }
 
 
   public Mono<MovieInfo> addMovieInfo(MovieInfo movieInfo){
-    return movieInfoRepository.save(movieInfo);
+    return movieInfoRepository.save(movieInfo)
+        .doOnNext(saved -> movieInfoStreamService.publish(Type.INSERT, saved.getMovieInfoId(), saved));
   }
 
 
-  public Flux<MovieInfo> getAllMovieInfos() {
-    return movieInfoRepository.findAll().log();
+  /**
+   * One page of movieInfos, ordered by {@code sort} then movieInfoId, starting right after the movieInfo
+   * {@code after}.
+   *
+   * @param year   only the movieInfos of that year, null for all of them
+   * @param after  movieInfoId of the last movieInfo of the previous page, null for the first page
+   * @param limit  page size
+   * @param sort   field to sort on, prefixed with '-' for a descending order, null to sort on movieInfoId
+   * @param fields fields to fetch, movieInfoId is always fetched, empty for every field
+   */
+  public Flux<MovieInfo> getMovieInfos(Integer year, String after, int limit, String sort, List<String> fields) {
+    var direction = sort != null && sort.startsWith("-") ? Direction.DESC : Direction.ASC;
+    var sortField = sort == null ? ID : sort.substring(direction == Direction.DESC ? 1 : 0);
+    if (!SORTABLE_FIELDS.contains(sortField)) {
+      return Flux.error(badRequest("sort must be one of " + SORTABLE_FIELDS + " : " + sort));
+    }
+    var unknownFields = fields.stream().filter(field -> !PROJECTABLE_FIELDS.contains(field)).toList();
+    if (!unknownFields.isEmpty()) {
+      return Flux.error(badRequest("fields must be among " + PROJECTABLE_FIELDS + " : " + unknownFields));
+    }
+
+    var query = new Query()
+        .with(Sort.by(direction, sortField).and(Sort.by(direction, ID)))
+        .limit(limit);
+    if (year != null) {
+      query.addCriteria(Criteria.where("year").is(year));
+    }
+    if (!fields.isEmpty()) {
+      query.fields().include(ID).include(fields.toArray(String[]::new));
+    }
+
+    var keyset = after == null ? Mono.just(query) : afterCriteria(after, sortField, direction).map(query::addCriteria);
+    return keyset.flatMapMany(pageQuery -> mongoTemplate.find(pageQuery, MovieInfo.class));
+  }
+
+  /**
+   * Everything sorting after the cursor movieInfo : a greater sort value, or the same one with a greater
+   * movieInfoId. Only the sort field of the cursor is fetched.
+   */
+  private Mono<Criteria> afterCriteria(String after, String sortField, Direction direction) {
+    if (ID.equals(sortField)) {
+      return Mono.just(direction == Direction.ASC ? Criteria.where(ID).gt(after) : Criteria.where(ID).lt(after));
+    }
+    var cursorQuery = Query.query(Criteria.where(ID).is(after));
+    cursorQuery.fields().include(sortField);
+    return mongoTemplate.findOne(cursorQuery, Document.class, mongoTemplate.getCollectionName(MovieInfo.class))
+        .switchIfEmpty(Mono.error(() -> badRequest("Unknown cursor : " + after)))
+        .map(cursor -> {
+          var value = cursor.get(sortField);
+          var sameValue = new Criteria().andOperator(Criteria.where(sortField).is(value),
+              direction == Direction.ASC ? Criteria.where(ID).gt(after) : Criteria.where(ID).lt(after));
+          // null (or missing) values come first in ascending order, and a range never matches them
+          if (value == null) {
+            return direction == Direction.ASC
+                ? new Criteria().orOperator(Criteria.where(sortField).ne(null), sameValue)
+                : sameValue;
+          }
+          var nextValues = direction == Direction.ASC
+              ? Criteria.where(sortField).gt(value)
+              : new Criteria().orOperator(Criteria.where(sortField).lt(value), Criteria.where(sortField).is(null));
+          return new Criteria().orOperator(nextValues, sameValue);
+        });
   }
 
   public Mono<MovieInfo> getMovieInfoById(String movieId) {
     return movieInfoRepository.findById(movieId).log();
   }
 
+  public Flux<MovieInfo> getMovieInfosByIds(List<String> movieIds) {
+    return movieInfoRepository.findAllById(movieIds).log();
+  }
+
+  /**
+   * The fields of {@code updateMovieInfo} replace the stored ones, null ones being unset, with one findAndModify
+   * incrementing the version as {@link #patchMovieInfo} does : a movieInfo written before versioning is updated too.
+   *
+   * @return the updated movieInfo, empty when it does not exist.
+   */
   public Mono<MovieInfo> updateMovieInfo(String movieId, MovieInfo updateMovieInfo) {
+    var update = new Update().inc(VERSION, 1L);
+    setOrUnset(update, "name", updateMovieInfo.getName());
+    setOrUnset(update, "year", updateMovieInfo.getYear());
+    setOrUnset(update, "cast", updateMovieInfo.getCast());
+    setOrUnset(update, "releaseDate", updateMovieInfo.getReleaseDate());
+    return mongoTemplate.findAndModify(Query.query(Criteria.where(ID).is(movieId)), update,
+            FindAndModifyOptions.options().returnNew(true), MovieInfo.class)
+        .doOnNext(saved -> movieInfoStreamService.publish(Type.UPDATE, saved.getMovieInfoId(), saved));
+  }
 
-   return movieInfoRepository.findById(movieId)
-        .flatMap(movieInfo -> {
-          movieInfo.setMovieInfoId(updateMovieInfo.getMovieInfoId());
-          movieInfo.setYear(updateMovieInfo.getYear());
-          movieInfo.setCast(updateMovieInfo.getCast());
-          movieInfo.setReleaseDate(updateMovieInfo.getReleaseDate());
-          movieInfo.setName(updateMovieInfo.getName());
-          return movieInfoRepository.save(movieInfo);
-        });
+  private static void setOrUnset(Update update, String field, Object value) {
+    if (value != null) {
+      update.set(field, value);
+    } else {
+      update.unset(field);
+    }
+  }
+
+  /**
+   * Sets the non-null fields of {@code changes} and increments the version with one findAndModify : no
+   * read-modify-write, concurrent patches are applied one after the other and none is lost.
+   *
+   * @param expectedVersions the movieInfo is only updated while at one of these versions, null for any version
+   * @return the patched movieInfo, empty when it does not exist, a 412 when it is at another version.
+   */
+  public Mono<MovieInfo> patchMovieInfo(String movieId, MovieInfo changes, List<Long> expectedVersions) {
+    var fields = new ArrayList<String>();
+    var update = new Update().inc(VERSION, 1L);
+    setIfPresent(update, fields, "name", changes.getName());
+    setIfPresent(update, fields, "year", changes.getYear());
+    setIfPresent(update, fields, "cast", changes.getCast());
+    setIfPresent(update, fields, "releaseDate", changes.getReleaseDate());
+    if (fields.isEmpty()) {
+      return Mono.error(badRequest("at least one of " + PROJECTABLE_FIELDS + " other than " + ID + " is required"));
+    }
+    var violations = fields.stream()
+        .flatMap(field -> validator.validateProperty(changes, field).stream())
+        .map(ConstraintViolation::getMessage)
+        .sorted()
+        .collect(Collectors.joining(","));
+    if (!violations.isEmpty()) {
+      return Mono.error(badRequest(violations));
+    }
+
+    var criteria = Criteria.where(ID).is(movieId);
+    if (expectedVersions != null) {
+      var version = Criteria.where(VERSION).in(expectedVersions);
+      if (expectedVersions.contains(0L)) {
+        // movieInfos written before versioning have none, they are at version 0
+        version = new Criteria().orOperator(version, Criteria.where(VERSION).is(null));
+      }
+      criteria = new Criteria().andOperator(criteria, version);
+    }
+    return mongoTemplate.findAndModify(Query.query(criteria), update, FindAndModifyOptions.options().returnNew(true),
+            MovieInfo.class)
+        .switchIfEmpty(Mono.defer(() -> expectedVersions == null
+            ? Mono.empty()
+            : movieInfoRepository.existsById(movieId)
+                .flatMap(exists -> exists
+                    ? Mono.error(new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+                        "MovieInfo " + movieId + " does not match If-Match"))
+                    : Mono.empty())))
+        .doOnNext(patched -> movieInfoStreamService.publish(Type.UPDATE, patched.getMovieInfoId(), patched));
+  }
+
+  private static void setIfPresent(Update update, List<String> fields, String field, Object value) {
+    if (value != null) {
+      update.set(field, value);
+      fields.add(field);
+    }
   }
 
-  public Mono<Void> deleteMovieInfo(String movieId) {
-    return movieInfoRepository
-        .deleteById(movieId)
+  /**
+   * One deleteOne, its deleted count telling whether the movieInfo existed.
+   *
+   * @return whether a movieInfo was deleted.
+   */
+  public Mono<Boolean> deleteMovieInfo(String movieId) {
+    return mongoTemplate.remove(Query.query(Criteria.where(ID).is(movieId)), MovieInfo.class)
+        .map(deleteResult -> deleteResult.getDeletedCount() > 0)
+        .doOnNext(deleted -> {
+          if (deleted) {
+            movieInfoStreamService.publish(Type.DELETE, movieId, null);
+          }
+        })
         .log();
   }
 
-  public Flux<MovieInfo> getMovieByYear(Integer year) {
-    return movieInfoRepository.findByYear(year).log();
+  private static ResponseStatusException badRequest(String reason) {
+    return new ResponseStatusException(HttpStatus.BAD_REQUEST, reason);
   }
 }
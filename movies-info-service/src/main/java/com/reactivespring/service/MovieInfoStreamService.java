@@ -0,0 +1,172 @@
+package com.reactivespring.service;
+
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Live feed of the movieInfo changes.
+ * <p>
+ * On a replica set the feed is a MongoDB change stream, so writes from every instance (or straight to the database)
+ * are seen. Live subscribers share a single change stream, a subscriber resuming from a token gets its own change
+ * stream opened with resumeAfter, bounded by the oplog window.
+ * <p>
+ * On a standalone server (change streams unavailable) the feed is an in-process replay sink fed by
+ * {@link MovieInfoService}, holding the last {@code replaySize} events : only the writes of this instance are seen
+ * and a token older than the replay window resumes from its oldest event. Its tokens are a sequence number prefixed
+ * with an epoch drawn at startup, a token of a previous run (or of another instance) counts as older than the window.
+ * <p>
+ * A subscriber falling more than {@code bufferSize} events behind is disconnected, it can reconnect with the token
+ * of the last event it received.
+ */
+@Service
+@Slf4j
+public class MovieInfoStreamService {
+
+  public enum Source {
+    AUTO,
+    CHANGE_STREAM,
+    SINK
+  }
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final int bufferSize;
+  private final Mono<Boolean> changeStreamsAvailable;
+  private final Flux<MovieInfoEvent> liveChangeStream;
+  private final Sinks.Many<MovieInfoEvent> sink;
+  private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+  private final AtomicLong sequence = new AtomicLong();
+
+  public MovieInfoStreamService(ReactiveMongoTemplate mongoTemplate,
+      @Value("${movieInfo.stream.source:AUTO}") Source source,
+      @Value("${movieInfo.stream.replaySize:1000}") int replaySize,
+      @Value("${movieInfo.stream.bufferSize:256}") int bufferSize) {
+    this.mongoTemplate = mongoTemplate;
+    this.bufferSize = bufferSize;
+    this.sink = Sinks.many().replay().limit(replaySize);
+    this.liveChangeStream = changeStream(null).publish().refCount();
+    this.changeStreamsAvailable = switch (source) {
+      case CHANGE_STREAM -> Mono.just(true);
+      case SINK -> Mono.just(false);
+      // a failed probe (Mongo not up yet) is not cached, the next subscriber probes again
+      case AUTO -> isReplicaSet().cache(replicaSet -> Duration.ofMillis(Long.MAX_VALUE), ex -> Duration.ZERO,
+          () -> Duration.ZERO);
+    };
+  }
+
+  /**
+   * @param resumeToken token of the last event received, null to only receive the changes made from now on.
+   */
+  public Flux<MovieInfoEvent> events(String resumeToken) {
+    return changeStreamsAvailable
+        .flatMapMany(available -> {
+          if (!available) {
+            return sinkEvents(resumeToken);
+          }
+          return resumeToken == null ? liveChangeStream : changeStream(decodeChangeStreamToken(resumeToken));
+        })
+        .onBackpressureBuffer(bufferSize);
+  }
+
+  /**
+   * Feeds the in-process sink. Serialized, so sequence numbers are emitted in order.
+   */
+  public synchronized void publish(MovieInfoEvent.Type type, String movieInfoId, MovieInfo movieInfo) {
+    var event = new MovieInfoEvent(epoch + "." + sequence.incrementAndGet(), type, movieInfoId, movieInfo);
+    sink.emitNext(event, Sinks.EmitFailureHandler.FAIL_FAST);
+  }
+
+  private Flux<MovieInfoEvent> sinkEvents(String resumeToken) {
+    return Flux.defer(() -> {
+      var after = resumeToken == null ? sequence.get() : decodeSequence(resumeToken);
+      return sink.asFlux()
+          .filter(event -> decodeSequence(event.getResumeToken()) > after);
+    });
+  }
+
+  private Flux<MovieInfoEvent> changeStream(BsonValue resumeAfter) {
+    return Flux.defer(() -> mongoTemplate.changeStream(MovieInfo.class)
+        .withOptions(options -> {
+          options.fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+          if (resumeAfter != null) {
+            options.resumeAfter(resumeAfter);
+          }
+        })
+        .watchCollection(MovieInfo.class)
+        .listen())
+        .filter(event -> toType(event.getOperationType()) != null)
+        .map(this::toEvent);
+  }
+
+  private MovieInfoEvent toEvent(ChangeStreamEvent<MovieInfo> changeStreamEvent) {
+    var resumeToken = Base64.getUrlEncoder()
+        .encodeToString(changeStreamEvent.getResumeToken().asDocument().toJson().getBytes(StandardCharsets.UTF_8));
+    var id = changeStreamEvent.getRaw().getDocumentKey().get("_id");
+    var movieInfoId = id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+    return new MovieInfoEvent(resumeToken, toType(changeStreamEvent.getOperationType()), movieInfoId,
+        changeStreamEvent.getBody());
+  }
+
+  private static MovieInfoEvent.Type toType(OperationType operationType) {
+    return switch (operationType) {
+      case INSERT -> MovieInfoEvent.Type.INSERT;
+      case UPDATE, REPLACE -> MovieInfoEvent.Type.UPDATE;
+      case DELETE -> MovieInfoEvent.Type.DELETE;
+      default -> null;
+    };
+  }
+
+  private Mono<Boolean> isReplicaSet() {
+    return Mono.defer(() -> mongoTemplate.executeCommand(new Document("isMaster", 1)))
+        .map(reply -> reply.containsKey("setName"))
+        .doOnNext(replicaSet -> log.info("MovieInfo stream backed by {}",
+            replicaSet ? "MongoDB change streams" : "an in-process sink, change streams need a replica set"));
+  }
+
+  private static BsonValue decodeChangeStreamToken(String resumeToken) {
+    try {
+      return BsonDocument.parse(new String(Base64.getUrlDecoder().decode(resumeToken), StandardCharsets.UTF_8));
+    } catch (RuntimeException ex) {
+      throw invalidToken(resumeToken);
+    }
+  }
+
+  /**
+   * @return the sequence number of the token, 0 (older than the replay window) for a token of another epoch.
+   */
+  private long decodeSequence(String resumeToken) {
+    var separator = resumeToken.indexOf('.');
+    if (separator <= 0) {
+      throw invalidToken(resumeToken);
+    }
+    try {
+      var tokenSequence = Long.parseLong(resumeToken.substring(separator + 1));
+      return epoch.equals(resumeToken.substring(0, separator)) ? tokenSequence : 0;
+    } catch (NumberFormatException ex) {
+      throw invalidToken(resumeToken);
+    }
+  }
+
+  private static ResponseStatusException invalidToken(String resumeToken) {
+    return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid resume token : " + resumeToken);
+  }
+}
@@ -0,0 +1,90 @@
+package com.reactivespring.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.reactivespring.domain.MovieInfoImportResult;
+import com.reactivespring.repository.IMovieInfoRepository;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+/**
+ * Imports then exports 1M generated movieInfos, streamed both ways : run by {@code ./gradlew throughputTest}, whose
+ * heap is capped so that buffering the upload or the export fails the test.
+ */
+@Tag("throughput")
+@Slf4j
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient(timeout = "PT10M")
+class MovieInfoImportThroughputIntgTest {
+
+  static final int COUNT = 1_000_000;
+
+  @Autowired
+  IMovieInfoRepository movieInfoRepository;
+
+  @Autowired
+  WebTestClient webTestClient;
+
+  @AfterEach
+  void tearDown() {
+    movieInfoRepository.deleteAll().block(Duration.ofMinutes(5));
+  }
+
+  @Test
+  void importThenExportOneMillionMovieInfos() {
+    //given
+    var lines = Flux.range(0, COUNT)
+        .map(i -> "{\"movieInfoId\": \"" + String.format("%07d", i) + "\", \"name\": \"Movie " + i
+            + "\", \"year\": " + (1950 + i % 75) + ", \"cast\": [\"Actor " + i % 1000 + "\", \"Actor "
+            + (i + 1) % 1000 + "\"], \"releaseDate\": \"2005-06-15\"}\n");
+
+    //when
+    var start = System.nanoTime();
+    var result = webTestClient.post()
+        .uri("/v1/movieInfos/import")
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .body(lines, String.class)
+        .exchange()
+        .expectStatus()
+        .is2xxSuccessful()
+        .expectBody(MovieInfoImportResult.class)
+        .returnResult()
+        .getResponseBody();
+    var importSeconds = (System.nanoTime() - start) / 1e9;
+
+    start = System.nanoTime();
+    var exported = webTestClient.get()
+        .uri("/v1/movieInfos/export")
+        .exchange()
+        .expectStatus()
+        .is2xxSuccessful()
+        .returnResult(String.class)
+        .getResponseBody()
+        .count()
+        .block();
+    var exportSeconds = (System.nanoTime() - start) / 1e9;
+
+    //then
+    log.info("Imported {} movieInfos in {} s ({} /s), exported them in {} s ({} /s)", COUNT,
+        String.format("%.1f", importSeconds), Math.round(COUNT / importSeconds),
+        String.format("%.1f", exportSeconds), Math.round(COUNT / exportSeconds));
+    assertNotNull(result);
+    assertEquals(COUNT, result.getReceived());
+    assertEquals(COUNT, result.getInserted());
+    assertEquals(0, result.getRejected());
+    assertEquals(COUNT, exported);
+  }
+}
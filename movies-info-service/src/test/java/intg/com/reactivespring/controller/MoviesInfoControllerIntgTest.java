@@ -1,9 +1,14 @@
 package com.reactivespring.controller;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoImportResult;
 import com.reactivespring.repository.IMovieInfoRepository;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
+import org.bson.Document;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,9 +16,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.test.StepVerifier;
 
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -26,6 +36,9 @@ class MoviesInfoControllerIntgTest {
   @Autowired
   WebTestClient webTestClient;
 
+  @Autowired
+  ReactiveMongoTemplate mongoTemplate;
+
   static String MOVIES_INFO_URL = "/v1/movieInfos";
 
   @BeforeEach
@@ -96,6 +109,155 @@ class MoviesInfoControllerIntgTest {
         .hasSize(1);
   }
 
+  @Test
+  void getMovieInfos_keysetPages() {
+    //given
+    var firstPage = UriComponentsBuilder
+        .fromUriString(MOVIES_INFO_URL)
+        .queryParam("limit", 2)
+        .queryParam("sort", "-year")
+        .buildAndExpand().toUri();
+
+    //when
+    var link = webTestClient
+        .get()
+        .uri(firstPage)
+        .exchange()
+        .expectStatus().is2xxSuccessful()
+        .expectBody()
+        .jsonPath("$[0].movieInfoId").isEqualTo("3")
+        .jsonPath("$[1].movieInfoId").isEqualTo("2")
+        .returnResult()
+        .getResponseHeaders()
+        .getFirst("Link");
+
+    //then
+    assert link != null;
+    var nextPage = link.substring(1, link.indexOf('>'));
+    webTestClient
+        .get()
+        .uri(nextPage)
+        .exchange()
+        .expectStatus().is2xxSuccessful()
+        .expectHeader().doesNotExist("Link")
+        .expectBody()
+        .jsonPath("$.length()").isEqualTo(1)
+        .jsonPath("$[0].movieInfoId").isEqualTo("1");
+  }
+
+  @Test
+  void getMovieInfos_projection() {
+    var URI = UriComponentsBuilder
+        .fromUriString(MOVIES_INFO_URL)
+        .queryParam("fields", "name,year")
+        .buildAndExpand().toUri();
+
+    webTestClient
+        .get()
+        .uri(URI)
+        .exchange()
+        .expectStatus().is2xxSuccessful()
+        .expectBody()
+        .jsonPath("$[0].movieInfoId").isEqualTo("1")
+        .jsonPath("$[0].name").isEqualTo("Batman Begins")
+        .jsonPath("$[0].year").isEqualTo(2005)
+        .jsonPath("$[0].cast").doesNotExist()
+        .jsonPath("$[0].releaseDate").doesNotExist();
+  }
+
+  @Test
+  void getMovieInfos_unknownField() {
+    webTestClient
+        .get()
+        .uri(MOVIES_INFO_URL.concat("?fields=budget"))
+        .exchange()
+        .expectStatus().isBadRequest();
+  }
+
+  @Test
+  void searchMovieInfos() {
+    //name prefix first, then the text matches of the name and cast words
+    webTestClient
+        .get()
+        .uri(MOVIES_INFO_URL.concat("/search?q=dark"))
+        .exchange()
+        .expectStatus().is2xxSuccessful()
+        .expectBody()
+        .jsonPath("$.length()").isEqualTo(2)
+        .jsonPath("$[0].movieInfoId").isEqualTo("3");
+
+    webTestClient
+        .get()
+        .uri(MOVIES_INFO_URL.concat("/search?q=hardy"))
+        .exchange()
+        .expectStatus().is2xxSuccessful()
+        .expectBody()
+        .jsonPath("$.length()").isEqualTo(1)
+        .jsonPath("$[0].name").isEqualTo("Dark Knight Rises");
+  }
+
+  @Test
+  void importMovieInfos() {
+    //given
+    var body = "{\"movieInfoId\": \"3\", \"name\": \"The Dark Knight Rises\", \"year\": 2012}\n"
+        + "{\"movieInfoId\": \"4\", \"name\": \"Inception\", \"year\": 2010, \"releaseDate\": \"2010-07-16\"}\n"
+        + "{\"movieInfoId\": \"5\", \"name\": \"\", \"year\": 2014}\n";
+
+    //when
+    webTestClient.post()
+        .uri(MOVIES_INFO_URL + "/import")
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .bodyValue(body)
+        .exchange()
+        .expectStatus()
+        .is2xxSuccessful()
+        .expectBody(MovieInfoImportResult.class)
+        .value(result -> {
+          assertEquals(3, result.getReceived());
+          assertEquals(1, result.getInserted());
+          assertEquals(1, result.getUpdated());
+          assertEquals(1, result.getRejected());
+          assertEquals(3, result.getErrors().get(0).getLine());
+        });
+
+    //then
+    StepVerifier.create(movieInfoRepository.findById("3").map(MovieInfo::getName))
+        .expectNext("The Dark Knight Rises")
+        .verifyComplete();
+    StepVerifier.create(movieInfoRepository.findById("4").map(MovieInfo::getReleaseDate))
+        .expectNext(LocalDate.parse("2010-07-16"))
+        .verifyComplete();
+  }
+
+  @Test
+  void exportMovieInfos() {
+    //when
+    var movieInfos = webTestClient.get()
+        .uri(MOVIES_INFO_URL + "/export")
+        .exchange()
+        .expectStatus()
+        .is2xxSuccessful()
+        .returnResult(MovieInfo.class)
+        .getResponseBody();
+
+    //then
+    StepVerifier.create(movieInfos.map(MovieInfo::getMovieInfoId))
+        .expectNext("1", "2", "3")
+        .verifyComplete();
+  }
+
+  @Test
+  void getMovieInfosByIds() {
+    webTestClient
+        .post()
+        .uri(MOVIES_INFO_URL.concat("/batch"))
+        .bodyValue(List.of("1", "3", "12"))
+        .exchange()
+        .expectStatus().is2xxSuccessful()
+        .expectBodyList(MovieInfo.class)
+        .hasSize(2);
+  }
+
   @Test
   void getMovieInfoById() {
     String movieId = "1";
@@ -161,6 +323,61 @@ class MoviesInfoControllerIntgTest {
         .jsonPath("$.name").isEqualTo("Batman Begins1")
         .jsonPath("$.year").isEqualTo(2008);
   }
+  @Test
+  void patchMovieInfo_ifMatch() {
+    var changes = new MovieInfo(null, null, 2006, null, null);
+    webTestClient
+        .patch()
+        .uri(MOVIES_INFO_URL.concat("/1"))
+        .header(HttpHeaders.IF_MATCH, "\"0\"")
+        .bodyValue(changes)
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectHeader()
+        .valueEquals(HttpHeaders.ETAG, "\"1\"")
+        .expectBody()
+        .jsonPath("$.name").isEqualTo("Batman Begins")
+        .jsonPath("$.year").isEqualTo(2006);
+
+    // a client still holding version 0 does not overwrite the patch
+    webTestClient
+        .patch()
+        .uri(MOVIES_INFO_URL.concat("/1"))
+        .header(HttpHeaders.IF_MATCH, "\"0\"")
+        .bodyValue(new MovieInfo(null, null, 2007, null, null))
+        .exchange()
+        .expectStatus()
+        .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+    StepVerifier.create(movieInfoRepository.findById("1"))
+        .expectNextMatches(movieInfo -> movieInfo.getYear() == 2006 && movieInfo.getVersion() == 1L)
+        .verifyComplete();
+  }
+
+  @Test
+  void updateMovieInfo_storedWithoutVersion() {
+    mongoTemplate.insert(new Document("_id", "legacy").append("name", "Batman Begins").append("year", 2005),
+        "movieInfo").block();
+    var movie = new MovieInfo("legacy", "Batman Begins1", 2008, List.of("Christian Bale"), null);
+    webTestClient
+        .put()
+        .uri(MOVIES_INFO_URL.concat("/legacy"))
+        .bodyValue(movie)
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectHeader()
+        .valueEquals(HttpHeaders.ETAG, "\"1\"")
+        .expectBody()
+        .jsonPath("$.name").isEqualTo("Batman Begins1")
+        .jsonPath("$.cast[0]").isEqualTo("Christian Bale");
+
+    StepVerifier.create(movieInfoRepository.findById("legacy"))
+        .expectNextMatches(movieInfo -> movieInfo.getYear() == 2008 && movieInfo.getVersion() == 1L)
+        .verifyComplete();
+  }
+
   @Test
   void updateMovieInfo_notFound() {
     String movieId = "12";
@@ -184,7 +401,7 @@ class MoviesInfoControllerIntgTest {
             .concat(movieId))
         .exchange()
         .expectStatus()
-        .is2xxSuccessful();
+        .isNoContent();
 
     webTestClient
         .get()
@@ -193,5 +410,42 @@ class MoviesInfoControllerIntgTest {
         .expectStatus().is2xxSuccessful()
         .expectBodyList(MovieInfo.class)
         .hasSize(2);
+
+    webTestClient.delete()
+        .uri(MOVIES_INFO_URL.concat("/")
+            .concat(movieId))
+        .exchange()
+        .expectStatus()
+        .isNotFound();
+  }
+
+  @Test
+  void streamMovieInfos() {
+    var movieInfo = new MovieInfo(null, "Batman Begins1", 2005, List.of("Christian Bale", "Michael Cane"),
+        LocalDate.parse("2005-06-15"));
+
+    var movieInfoStream = webTestClient
+        .get()
+        .uri(MOVIES_INFO_URL.concat("/stream"))
+        .accept(MediaType.APPLICATION_NDJSON)
+        .exchange()
+        .expectStatus()
+        .is2xxSuccessful()
+        .returnResult(MovieInfo.class)
+        .getResponseBody();
+
+    StepVerifier.create(movieInfoStream)
+        .then(() -> webTestClient.post()
+            .uri(MOVIES_INFO_URL)
+            .bodyValue(movieInfo)
+            .exchange()
+            .expectStatus()
+            .isCreated())
+        .assertNext(streamed -> {
+          assert streamed.getMovieInfoId() != null;
+          assertEquals("Batman Begins1", streamed.getName());
+        })
+        .thenCancel()
+        .verify(Duration.ofSeconds(10));
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,137 @@
+package com.reactivespring.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.reactivespring.config.MongoIndexConfig;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.service.MovieInfoSearchService;
+import com.reactivespring.service.MovieInfoService;
+import java.time.LocalDate;
+import java.util.List;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+
+/**
+ * Profiles the queries the repository, the movieInfos pages and the search actually send : none may fall back to a
+ * collection scan.
+ */
+@DataMongoTest
+@ActiveProfiles("test")
+@Import(MongoIndexConfig.class)
+class IMovieInfoRepositoryIndexIntgTest {
+
+  @Autowired
+  ReactiveMongoTemplate mongoTemplate;
+
+  @Autowired
+  IMovieInfoRepository movieInfoRepository;
+
+  MovieInfoService movieInfoService;
+
+  @BeforeEach
+  void setUp() {
+    movieInfoService = new MovieInfoService(movieInfoRepository, null, mongoTemplate, null);
+    movieInfoRepository.saveAll(List.of(
+            new MovieInfo("1", "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15")),
+            new MovieInfo("2", "The Dark Knight", 2008, List.of("Christian Bale"), LocalDate.parse("2008-07-18")),
+            new MovieInfo("3", "Dark Knight Rises", 2012, List.of("Christian Bale"), LocalDate.parse("2012-07-20"))))
+        .blockLast();
+  }
+
+  @AfterEach
+  void tearDown() {
+    movieInfoRepository.deleteAll().block();
+  }
+
+  @Test
+  void findByYear() {
+    assertNoCollectionScan(profile(movieInfoRepository.findByYear(2005)));
+  }
+
+  @Test
+  void findByName() {
+    assertNoCollectionScan(profile(movieInfoRepository.findByName("Batman Begins")));
+  }
+
+  @Test
+  void pageSortedOnId() {
+    assertNoCollectionScan(profile(movieInfoService.getMovieInfos(null, "1", 10, null, List.of())));
+  }
+
+  @Test
+  void pageOfYearSortedOnId() {
+    assertNoCollectionScan(profile(movieInfoService.getMovieInfos(2005, "1", 10, null, List.of())));
+  }
+
+  @Test
+  void pagesSortedOnField() {
+    for (var field : List.of("name", "year", "releaseDate")) {
+      for (var sort : List.of(field, "-" + field)) {
+        // the first page, then the page after a cursor (its sort value is read by _id)
+        assertNoCollectionScan(profile(movieInfoService.getMovieInfos(null, null, 10, sort, List.of())));
+        assertNoCollectionScan(profile(movieInfoService.getMovieInfos(null, "2", 10, sort, List.of())));
+      }
+    }
+  }
+
+  @Test
+  void searchByNamePrefix() {
+    //when
+    var profiled = profile(new MovieInfoSearchService(mongoTemplate, null, false, 15).search("dark kn", 10));
+
+    //then : the prefix query scanned the name_ci keys of "Dark Knight Rises" only
+    var prefixQuery = profiled.stream()
+        .filter(query -> query.get("command", Document.class).containsKey("collation"))
+        .findFirst()
+        .orElseThrow();
+    assertEquals("IXSCAN { name: 1 }", prefixQuery.getString("planSummary"));
+    assertEquals(1, prefixQuery.getInteger("nreturned"));
+    // a case-insensitive regex examines every key of the index
+    assertTrue(prefixQuery.getInteger("keysExamined") <= 2, prefixQuery::toJson);
+  }
+
+  @Test
+  void searchByText() {
+    assertNoCollectionScan(profile(new MovieInfoSearchService(mongoTemplate, null, false, 15).search("bale", 10)));
+  }
+
+  /**
+   * Runs {@code queries} with the profiler on.
+   *
+   * @return the profiled reads of the movieInfo collection.
+   */
+  private List<Document> profile(Publisher<?> queries) {
+    mongoTemplate.executeCommand(new Document("profile", 2)).block();
+    try {
+      Flux.from(queries).blockLast();
+    } finally {
+      mongoTemplate.executeCommand(new Document("profile", 0)).block();
+    }
+    var profiled = mongoTemplate.find(Query.query(Criteria.where("ns").regex("\\.movieInfo$").and("op").is("query")),
+            Document.class, "system.profile")
+        .collectList()
+        .block();
+    mongoTemplate.dropCollection("system.profile").block();
+    assert profiled != null;
+    return profiled;
+  }
+
+  private static void assertNoCollectionScan(List<Document> profiled) {
+    assertFalse(profiled.isEmpty(), "no query profiled");
+    profiled.forEach(query -> assertFalse(query.getString("planSummary").contains("COLLSCAN"),
+        () -> query.get("command", Document.class).toJson() + " scans the collection : " + query.getString("planSummary")));
+  }
+}
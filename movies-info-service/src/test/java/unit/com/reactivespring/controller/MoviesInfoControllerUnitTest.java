@@ -6,16 +6,30 @@ import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.when;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoEvent.Type;
+import com.reactivespring.domain.MovieInfoImportResult;
+import com.reactivespring.service.MovieInfoBulkService;
+import com.reactivespring.service.MovieInfoSearchService;
 import com.reactivespring.service.MovieInfoService;
+import com.reactivespring.service.MovieInfoStreamService;
 import java.time.LocalDate;
 import java.util.List;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 @WebFluxTest(controllers = MoviesInfoController.class)
 public class MoviesInfoControllerUnitTest {
@@ -26,6 +40,15 @@ public class MoviesInfoControllerUnitTest {
   @MockBean
   private MovieInfoService movieInfoServiceMock;
 
+  @MockBean
+  private MovieInfoStreamService movieInfoStreamServiceMock;
+
+  @MockBean
+  private MovieInfoSearchService movieInfoSearchServiceMock;
+
+  @MockBean
+  private MovieInfoBulkService movieInfoBulkServiceMock;
+
   static String MOVIES_INFO_URL = "/v1/movieInfos";
 
   @Test
@@ -38,7 +61,7 @@ public class MoviesInfoControllerUnitTest {
         new MovieInfo("3", "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"),
             LocalDate.parse("2012-07-20")));
 
-    when(movieInfoServiceMock.getAllMovieInfos())
+    when(movieInfoServiceMock.getMovieInfos(null, null, 100, null, List.of()))
         .thenReturn(movieInfoList);
 
     webTestClient
@@ -51,6 +74,150 @@ public class MoviesInfoControllerUnitTest {
         .hasSize(3);
   }
 
+  @Test
+  public void givenFullPage_WhenGetAllMoviesInfoInvoked_ThenLinkHeaderPointsToNextPage() {
+    //given
+    var movieInfoList = Flux.just(
+        new MovieInfo("1", "Batman Begins", null, null, null),
+        new MovieInfo("2", "The Dark Knight", null, null, null));
+    when(movieInfoServiceMock.getMovieInfos(2005, null, 2, "-year", List.of("name")))
+        .thenReturn(movieInfoList);
+
+    //when
+    webTestClient
+        .get()
+        .uri(MOVIES_INFO_URL.concat("?year=2005&limit=2&sort=-year&fields=name"))
+        .exchange()
+        //then
+        .expectStatus()
+        .is2xxSuccessful()
+        .expectHeader()
+        .valueEquals("Link", "<" + MOVIES_INFO_URL.concat("?year=2005&sort=-year&fields=name&after=2&limit=2")
+            + ">; rel=\"next\"")
+        .expectBodyList(MovieInfo.class)
+        .hasSize(2);
+  }
+
+  @Test
+  public void givenLimitAboveMax_WhenGetAllMoviesInfoInvoked_ThenLimitClampedAndNoLinkOnLastPage() {
+    //given
+    when(movieInfoServiceMock.getMovieInfos(null, "2", 1000, null, List.of()))
+        .thenReturn(Flux.just(new MovieInfo("3", "Dark Knight Rises", 2012, List.of("Christian Bale"),
+            LocalDate.parse("2012-07-20"))));
+
+    //when
+    webTestClient
+        .get()
+        .uri(MOVIES_INFO_URL.concat("?after=2&limit=5000"))
+        .exchange()
+        //then
+        .expectStatus()
+        .is2xxSuccessful()
+        .expectHeader()
+        .doesNotExist("Link")
+        .expectBodyList(MovieInfo.class)
+        .hasSize(1);
+  }
+
+  @Test
+  public void givenNonPositiveLimit_WhenGetAllMoviesInfoInvoked_ThenBadRequest() {
+    webTestClient
+        .get()
+        .uri(MOVIES_INFO_URL.concat("?limit=0"))
+        .exchange()
+        .expectStatus()
+        .isBadRequest();
+  }
+
+  @Test
+  public void givenNdjsonBody_WhenImportInvoked_ThenLinesStreamedToService() {
+    //given
+    when(movieInfoBulkServiceMock.importMovieInfos(ArgumentMatchers.<Flux<String>>any()))
+        .thenAnswer(invocation -> invocation.<Flux<String>>getArgument(0)
+            .collectList()
+            .map(lines -> {
+              var result = new MovieInfoImportResult();
+              result.setReceived(lines.size());
+              result.setInserted(lines.size());
+              return result;
+            }));
+
+    //when
+    webTestClient
+        .post()
+        .uri(MOVIES_INFO_URL.concat("/import"))
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .bodyValue("{\"movieInfoId\": \"1\", \"name\": \"Batman Begins\", \"year\": 2005}\n"
+            + "{\"movieInfoId\": \"2\", \"name\": \"The Dark Knight\", \"year\": 2008}\n")
+        .exchange()
+        //then
+        .expectStatus()
+        .is2xxSuccessful()
+        .expectBody(MovieInfoImportResult.class)
+        .value(result -> {
+          assertEquals(2, result.getReceived());
+          assertEquals(2, result.getInserted());
+        });
+  }
+
+  @Test
+  public void givenMovieInfos_WhenExportInvoked_ThenNdjsonReturned() {
+    //given
+    when(movieInfoBulkServiceMock.exportMovieInfos())
+        .thenReturn(Flux.just(new MovieInfo("1", "Batman Begins", 2005, List.of("Christian Bale"), null),
+            new MovieInfo("2", "The Dark Knight", 2008, List.of("Christian Bale"), null)));
+
+    //when
+    var movieInfos = webTestClient
+        .get()
+        .uri(MOVIES_INFO_URL.concat("/export"))
+        .exchange()
+        //then
+        .expectStatus()
+        .is2xxSuccessful()
+        .expectHeader()
+        .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+        .returnResult(MovieInfo.class)
+        .getResponseBody();
+
+    StepVerifier.create(movieInfos.map(MovieInfo::getMovieInfoId))
+        .expectNext("1", "2")
+        .verifyComplete();
+  }
+
+  @Test
+  public void givenQuery_WhenSearchInvoked_ThenRankedMockMovieInfosReturned() {
+    //given
+    when(movieInfoSearchServiceMock.search("dark kni", 10))
+        .thenReturn(Flux.just(
+            new MovieInfo("3", "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"),
+                LocalDate.parse("2012-07-20")),
+            new MovieInfo("2", "The Dark Knight", 2008, List.of("Christian Bale", "HeathLedger"),
+                LocalDate.parse("2008-07-18"))));
+
+    //when
+    webTestClient
+        .get()
+        .uri(MOVIES_INFO_URL.concat("/search?q= dark kni"))
+        .exchange()
+        //then
+        .expectStatus()
+        .is2xxSuccessful()
+        .expectBody()
+        .jsonPath("$[0].movieInfoId").isEqualTo("3")
+        .jsonPath("$[1].movieInfoId").isEqualTo("2");
+  }
+
+  @Test
+  public void givenBlankQuery_WhenSearchInvoked_ThenBadRequest() {
+    webTestClient
+        .get()
+        .uri(MOVIES_INFO_URL.concat("/search?q= "))
+        .exchange()
+        .expectStatus()
+        .isBadRequest();
+  }
+
   @Test
   public void givenMovieInfoId_WhenGetMovieInfoById_ThenReturnMockMovieInfoById(){
     var movie = new MovieInfo("1", "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"),
@@ -66,6 +233,8 @@ public class MoviesInfoControllerUnitTest {
         .exchange()
         .expectStatus()
         .is2xxSuccessful()
+        .expectHeader()
+        .valueEquals(HttpHeaders.ETAG, "\"0\"")
         .expectBody(MovieInfo.class)
         .consumeWith(movieInfoEntityExchangeResult -> {
           var body = movieInfoEntityExchangeResult.getResponseBody();
@@ -74,6 +243,81 @@ public class MoviesInfoControllerUnitTest {
         });
   }
 
+  @Test
+  public void givenIfMatch_WhenPatchMovieInfoInvoked_ThenPatchedMovieInfoReturnedWithItsETag(){
+    var changes = new MovieInfo(null, null, 2006, null, null);
+    when(movieInfoServiceMock.patchMovieInfo("1", changes, List.of(3L, 4L)))
+        .thenReturn(Mono.just(new MovieInfo("1", "Batman Begins", 2006, List.of("Christian Bale"),
+            LocalDate.parse("2005-06-15"), 5L)));
+
+    webTestClient
+        .patch()
+        .uri(MOVIES_INFO_URL.concat("/1"))
+        .header(HttpHeaders.IF_MATCH, "\"3\", W/\"4\"")
+        .bodyValue(changes)
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectHeader()
+        .valueEquals(HttpHeaders.ETAG, "\"5\"")
+        .expectBody()
+        .jsonPath("$.year").isEqualTo(2006)
+        .jsonPath("$.version").doesNotExist();
+  }
+
+  @Test
+  public void givenStaleIfMatch_WhenPatchMovieInfoInvoked_ThenPreconditionFailed(){
+    var changes = new MovieInfo(null, "Batman Begins", null, null, null);
+    when(movieInfoServiceMock.patchMovieInfo("1", changes, List.of(2L)))
+        .thenReturn(Mono.error(new ResponseStatusException(HttpStatus.PRECONDITION_FAILED)));
+
+    webTestClient
+        .patch()
+        .uri(MOVIES_INFO_URL.concat("/1"))
+        .header(HttpHeaders.IF_MATCH, "\"2\"")
+        .bodyValue(changes)
+        .exchange()
+        .expectStatus()
+        .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+  }
+
+  @Test
+  public void givenUnknownMovieInfoId_WhenPatchMovieInfoInvoked_ThenNotFound(){
+    var changes = new MovieInfo(null, "Batman Begins", null, null, null);
+    when(movieInfoServiceMock.patchMovieInfo("12", changes, null)).thenReturn(Mono.empty());
+
+    webTestClient
+        .patch()
+        .uri(MOVIES_INFO_URL.concat("/12"))
+        .bodyValue(changes)
+        .exchange()
+        .expectStatus()
+        .isNotFound();
+  }
+
+  @Test
+  public void givenMovieInfoIds_WhenGetMovieInfosByIdsInvoked_ThenReturnMockMovieInfos(){
+    var movieInfoList = Flux.just(
+        new MovieInfo("1", "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"),
+            LocalDate.parse("2005-06-15")),
+        new MovieInfo("2", "The Dark Knight", 2008, List.of("Christian Bale", "HeathLedger"),
+            LocalDate.parse("2008-07-18")));
+    var movieIds = List.of("1", "2");
+
+    when(movieInfoServiceMock.getMovieInfosByIds(movieIds))
+        .thenReturn(movieInfoList);
+
+    webTestClient
+        .post()
+        .uri(MOVIES_INFO_URL.concat("/batch"))
+        .bodyValue(movieIds)
+        .exchange()
+        .expectStatus()
+        .is2xxSuccessful()
+        .expectBodyList(MovieInfo.class)
+        .hasSize(2);
+  }
+
   @Test
   public void givenMovieInfo_WhenAddMovieInvoked_ThenReturnMockMovieInfo(){
     var movieInfo = new MovieInfo("1", "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"),
@@ -101,18 +345,80 @@ public class MoviesInfoControllerUnitTest {
     String movieId = "1";
 
     when(movieInfoServiceMock.deleteMovieInfo(movieId))
-      .thenReturn(Mono.empty());
+      .thenReturn(Mono.just(true));
 
     webTestClient
         .delete()
         .uri(MOVIES_INFO_URL.concat("/").concat(movieId))
         .exchange()
         .expectStatus()
-        .is2xxSuccessful()
+        .isNoContent()
         .expectBody()
         .isEmpty();
   }
 
+  @Test
+  public void givenUnknownMovieInfoId_WhenDeleteMovieInfoInvoked_ThenNotFound(){
+    when(movieInfoServiceMock.deleteMovieInfo("12"))
+        .thenReturn(Mono.just(false));
+
+    webTestClient
+        .delete()
+        .uri(MOVIES_INFO_URL.concat("/12"))
+        .exchange()
+        .expectStatus()
+        .isNotFound();
+  }
+
+  @Test
+  public void givenMovieInfoEvents_WhenStreamInvoked_ThenUpsertsStreamedAsNdjson(){
+    var movie = new MovieInfo("1", "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"),
+        LocalDate.parse("2005-06-15"));
+
+    when(movieInfoStreamServiceMock.events("41"))
+        .thenReturn(Flux.just(
+            new MovieInfoEvent("42", Type.INSERT, "1", movie),
+            new MovieInfoEvent("43", Type.DELETE, "2", null)));
+
+    webTestClient
+        .get()
+        .uri(MOVIES_INFO_URL.concat("/stream?resumeToken=41"))
+        .accept(MediaType.APPLICATION_NDJSON)
+        .exchange()
+        .expectStatus()
+        .is2xxSuccessful()
+        .expectBodyList(MovieInfo.class)
+        .value(movieInfos -> {
+          assertEquals(1, movieInfos.size());
+          assertEquals("Batman Begins", movieInfos.get(0).getName());
+        });
+  }
+
+  @Test
+  public void givenLastEventId_WhenStreamInvokedAsSse_ThenResumedEventsCarryTheirToken(){
+    when(movieInfoStreamServiceMock.events("41"))
+        .thenReturn(Flux.just(new MovieInfoEvent("42", Type.DELETE, "2", null)));
+
+    var events = webTestClient
+        .get()
+        .uri(MOVIES_INFO_URL.concat("/stream"))
+        .accept(MediaType.TEXT_EVENT_STREAM)
+        .header("Last-Event-ID", "41")
+        .exchange()
+        .expectStatus()
+        .is2xxSuccessful()
+        .returnResult(new ParameterizedTypeReference<ServerSentEvent<MovieInfoEvent>>() {})
+        .getResponseBody();
+
+    StepVerifier.create(events)
+        .assertNext(event -> {
+          assertEquals("42", event.id());
+          assertEquals("delete", event.event());
+          assertEquals("2", event.data().getMovieInfoId());
+        })
+        .verifyComplete();
+  }
+
   @Test
   public void givenMovieInfo_WhenAddMovieInvoked_ThenReturnMockMovieInfo_Validation(){
     var movieInfo = new MovieInfo("1", "", -2005, List.of("", "Michael Cane"),
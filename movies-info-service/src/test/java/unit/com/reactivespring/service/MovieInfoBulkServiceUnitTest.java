@@ -0,0 +1,170 @@
+package com.reactivespring.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoEvent.Type;
+import com.reactivespring.domain.MovieInfoImportResult.LineError;
+import jakarta.validation.Validation;
+import java.util.List;
+import java.util.Set;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class MovieInfoBulkServiceUnitTest {
+
+  private final ReactiveMongoTemplate mongoTemplateMock = mock(ReactiveMongoTemplate.class);
+
+  @SuppressWarnings("unchecked")
+  private final MongoCollection<Document> collectionMock = mock(MongoCollection.class);
+
+  private final MovieInfoStreamService movieInfoStreamService =
+      new MovieInfoStreamService(null, MovieInfoStreamService.Source.SINK, 100, 16);
+
+  private final MovieInfoBulkService movieInfoBulkService = new MovieInfoBulkService(mongoTemplateMock,
+      movieInfoStreamService, Jackson2ObjectMapperBuilder.json().build(),
+      Validation.buildDefaultValidatorFactory().getValidator(), 2, "MAJORITY", 1, 100);
+
+  @BeforeEach
+  void setUp() {
+    when(mongoTemplateMock.getConverter()).thenReturn(converter());
+    when(mongoTemplateMock.getCollectionName(MovieInfo.class)).thenReturn("movieInfo");
+    when(mongoTemplateMock.getCollection("movieInfo")).thenReturn(Mono.just(collectionMock));
+    when(collectionMock.withWriteConcern(WriteConcern.MAJORITY)).thenReturn(collectionMock);
+  }
+
+  /**
+   * Set up as by the Spring Boot auto-configuration, LocalDate being a Mongo simple type.
+   */
+  private static MappingMongoConverter converter() {
+    var conversions = new MongoCustomConversions(List.of());
+    var mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    mappingContext.afterPropertiesSet();
+    var converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+    return converter;
+  }
+
+  @Test
+  void importMovieInfos() {
+    //given
+    when(collectionMock.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+        // first batch : line 1 inserted, line 2 replaced
+        .thenReturn(Mono.just(BulkWriteResult.acknowledged(0, 1, 0, 1,
+            List.of(new BulkWriteUpsert(0, new BsonString("1"))), List.of())))
+        // second batch : line 5 replaced
+        .thenReturn(Mono.just(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of())));
+    var events = movieInfoStreamService.events(null).take(3).collectList();
+    var lines = Flux.just(
+        "{\"movieInfoId\": \"1\", \"name\": \"Batman Begins\", \"year\": 2005, \"releaseDate\": \"2005-06-15\"}",
+        "{\"movieInfoId\": \"2\", \"name\": \"The Dark Knight\", \"year\": 2008}",
+        "",
+        "{\"movieInfoId\": \"3\", \"name\": \"\", \"year\": 2012}",
+        "{\"movieInfoId\": \"4\", \"name\": \"Dark Knight Rises\", \"year\": 2012}",
+        "{\"movieInfoId\": ");
+
+    //when
+    StepVerifier.create(events.zipWith(movieInfoBulkService.importMovieInfos(lines)))
+        //then
+        .assertNext(eventsAndResult -> {
+          var result = eventsAndResult.getT2();
+          assertEquals(5, result.getReceived());
+          assertEquals(1, result.getInserted());
+          assertEquals(2, result.getUpdated());
+          assertEquals(2, result.getRejected());
+          // maxErrors 1
+          assertEquals(List.of(new LineError(4, "movieInfo.name must not be blank")), result.getErrors());
+          assertEquals(List.of(Type.INSERT, Type.UPDATE, Type.UPDATE),
+              eventsAndResult.getT1().stream().map(MovieInfoEvent::getType).toList());
+        })
+        .verifyComplete();
+
+    // batches of 2 lines : [1, 2], [4, 5], [6], the last one without a valid movieInfo
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<UpdateOneModel<Document>>> writes = ArgumentCaptor.forClass(List.class);
+    verify(collectionMock, times(2)).bulkWrite(writes.capture(), any(BulkWriteOptions.class));
+    // every field set or unset, the version incremented
+    var update = (Document) writes.getAllValues().get(0).get(0).getUpdate();
+    assertEquals("Batman Begins", update.get("$set", Document.class).get("name"));
+    assertEquals(new Document("cast", ""), update.get("$unset"));
+    assertEquals(new Document("version", 1L), update.get("$inc"));
+    assertTrue(writes.getAllValues().get(0).get(0).getOptions().isUpsert());
+  }
+
+  @Test
+  void importMovieInfos_writeErrorsRejectTheirLine() {
+    //given
+    var writeError = new BulkWriteError(121, "Document failed validation", new BsonDocument(), 1);
+    when(collectionMock.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+        .thenReturn(Mono.error(new MongoBulkWriteException(BulkWriteResult.acknowledged(0, 0, 0, 0,
+            List.of(new BulkWriteUpsert(0, new BsonString("1"))), List.of()), List.of(writeError), null, new ServerAddress(),
+            Set.of())));
+    var lines = Flux.just(
+        "{\"movieInfoId\": \"1\", \"name\": \"Batman Begins\", \"year\": 2005}",
+        "{\"movieInfoId\": \"2\", \"name\": \"The Dark Knight\", \"year\": 2008}");
+
+    //when
+    StepVerifier.create(movieInfoBulkService.importMovieInfos(lines))
+        //then
+        .assertNext(result -> {
+          assertEquals(1, result.getInserted());
+          assertEquals(1, result.getRejected());
+          assertEquals(List.of(new LineError(2, "Document failed validation")), result.getErrors());
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  void importMovieInfos_databaseFailureFailsTheImport() {
+    //given
+    when(collectionMock.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+        .thenReturn(Mono.error(new IllegalStateException("connection refused")));
+
+    //when
+    StepVerifier.create(movieInfoBulkService.importMovieInfos(
+            Flux.just("{\"movieInfoId\": \"1\", \"name\": \"Batman Begins\", \"year\": 2005}")))
+        //then
+        .expectErrorMessage("connection refused")
+        .verify();
+  }
+
+  @Test
+  void unknownWriteConcern() {
+    assertThrows(IllegalArgumentException.class, () -> new MovieInfoBulkService(mongoTemplateMock,
+        movieInfoStreamService, Jackson2ObjectMapperBuilder.json().build(),
+        Validation.buildDefaultValidatorFactory().getValidator(), 2, "SOMETIMES", 1, 100));
+  }
+}
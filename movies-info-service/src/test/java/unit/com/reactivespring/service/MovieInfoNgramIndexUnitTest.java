@@ -0,0 +1,85 @@
+package com.reactivespring.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.reactivespring.domain.MovieInfo;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MovieInfoNgramIndexUnitTest {
+
+  private MovieInfoNgramIndex ngramIndex;
+
+  @BeforeEach
+  void setUp() {
+    ngramIndex = new MovieInfoNgramIndex(5);
+    ngramIndex.put(movieInfo("1", "Batman Begins", "Christian Bale", "Michael Cane"));
+    ngramIndex.put(movieInfo("2", "The Dark Knight", "Christian Bale", "HeathLedger"));
+    ngramIndex.put(movieInfo("3", "Dark Knight Rises", "Christian Bale", "Tom Hardy"));
+  }
+
+  @Test
+  void search_prefixOfEveryWord() {
+    //when
+    var results = ngramIndex.search("dark kni", 10);
+
+    //then : the name starting with the query ranks first
+    assertEquals(List.of("3", "2"), ids(results));
+  }
+
+  @Test
+  void search_nameWordsRankAboveCastWords() {
+    //given
+    ngramIndex.put(movieInfo("4", "Hardy Boys", "Parker Stevenson"));
+
+    //when
+    var results = ngramIndex.search("HARD", 10);
+
+    //then
+    assertEquals(List.of("4", "3"), ids(results));
+  }
+
+  @Test
+  void search_wordLongerThanMaxGram() {
+    // equal scores, ordered by name
+    assertEquals(List.of("1", "3", "2"), ids(ngramIndex.search("christian", 10)));
+    assertTrue(ngramIndex.search("christiana", 10).isEmpty());
+  }
+
+  @Test
+  void search_limit() {
+    assertEquals(2, ngramIndex.search("bale", 2).size());
+  }
+
+  @Test
+  void put_reindexesAnUpdatedMovieInfo() {
+    //when
+    ngramIndex.put(movieInfo("1", "Batman Returns", "Michael Keaton"));
+
+    //then
+    assertTrue(ngramIndex.search("begins", 10).isEmpty());
+    assertEquals(List.of("1"), ids(ngramIndex.search("batman ret", 10)));
+    assertEquals(3, ngramIndex.size());
+  }
+
+  @Test
+  void remove() {
+    //when
+    ngramIndex.remove("2");
+
+    //then
+    assertEquals(List.of("3"), ids(ngramIndex.search("knight", 10)));
+    assertEquals(2, ngramIndex.size());
+  }
+
+  private static List<String> ids(List<MovieInfo> movieInfos) {
+    return movieInfos.stream().map(MovieInfo::getMovieInfoId).toList();
+  }
+
+  private static MovieInfo movieInfo(String movieInfoId, String name, String... cast) {
+    return new MovieInfo(movieInfoId, name, 2005, List.of(cast), LocalDate.parse("2005-06-15"));
+  }
+}
@@ -0,0 +1,54 @@
+package com.reactivespring.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent.Type;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+public class MovieInfoSearchServiceUnitTest {
+
+  private final ReactiveMongoTemplate mongoTemplateMock = mock(ReactiveMongoTemplate.class);
+
+  private final MovieInfoStreamService movieInfoStreamService =
+      new MovieInfoStreamService(null, MovieInfoStreamService.Source.SINK, 100, 16);
+
+  private final MovieInfoSearchService movieInfoSearchService =
+      new MovieInfoSearchService(mongoTemplateMock, movieInfoStreamService, true, 15);
+
+  @AfterEach
+  void tearDown() {
+    movieInfoSearchService.stopNgramIndex();
+  }
+
+  @Test
+  void search_ngramIndexLoadedThenKeptUpToDate() {
+    //given
+    when(mongoTemplateMock.findAll(MovieInfo.class))
+        .thenReturn(Flux.just(movieInfo("1", "Batman Begins"), movieInfo("2", "The Dark Knight")));
+    movieInfoSearchService.startNgramIndex();
+
+    //when
+    movieInfoStreamService.publish(Type.INSERT, "3", movieInfo("3", "Dark Knight Rises"));
+    movieInfoStreamService.publish(Type.DELETE, "2", null);
+
+    //then
+    StepVerifier.create(movieInfoSearchService.search("dark", 10).map(MovieInfo::getMovieInfoId))
+        .expectNext("3")
+        .verifyComplete();
+    StepVerifier.create(movieInfoSearchService.search("batman", 10).map(MovieInfo::getMovieInfoId))
+        .expectNext("1")
+        .verifyComplete();
+  }
+
+  private static MovieInfo movieInfo(String movieInfoId, String name) {
+    return new MovieInfo(movieInfoId, name, 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+  }
+}
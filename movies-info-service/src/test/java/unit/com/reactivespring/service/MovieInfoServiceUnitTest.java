@@ -0,0 +1,164 @@
+package com.reactivespring.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.client.result.DeleteResult;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoEvent.Type;
+import com.reactivespring.repository.IMovieInfoRepository;
+import jakarta.validation.Validation;
+import java.time.LocalDate;
+import java.util.List;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class MovieInfoServiceUnitTest {
+
+  private final IMovieInfoRepository movieInfoRepositoryMock = mock(IMovieInfoRepository.class);
+
+  private final ReactiveMongoTemplate mongoTemplateMock = mock(ReactiveMongoTemplate.class);
+
+  private final MovieInfoStreamService movieInfoStreamService =
+      new MovieInfoStreamService(null, MovieInfoStreamService.Source.SINK, 100, 16);
+
+  private final MovieInfoService movieInfoService = new MovieInfoService(movieInfoRepositoryMock,
+      movieInfoStreamService, mongoTemplateMock, Validation.buildDefaultValidatorFactory().getValidator());
+
+  @Test
+  void patchMovieInfo() {
+    //given
+    var patched = new MovieInfo("1", "Batman Begins", 2006, List.of("Christian Bale"),
+        LocalDate.parse("2005-06-15"), 4L);
+    when(mongoTemplateMock.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+        eq(MovieInfo.class))).thenReturn(Mono.just(patched));
+    var events = movieInfoStreamService.events(null).take(1).map(MovieInfoEvent::getType);
+
+    //when
+    StepVerifier.create(events.zipWith(
+            movieInfoService.patchMovieInfo("1", new MovieInfo(null, null, 2006, null, null), List.of(3L))))
+        //then
+        .assertNext(eventAndPatched -> {
+          assertEquals(Type.UPDATE, eventAndPatched.getT1());
+          assertEquals(patched, eventAndPatched.getT2());
+        })
+        .verifyComplete();
+
+    var query = ArgumentCaptor.forClass(Query.class);
+    var update = ArgumentCaptor.forClass(Update.class);
+    verify(mongoTemplateMock).findAndModify(query.capture(), update.capture(), any(FindAndModifyOptions.class),
+        eq(MovieInfo.class));
+    // only the fields sent, in the same findAndModify as the version check
+    assertEquals(new Document("$inc", new Document("version", 1L)).append("$set", new Document("year", 2006)),
+        update.getValue().getUpdateObject());
+    assertEquals(List.of(new Document("movieInfoId", "1"), new Document("version", new Document("$in", List.of(3L)))),
+        query.getValue().getQueryObject().get("$and"));
+  }
+
+  @Test
+  void updateMovieInfo() {
+    //given
+    var updated = new MovieInfo("1", "Batman Begins", 2005, null, null, 1L);
+    when(mongoTemplateMock.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+        eq(MovieInfo.class))).thenReturn(Mono.just(updated));
+
+    //when
+    StepVerifier.create(movieInfoService.updateMovieInfo("1", new MovieInfo("1", "Batman Begins", 2005, null, null)))
+        //then
+        .expectNext(updated)
+        .verifyComplete();
+
+    var update = ArgumentCaptor.forClass(Update.class);
+    verify(mongoTemplateMock).findAndModify(any(Query.class), update.capture(), any(FindAndModifyOptions.class),
+        eq(MovieInfo.class));
+    // no read-then-save : a stored movieInfo without version is updated as well
+    assertEquals(new Document("$inc", new Document("version", 1L))
+            .append("$set", new Document("name", "Batman Begins").append("year", 2005))
+            .append("$unset", new Document("cast", 1).append("releaseDate", 1)),
+        update.getValue().getUpdateObject());
+    verify(movieInfoRepositoryMock, never()).save(any());
+  }
+
+  @Test
+  void patchMovieInfo_staleVersion() {
+    //given
+    when(mongoTemplateMock.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+        eq(MovieInfo.class))).thenReturn(Mono.empty());
+    when(movieInfoRepositoryMock.existsById("1")).thenReturn(Mono.just(true));
+
+    //when
+    StepVerifier.create(movieInfoService.patchMovieInfo("1", new MovieInfo(null, "Batman", null, null, null),
+            List.of(2L)))
+        //then
+        .expectErrorMatches(ex -> ex instanceof ResponseStatusException
+            && ((ResponseStatusException) ex).getStatusCode() == HttpStatus.PRECONDITION_FAILED)
+        .verify();
+  }
+
+  @Test
+  void patchMovieInfo_notFound() {
+    //given
+    when(mongoTemplateMock.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+        eq(MovieInfo.class))).thenReturn(Mono.empty());
+
+    //when
+    StepVerifier.create(movieInfoService.patchMovieInfo("1", new MovieInfo(null, "Batman", null, null, null), null))
+        //then
+        .verifyComplete();
+    verify(movieInfoRepositoryMock, never()).existsById(any(String.class));
+  }
+
+  @Test
+  void deleteMovieInfo() {
+    //given
+    when(mongoTemplateMock.remove(any(Query.class), eq(MovieInfo.class)))
+        .thenReturn(Mono.just(DeleteResult.acknowledged(1)))
+        .thenReturn(Mono.just(DeleteResult.acknowledged(0)));
+    var events = movieInfoStreamService.events(null).take(1).map(MovieInfoEvent::getMovieInfoId);
+
+    //when
+    StepVerifier.create(events.zipWith(movieInfoService.deleteMovieInfo("1")))
+        //then
+        .assertNext(eventAndDeleted -> {
+          assertEquals("1", eventAndDeleted.getT1());
+          assertEquals(true, eventAndDeleted.getT2());
+        })
+        .verifyComplete();
+    StepVerifier.create(movieInfoService.deleteMovieInfo("1"))
+        .expectNext(false)
+        .verifyComplete();
+    verify(movieInfoRepositoryMock, never()).deleteById(any(String.class));
+  }
+
+  @Test
+  void patchMovieInfo_validation() {
+    //when
+    StepVerifier.create(movieInfoService.patchMovieInfo("1", new MovieInfo(null, " ", -1, null, null), null))
+        //then
+        .expectErrorMatches(ex -> ex instanceof ResponseStatusException
+            && ((ResponseStatusException) ex).getStatusCode() == HttpStatus.BAD_REQUEST
+            && "movieInfo.name must not be blank,movieInfo.year must be a Positive value"
+            .equals(((ResponseStatusException) ex).getReason()))
+        .verify();
+    StepVerifier.create(movieInfoService.patchMovieInfo("1", new MovieInfo(), null))
+        .expectError(ResponseStatusException.class)
+        .verify();
+    verify(mongoTemplateMock, never()).findAndModify(any(Query.class), any(Update.class),
+        any(FindAndModifyOptions.class), eq(MovieInfo.class));
+  }
+}
@@ -0,0 +1,124 @@
+package com.reactivespring.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoEvent.Type;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class MovieInfoStreamServiceUnitTest {
+
+  private final MovieInfoStreamService movieInfoStreamService =
+      new MovieInfoStreamService(null, MovieInfoStreamService.Source.SINK, 100, 16);
+
+  @Test
+  void events_liveSubscriberOnlyReceivesNewChanges() {
+    //given
+    movieInfoStreamService.publish(Type.INSERT, "1", movieInfo("1", "Batman Begins"));
+
+    //when
+    var events = movieInfoStreamService.events(null);
+
+    //then
+    StepVerifier.create(events)
+        .then(() -> movieInfoStreamService.publish(Type.UPDATE, "2", movieInfo("2", "The Dark Knight")))
+        .assertNext(event -> {
+          assertEquals(Type.UPDATE, event.getType());
+          assertEquals("The Dark Knight", event.getMovieInfo().getName());
+        })
+        .thenCancel()
+        .verify(Duration.ofSeconds(5));
+  }
+
+  @Test
+  void events_resumeAfterToken() {
+    //given
+    movieInfoStreamService.publish(Type.INSERT, "1", movieInfo("1", "Batman Begins"));
+    var resumeToken = movieInfoStreamService.events("previous-run.0").blockFirst().getResumeToken();
+    movieInfoStreamService.publish(Type.INSERT, "2", movieInfo("2", "The Dark Knight"));
+    movieInfoStreamService.publish(Type.DELETE, "1", null);
+
+    //when
+    var events = movieInfoStreamService.events(resumeToken);
+
+    //then
+    StepVerifier.create(events.map(MovieInfoEvent::getMovieInfoId).take(2))
+        .expectNext("2", "1")
+        .verifyComplete();
+  }
+
+  @Test
+  void events_tokenOfAnotherEpoch() {
+    //given
+    movieInfoStreamService.publish(Type.INSERT, "1", movieInfo("1", "Batman Begins"));
+    movieInfoStreamService.publish(Type.INSERT, "2", movieInfo("2", "The Dark Knight"));
+    // same sequence number, issued before a restart
+    var resumeToken = "previous-run." + 1;
+
+    //when
+    var events = movieInfoStreamService.events(resumeToken);
+
+    //then : expired, resumes from the oldest event of the replay window
+    StepVerifier.create(events.map(MovieInfoEvent::getMovieInfoId).take(2))
+        .expectNext("1", "2")
+        .verifyComplete();
+  }
+
+  @Test
+  void events_invalidToken() {
+    //when
+    var events = movieInfoStreamService.events("not-a-token");
+
+    //then
+    StepVerifier.create(events)
+        .expectError(ResponseStatusException.class)
+        .verify();
+    StepVerifier.create(movieInfoStreamService.events("1"))
+        .expectError(ResponseStatusException.class)
+        .verify();
+  }
+
+  @Test
+  void events_replicaSetProbeFailureNotCached() {
+    //given
+    var mongoTemplateMock = mock(ReactiveMongoTemplate.class);
+    when(mongoTemplateMock.executeCommand(any(Document.class)))
+        .thenReturn(Mono.error(new IllegalStateException("Mongo not up yet")))
+        .thenReturn(Mono.just(new Document("ismaster", true)));
+    var autoStreamService = new MovieInfoStreamService(mongoTemplateMock, MovieInfoStreamService.Source.AUTO, 100, 16);
+
+    //when
+    StepVerifier.create(autoStreamService.events(null))
+        .expectError(IllegalStateException.class)
+        .verify();
+
+    //then : probed again, standalone server so the sink is used from now on
+    StepVerifier.create(autoStreamService.events(null))
+        .then(() -> autoStreamService.publish(Type.INSERT, "1", movieInfo("1", "Batman Begins")))
+        .expectNextCount(1)
+        .thenCancel()
+        .verify(Duration.ofSeconds(5));
+    StepVerifier.create(autoStreamService.events(null))
+        .thenCancel()
+        .verify();
+    verify(mongoTemplateMock, times(2)).executeCommand(any(Document.class));
+  }
+
+  private static MovieInfo movieInfo(String movieInfoId, String name) {
+    return new MovieInfo(movieInfoId, name, 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+  }
+}
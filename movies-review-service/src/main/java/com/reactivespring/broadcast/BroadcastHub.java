@@ -0,0 +1,207 @@
+package com.reactivespring.broadcast;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fans items out to any number of subscribers, each one with its own bounded buffer : a slow subscriber only
+ * fills up its own buffer and never holds up the producer or the other subscribers. A full buffer is handled
+ * according to the {@link OverflowPolicy}.
+ * <p>
+ * {@link #publish(Object)} is safe to call from concurrent producers, emissions are serialized so every
+ * subscriber sees the items in the same order.
+ * <p>
+ * Metrics (tagged with {@code hub}). The lag of a subscriber is the number of items buffered for it, it is
+ * recorded in a distribution rather than in one gauge per subscriber to keep the cardinality bounded :
+ * <ul>
+ *     <li>broadcast.subscribers - current subscribers</li>
+ *     <li>broadcast.published - items published</li>
+ *     <li>broadcast.lag - lag of each subscriber, recorded on every publish</li>
+ *     <li>broadcast.lag.max - highest lag among the current subscribers</li>
+ *     <li>broadcast.dropped - items dropped by DROP_OLDEST</li>
+ *     <li>broadcast.disconnected - subscribers disconnected by DISCONNECT</li>
+ * </ul>
+ */
+@Slf4j
+public class BroadcastHub<T> {
+
+    private final String name;
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final boolean replayLatest;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private T latest;
+
+    private final BroadcastMetrics metrics;
+
+    /**
+     * @param replayLatest when true, a new subscriber first receives the last published item.
+     */
+    public BroadcastHub(String name, int bufferSize, OverflowPolicy overflowPolicy, boolean replayLatest,
+                        MeterRegistry meterRegistry) {
+        this(name, bufferSize, overflowPolicy, replayLatest, new BroadcastMetrics(name, meterRegistry));
+        Gauge.builder("broadcast.subscribers", subscribers, Set::size)
+                .tag("hub", name)
+                .register(meterRegistry);
+        Gauge.builder("broadcast.lag.max", this, BroadcastHub::maxLag)
+                .tag("hub", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Hub without gauges of its own, its counters are shared with other hubs (see {@link TopicBroadcastHub}).
+     */
+    BroadcastHub(String name, int bufferSize, OverflowPolicy overflowPolicy, boolean replayLatest, BroadcastMetrics metrics) {
+        this.name = name;
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = overflowPolicy;
+        this.replayLatest = replayLatest;
+        this.metrics = metrics;
+    }
+
+    public Flux<T> subscribe() {
+        return Flux.create(sink -> {
+            var subscriber = new Subscriber(sink);
+            sink.onRequest(requested -> subscriber.drain());
+            sink.onDispose(() -> subscribers.remove(subscriber));
+            synchronized (this) {
+                if (replayLatest && latest != null) {
+                    subscriber.offer(latest);
+                }
+                subscribers.add(subscriber);
+            }
+        }, FluxSink.OverflowStrategy.ERROR);
+    }
+
+    public synchronized void publish(T item) {
+        latest = item;
+        metrics.published.increment();
+        for (var subscriber : subscribers) {
+            subscriber.offer(item);
+            metrics.lag.record(subscriber.lag());
+        }
+    }
+
+    /**
+     * Publishes a batch with a single pass over the subscribers : each buffer is locked and drained once per batch
+     * instead of once per item.
+     */
+    public synchronized void publishAll(List<T> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        latest = items.get(items.size() - 1);
+        metrics.published.increment(items.size());
+        for (var subscriber : subscribers) {
+            subscriber.offerAll(items);
+            metrics.lag.record(subscriber.lag());
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    public int maxLag() {
+        return subscribers.stream()
+                .mapToInt(Subscriber::lag)
+                .max()
+                .orElse(0);
+    }
+
+    /**
+     * Ring buffer of one subscriber, drained as far as the downstream demand allows.
+     */
+    private final class Subscriber {
+
+        private final FluxSink<T> sink;
+        private final ArrayDeque<T> buffer = new ArrayDeque<>();
+        private boolean terminated;
+
+        Subscriber(FluxSink<T> sink) {
+            this.sink = sink;
+        }
+
+        synchronized void offer(T item) {
+            enqueue(item);
+            drain();
+        }
+
+        synchronized void offerAll(List<T> items) {
+            for (var item : items) {
+                enqueue(item);
+            }
+            drain();
+        }
+
+        private void enqueue(T item) {
+            if (terminated) {
+                return;
+            }
+            if (buffer.size() >= bufferSize) {
+                // the buffer may only be full for lack of a drain within a batch
+                drain();
+            }
+            if (buffer.size() >= bufferSize) {
+                if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                    disconnect();
+                    return;
+                }
+                buffer.poll();
+                metrics.dropped.increment();
+            }
+            buffer.offer(item);
+        }
+
+        synchronized void drain() {
+            while (!terminated && !buffer.isEmpty() && sink.requestedFromDownstream() > 0) {
+                sink.next(buffer.poll());
+            }
+        }
+
+        synchronized int lag() {
+            return buffer.size();
+        }
+
+        private void disconnect() {
+            terminated = true;
+            buffer.clear();
+            metrics.disconnected.increment();
+            log.warn("Disconnecting a slow {} subscriber, {} items behind", name, bufferSize);
+            sink.error(new SlowSubscriberException("Subscriber of " + name + " is more than " + bufferSize + " items behind"));
+        }
+    }
+
+    static class BroadcastMetrics {
+
+        final Counter published;
+        final DistributionSummary lag;
+        final Counter dropped;
+        final Counter disconnected;
+
+        BroadcastMetrics(String name, MeterRegistry meterRegistry) {
+            this.published = Counter.builder("broadcast.published")
+                    .tag("hub", name)
+                    .register(meterRegistry);
+            this.lag = DistributionSummary.builder("broadcast.lag")
+                    .tag("hub", name)
+                    .register(meterRegistry);
+            this.dropped = Counter.builder("broadcast.dropped")
+                    .tag("hub", name)
+                    .register(meterRegistry);
+            this.disconnected = Counter.builder("broadcast.disconnected")
+                    .tag("hub", name)
+                    .register(meterRegistry);
+        }
+    }
+}
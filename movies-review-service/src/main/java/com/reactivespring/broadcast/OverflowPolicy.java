@@ -0,0 +1,13 @@
+package com.reactivespring.broadcast;
+
+/**
+ * What {@link BroadcastHub} does when the buffer of a subscriber is full.
+ * <ul>
+ *     <li>DROP_OLDEST - the oldest buffered item is dropped to make room, the subscriber skips ahead.</li>
+ *     <li>DISCONNECT - the subscriber is terminated with a {@link SlowSubscriberException}.</li>
+ * </ul>
+ */
+public enum OverflowPolicy {
+    DROP_OLDEST,
+    DISCONNECT
+}
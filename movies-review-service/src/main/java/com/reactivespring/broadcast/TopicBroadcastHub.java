@@ -0,0 +1,115 @@
+package com.reactivespring.broadcast;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * One {@link BroadcastHub} per topic key : publishing to a key only reaches the subscribers of that key, so it costs
+ * O(subscribers of the key) instead of filtering the whole fan-out.
+ * <p>
+ * A topic only exists while it has subscribers. Topics are reference counted, the count is changed inside
+ * {@link ConcurrentHashMap#compute} so a topic is never removed while a new subscriber is joining it.
+ * <p>
+ * Metrics (tagged with {@code hub}) : broadcast.topics, broadcast.subscribers, broadcast.lag.max, plus the
+ * counters of {@link BroadcastHub} shared by every topic.
+ */
+public class TopicBroadcastHub<K, T> {
+
+    private final String name;
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final boolean replayLatest;
+    private final BroadcastHub.BroadcastMetrics metrics;
+    private final Map<K, Topic> topics = new ConcurrentHashMap<>();
+
+    public TopicBroadcastHub(String name, int bufferSize, OverflowPolicy overflowPolicy, boolean replayLatest,
+                             MeterRegistry meterRegistry) {
+        this.name = name;
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = overflowPolicy;
+        this.replayLatest = replayLatest;
+        this.metrics = new BroadcastHub.BroadcastMetrics(name, meterRegistry);
+        Gauge.builder("broadcast.topics", topics, Map::size)
+                .tag("hub", name)
+                .register(meterRegistry);
+        Gauge.builder("broadcast.subscribers", this, TopicBroadcastHub::subscriberCount)
+                .tag("hub", name)
+                .register(meterRegistry);
+        Gauge.builder("broadcast.lag.max", this, TopicBroadcastHub::maxLag)
+                .tag("hub", name)
+                .register(meterRegistry);
+    }
+
+    public Flux<T> subscribe(K key) {
+        return Flux.defer(() -> {
+            var topic = topics.compute(key, (k, existing) -> {
+                var acquired = existing != null ? existing : new Topic();
+                acquired.references.incrementAndGet();
+                return acquired;
+            });
+            return topic.hub.subscribe()
+                    .doFinally(signal -> release(key, topic));
+        });
+    }
+
+    /**
+     * No-op when the key has no subscriber.
+     */
+    public void publish(K key, T item) {
+        var topic = topics.get(key);
+        if (topic != null) {
+            topic.hub.publish(item);
+        }
+    }
+
+    /**
+     * Publishes a batch, grouped by key so each topic receives a single {@link BroadcastHub#publishAll(List)}.
+     */
+    public void publishAll(List<T> items, Function<T, K> keyExtractor) {
+        items.stream()
+                .collect(Collectors.groupingBy(keyExtractor, LinkedHashMap::new, Collectors.toList()))
+                .forEach((key, itemsOfKey) -> {
+                    var topic = topics.get(key);
+                    if (topic != null) {
+                        topic.hub.publishAll(itemsOfKey);
+                    }
+                });
+    }
+
+    public int topicCount() {
+        return topics.size();
+    }
+
+    public int subscriberCount() {
+        return topics.values().stream()
+                .mapToInt(topic -> topic.hub.subscriberCount())
+                .sum();
+    }
+
+    public int maxLag() {
+        return topics.values().stream()
+                .mapToInt(topic -> topic.hub.maxLag())
+                .max()
+                .orElse(0);
+    }
+
+    private void release(K key, Topic topic) {
+        topics.computeIfPresent(key, (k, current) ->
+                topic.references.decrementAndGet() == 0 && current == topic ? null : current);
+    }
+
+    private class Topic {
+
+        final BroadcastHub<T> hub = new BroadcastHub<>(name, bufferSize, overflowPolicy, replayLatest, metrics);
+        final AtomicInteger references = new AtomicInteger();
+    }
+}
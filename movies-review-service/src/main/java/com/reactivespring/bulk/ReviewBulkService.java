@@ -0,0 +1,177 @@
+package com.reactivespring.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import com.reactivespring.bus.ReviewStreamDispatcher;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewBulkResult;
+import com.reactivespring.stats.ReviewStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Inserts an NDJSON upload of reviews : every line is parsed and validated on its own, the valid reviews are written
+ * in batches of {@code batchSize} with one unordered insertMany each, so a rejected review does not stop the others.
+ * <p>
+ * The upload is read as the batches are written and a batch is only read ahead once the previous one is written, so
+ * memory is bounded by about two batches whatever the size of the upload. The results come back in the order of the
+ * lines, one per non-blank line.
+ */
+@Service
+@Slf4j
+public class ReviewBulkService {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ReviewStatsService reviewStatsService;
+    private final ReviewStreamDispatcher reviewStreamDispatcher;
+    private final int batchSize;
+
+    public ReviewBulkService(ReactiveMongoTemplate mongoTemplate, ObjectMapper objectMapper, Validator validator,
+                             ReviewStatsService reviewStatsService, ReviewStreamDispatcher reviewStreamDispatcher,
+                             @Value("${reviews.bulk.batchSize:500}") int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.reviewStatsService = reviewStatsService;
+        this.reviewStreamDispatcher = reviewStreamDispatcher;
+        this.batchSize = batchSize;
+    }
+
+    public Flux<ReviewBulkResult> insert(Flux<String> lines) {
+        return lines.index((index, line) -> parse(index + 1, line))
+                .filter(line -> !line.blank)
+                .buffer(batchSize)
+                .concatMap(this::insertBatch, 1);
+    }
+
+    private Line parse(long number, String json) {
+        if (json.isBlank()) {
+            return Line.blank(number);
+        }
+        Review review;
+        try {
+            review = objectMapper.readValue(json, Review.class);
+        } catch (JsonProcessingException ex) {
+            return Line.rejected(ReviewBulkResult.invalid(number, null, "malformed review : " + ex.getOriginalMessage()));
+        }
+        var violations = validator.validate(review);
+        if (!violations.isEmpty()) {
+            var errorMessage = violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+            return Line.rejected(ReviewBulkResult.invalid(number, review.getReviewId(), errorMessage));
+        }
+        if (review.getReviewId() == null) {
+            review.setReviewId(new ObjectId().toHexString());
+        }
+        return Line.valid(number, review);
+    }
+
+    private Flux<ReviewBulkResult> insertBatch(List<Line> batch) {
+        var valid = batch.stream()
+                .filter(line -> line.review != null)
+                .collect(Collectors.toList());
+        if (valid.isEmpty()) {
+            return Flux.fromIterable(batch).map(line -> line.result);
+        }
+        var documents = valid.stream()
+                .map(line -> {
+                    line.review.setVersion(0L);
+                    var document = new Document();
+                    mongoTemplate.getConverter().write(line.review, document);
+                    return document;
+                })
+                .collect(Collectors.toList());
+
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Review.class))
+                .flatMap(collection -> Mono.from(collection.insertMany(documents, new InsertManyOptions().ordered(false))))
+                .thenReturn(Map.<Integer, String>of())
+                .onErrorResume(MongoBulkWriteException.class, ex -> Mono.just(ex.getWriteErrors().stream()
+                        .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage))))
+                .onErrorResume(ex -> {
+                    log.warn("Bulk insert of {} reviews failed : {}", documents.size(), ex.getMessage());
+                    var errors = new HashMap<Integer, String>();
+                    for (int i = 0; i < documents.size(); i++) {
+                        errors.put(i, ex.getMessage());
+                    }
+                    return Mono.just(errors);
+                })
+                .flatMapMany(errors -> {
+                    var inserted = new ArrayList<Review>(valid.size());
+                    for (int i = 0; i < valid.size(); i++) {
+                        var line = valid.get(i);
+                        var error = errors.get(i);
+                        if (error == null) {
+                            inserted.add(line.review);
+                            line.result = ReviewBulkResult.created(line.number, line.review.getReviewId());
+                        } else {
+                            line.result = ReviewBulkResult.failed(line.number, line.review.getReviewId(), error);
+                        }
+                    }
+                    return afterInsert(inserted)
+                            .thenMany(Flux.fromIterable(batch).map(line -> line.result));
+                });
+    }
+
+    /**
+     * The reviews are saved already : a stats failure is left to the reconciliation.
+     */
+    private Mono<Void> afterInsert(List<Review> inserted) {
+        if (inserted.isEmpty()) {
+            return Mono.empty();
+        }
+        return reviewStatsService.reviewsAdded(inserted)
+                .onErrorResume(ex -> {
+                    log.warn("Review stats not updated for {} reviews : {}", inserted.size(), ex.getMessage());
+                    return Mono.empty();
+                })
+                .then(reviewStreamDispatcher.publishAll(inserted));
+    }
+
+    private static class Line {
+
+        private final long number;
+        private final boolean blank;
+        private final Review review;
+        private ReviewBulkResult result;
+
+        private Line(long number, boolean blank, Review review, ReviewBulkResult result) {
+            this.number = number;
+            this.blank = blank;
+            this.review = review;
+            this.result = result;
+        }
+
+        static Line blank(long number) {
+            return new Line(number, true, null, null);
+        }
+
+        static Line rejected(ReviewBulkResult result) {
+            return new Line(result.getLine(), false, null, result);
+        }
+
+        static Line valid(long number, Review review) {
+            return new Line(number, false, review, null);
+        }
+    }
+}
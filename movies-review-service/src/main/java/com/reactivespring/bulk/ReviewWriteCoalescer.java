@@ -0,0 +1,202 @@
+package com.reactivespring.bulk;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.WriteError;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.reactivespring.bus.ReviewStreamDispatcher;
+import com.reactivespring.domain.Review;
+import com.reactivespring.stats.ReviewStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind for POST /v1/reviews, enabled with {@code reviews.write.coalesce.enabled}. The reviews to save are
+ * queued and written together, with one unordered bulk write, once {@code maxBatchSize} of them are queued or the
+ * oldest one has waited {@code maxDelay}. At most {@code maxConcurrentFlushes} bulk writes are in flight. Every caller
+ * gets its own saved review or its own write error, a review is saved as {@link
+ * org.springframework.data.mongodb.repository.ReactiveMongoRepository#save} saves a new versioned review : inserted
+ * at version 0, a reviewId taken already fails with a {@link org.springframework.dao.DuplicateKeyException}.
+ * <p>
+ * The stats and the stream of a batch are updated as {@link ReviewBulkService} does, once the batch is saved. The
+ * queue holds one review per pending request, so it is bounded by the number of open requests.
+ */
+@Component
+@Slf4j
+public class ReviewWriteCoalescer {
+
+    private static final MongoExceptionTranslator EXCEPTION_TRANSLATOR = new MongoExceptionTranslator();
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ReviewStatsService reviewStatsService;
+    private final ReviewStreamDispatcher reviewStreamDispatcher;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final Duration maxDelay;
+    private final int maxConcurrentFlushes;
+    private final Sinks.Many<PendingWrite> queue = Sinks.many().unicast().onBackpressureBuffer();
+    private Disposable subscription;
+
+    public ReviewWriteCoalescer(ReactiveMongoTemplate mongoTemplate, ReviewStatsService reviewStatsService,
+                                ReviewStreamDispatcher reviewStreamDispatcher,
+                                @Value("${reviews.write.coalesce.enabled:false}") boolean enabled,
+                                @Value("${reviews.write.coalesce.maxBatchSize:100}") int maxBatchSize,
+                                @Value("${reviews.write.coalesce.maxDelay:5ms}") Duration maxDelay,
+                                @Value("${reviews.write.coalesce.maxConcurrentFlushes:4}") int maxConcurrentFlushes) {
+        this.mongoTemplate = mongoTemplate;
+        this.reviewStatsService = reviewStatsService;
+        this.reviewStreamDispatcher = reviewStreamDispatcher;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay;
+        this.maxConcurrentFlushes = maxConcurrentFlushes;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        // onBackpressureBuffer requests unbounded, bufferTimeout never has to emit a batch without demand
+        subscription = queue.asFlux()
+                .bufferTimeout(maxBatchSize, maxDelay)
+                .onBackpressureBuffer()
+                .flatMap(this::flush, maxConcurrentFlushes)
+                .subscribe(null, ex -> log.error("Review write coalescing terminated", ex));
+    }
+
+    /**
+     * Flushes the queued reviews and stops accepting new ones.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        queue.tryEmitComplete();
+    }
+
+    /**
+     * @return the saved review, once its batch is written.
+     */
+    public Mono<Review> save(Review review) {
+        if (subscription == null) {
+            return Mono.error(new IllegalStateException("Review write coalescing is not enabled"));
+        }
+        return Mono.create(sink -> enqueue(new PendingWrite(review, sink)));
+    }
+
+    private synchronized void enqueue(PendingWrite pendingWrite) {
+        var result = queue.tryEmitNext(pendingWrite);
+        if (result.isFailure()) {
+            pendingWrite.sink.error(new IllegalStateException("Review write coalescing stopped : " + result));
+        }
+    }
+
+    private Mono<Void> flush(List<PendingWrite> batch) {
+        var writes = batch.stream()
+                .map(this::toWriteModel)
+                .collect(Collectors.<WriteModel<Document>>toList());
+
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Review.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(writes, new BulkWriteOptions().ordered(false))))
+                .map(bulkWriteResult -> Map.<Integer, Throwable>of())
+                .onErrorResume(MongoBulkWriteException.class, ex -> Mono.just(ex.getWriteErrors().stream()
+                        .collect(Collectors.toMap(BulkWriteError::getIndex, error -> writeException(error, ex)))))
+                .onErrorResume(ex -> {
+                    log.warn("Bulk write of {} reviews failed : {}", batch.size(), ex.getMessage());
+                    var errors = new HashMap<Integer, Throwable>();
+                    for (int i = 0; i < batch.size(); i++) {
+                        errors.put(i, ex);
+                    }
+                    return Mono.just(errors);
+                })
+                .flatMap(errors -> {
+                    var saved = new ArrayList<Review>(batch.size());
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (!errors.containsKey(i)) {
+                            saved.add(batch.get(i).review);
+                        }
+                    }
+                    return afterSave(saved)
+                            .doFinally(signalType -> {
+                                for (int i = 0; i < batch.size(); i++) {
+                                    var pendingWrite = batch.get(i);
+                                    var error = errors.get(i);
+                                    if (error == null) {
+                                        pendingWrite.sink.success(pendingWrite.review);
+                                    } else {
+                                        pendingWrite.sink.error(error);
+                                    }
+                                }
+                            });
+                });
+    }
+
+    private WriteModel<Document> toWriteModel(PendingWrite pendingWrite) {
+        var review = pendingWrite.review;
+        if (review.getReviewId() == null) {
+            review.setReviewId(new ObjectId().toHexString());
+        }
+        review.setVersion(0L);
+        var document = new Document();
+        mongoTemplate.getConverter().write(review, document);
+        return new InsertOneModel<>(document);
+    }
+
+    /**
+     * The reviews are saved already : a stats failure is left to the reconciliation.
+     */
+    private Mono<Void> afterSave(List<Review> saved) {
+        if (saved.isEmpty()) {
+            return Mono.empty();
+        }
+        return reviewStatsService.reviewsAdded(saved)
+                .onErrorResume(ex -> {
+                    log.warn("Review stats not updated for {} reviews : {}", saved.size(), ex.getMessage());
+                    return Mono.empty();
+                })
+                .then(reviewStreamDispatcher.publishAll(saved));
+    }
+
+    private static Throwable writeException(BulkWriteError error, MongoBulkWriteException ex) {
+        var writeException = new MongoWriteException(
+                new WriteError(error.getCode(), error.getMessage(), error.getDetails()), ex.getServerAddress());
+        // as the repository reports it, a duplicate key as DuplicateKeyException
+        var translated = EXCEPTION_TRANSLATOR.translateExceptionIfPossible(writeException);
+        return translated != null ? translated : writeException;
+    }
+
+    private static class PendingWrite {
+
+        private final Review review;
+        private final MonoSink<Review> sink;
+
+        private PendingWrite(Review review, MonoSink<Review> sink) {
+            this.review = review;
+            this.sink = sink;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.reactivespring.bus;
+
+import com.reactivespring.domain.Review;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Single instance deployments : {@link ReviewStreamDispatcher} already dispatches the local reviews, there is
+ * nothing to exchange.
+ */
+@Component
+@ConditionalOnProperty(name = "reviews.stream.bus", havingValue = "local")
+public class LocalReviewEventBus implements ReviewEventBus {
+
+    @Override
+    public Mono<Void> publish(Review review) {
+        return Mono.empty();
+    }
+
+    @Override
+    public Flux<Review> events() {
+        return Flux.never();
+    }
+}
@@ -0,0 +1,112 @@
+package com.reactivespring.bus;
+
+import com.mongodb.MongoCommandException;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Event bus over a MongoDB capped collection : every instance inserts its reviews and tails the collection with a
+ * tailable cursor. Works on a standalone server (embedded Mongo included), no replica set needed.
+ * <p>
+ * A tailable cursor dies when the collection is empty or the server goes away, the tail is then re-opened
+ * {@code clockSkew} before the newest event seen : the ObjectIds are generated by the clients, an event of another
+ * instance with a lagging clock can land after a newer one. Re-tailing thus delivers events twice (the
+ * {@link ReviewStreamDispatcher} drops them by reviewId) but never skips one still in the collection.
+ */
+@Component
+@ConditionalOnProperty(name = "reviews.stream.bus", havingValue = "mongo", matchIfMissing = true)
+@Slf4j
+public class MongoReviewEventBus implements ReviewEventBus {
+
+    private static final int NAMESPACE_EXISTS = 48;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final long collectionSize;
+    private final long maxEvents;
+    private final Duration clockSkew;
+    private final Duration retryDelay;
+    private final Mono<Void> collectionReady;
+
+    public MongoReviewEventBus(ReactiveMongoTemplate mongoTemplate,
+                               @Value("${reviews.stream.mongo.collectionSize:16777216}") long collectionSize,
+                               @Value("${reviews.stream.mongo.maxEvents:100000}") long maxEvents,
+                               @Value("${reviews.stream.mongo.clockSkew:5s}") Duration clockSkew,
+                               @Value("${reviews.stream.mongo.retryDelay:1s}") Duration retryDelay) {
+        this.mongoTemplate = mongoTemplate;
+        this.collectionSize = collectionSize;
+        this.maxEvents = maxEvents;
+        this.clockSkew = clockSkew;
+        this.retryDelay = retryDelay;
+        this.collectionReady = createCappedCollection().cache();
+    }
+
+    @Override
+    public Mono<Void> publish(Review review) {
+        return collectionReady
+                .then(mongoTemplate.insert(new ReviewEvent(null, review)))
+                .then();
+    }
+
+    /**
+     * One insertMany for all the reviews.
+     */
+    @Override
+    public Mono<Void> publishAll(List<Review> reviews) {
+        if (reviews.isEmpty()) {
+            return Mono.empty();
+        }
+        var events = reviews.stream()
+                .map(review -> new ReviewEvent(null, review))
+                .collect(Collectors.toList());
+        return collectionReady
+                .thenMany(mongoTemplate.insertAll(events))
+                .then();
+    }
+
+    @Override
+    public Flux<Review> events() {
+        var lastSeen = new AtomicLong(System.currentTimeMillis());
+        return collectionReady
+                .thenMany(Flux.defer(() -> mongoTemplate.tail(
+                        Query.query(Criteria.where("_id").gt(new ObjectId(new Date(lastSeen.get() - clockSkew.toMillis())))),
+                        ReviewEvent.class)))
+                .doOnNext(event -> lastSeen.accumulateAndGet(new ObjectId(event.getId()).getDate().getTime(), Math::max))
+                .map(ReviewEvent::getReview)
+                .repeatWhen(completed -> completed.delayElements(retryDelay))
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, retryDelay)
+                        .doBeforeRetry(signal -> log.warn("Re-tailing reviewEvents after : {}", signal.failure().getMessage())));
+    }
+
+    private Mono<Void> createCappedCollection() {
+        var options = CollectionOptions.empty()
+                .capped()
+                .size(collectionSize)
+                .maxDocuments(maxEvents);
+        return mongoTemplate.collectionExists(ReviewEvent.class)
+                .flatMap(exists -> exists
+                        ? Mono.empty()
+                        : mongoTemplate.createCollection(ReviewEvent.class, options)
+                                .onErrorResume(MongoCommandException.class, ex -> ex.getErrorCode() == NAMESPACE_EXISTS
+                                        ? Mono.empty()
+                                        : Mono.error(ex)))
+                .then();
+    }
+}
@@ -0,0 +1,27 @@
+package com.reactivespring.bus;
+
+import com.reactivespring.domain.Review;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Carries the added reviews across the review-service instances, so /v1/reviews/stream subscribers see the reviews
+ * written on any instance. Selected with {@code reviews.stream.bus} ({@code mongo} by default, or {@code local}).
+ */
+public interface ReviewEventBus {
+
+    Mono<Void> publish(Review review);
+
+    default Mono<Void> publishAll(List<Review> reviews) {
+        return Flux.fromIterable(reviews)
+                .concatMap(this::publish)
+                .then();
+    }
+
+    /**
+     * Reviews published on every instance, including this one, from now on. Delivery is at least once.
+     */
+    Flux<Review> events();
+}
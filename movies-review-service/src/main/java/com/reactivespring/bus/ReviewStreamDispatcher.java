@@ -0,0 +1,105 @@
+package com.reactivespring.bus;
+
+import com.reactivespring.broadcast.BroadcastHub;
+import com.reactivespring.broadcast.TopicBroadcastHub;
+import com.reactivespring.domain.Review;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Feeds the local review hubs. A review added on this instance is dispatched right away and published on the
+ * {@link ReviewEventBus}, reviews coming from the bus are dispatched in batches of up to {@code batchSize}
+ * (or whatever arrived within {@code batchDelay}).
+ * <p>
+ * The bus echoes the reviews of this instance and may redeliver after a re-tail : the last {@code dedupeSize}
+ * reviewIds are remembered and a review already dispatched is dropped.
+ */
+@Component
+@Slf4j
+public class ReviewStreamDispatcher {
+
+    private final ReviewEventBus reviewEventBus;
+    private final BroadcastHub<Review> reviewsHub;
+    private final TopicBroadcastHub<Long, Review> reviewsByMovieHub;
+    private final int batchSize;
+    private final Duration batchDelay;
+    private final Map<String, Boolean> dispatched;
+    private Disposable subscription;
+
+    public ReviewStreamDispatcher(ReviewEventBus reviewEventBus, BroadcastHub<Review> reviewsHub,
+                                  TopicBroadcastHub<Long, Review> reviewsByMovieHub,
+                                  @Value("${reviews.stream.batchSize:64}") int batchSize,
+                                  @Value("${reviews.stream.batchDelay:10ms}") Duration batchDelay,
+                                  @Value("${reviews.stream.dedupeSize:10000}") int dedupeSize) {
+        this.reviewEventBus = reviewEventBus;
+        this.reviewsHub = reviewsHub;
+        this.reviewsByMovieHub = reviewsByMovieHub;
+        this.batchSize = batchSize;
+        this.batchDelay = batchDelay;
+        this.dispatched = new LinkedHashMap<>(dedupeSize, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > dedupeSize;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void start() {
+        // the subscriber requests unbounded, bufferTimeout never has to emit a batch without demand
+        subscription = reviewEventBus.events()
+                .bufferTimeout(batchSize, batchDelay)
+                .subscribe(this::dispatch, ex -> log.error("Review event bus terminated", ex));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * Dispatches a review added on this instance and shares it with the other instances. A bus failure is logged,
+     * the review is saved already.
+     */
+    public Mono<Void> publish(Review review) {
+        return Mono.fromRunnable(() -> dispatch(List.of(review)))
+                .then(reviewEventBus.publish(review))
+                .onErrorResume(ex -> {
+                    log.warn("Review {} not published on the event bus : {}", review.getReviewId(), ex.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * {@link #publish(Review)} for a batch of reviews, shared with the other instances in one bus write.
+     */
+    public Mono<Void> publishAll(List<Review> reviews) {
+        return Mono.fromRunnable(() -> dispatch(reviews))
+                .then(reviewEventBus.publishAll(reviews))
+                .onErrorResume(ex -> {
+                    log.warn("{} reviews not published on the event bus : {}", reviews.size(), ex.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    synchronized void dispatch(List<Review> reviews) {
+        var fresh = reviews.stream()
+                .filter(review -> dispatched.put(review.getReviewId(), Boolean.TRUE) == null)
+                .collect(Collectors.toList());
+        reviewsHub.publishAll(fresh);
+        reviewsByMovieHub.publishAll(fresh, Review::getMovieInfoId);
+    }
+}
@@ -0,0 +1,30 @@
+package com.reactivespring.config;
+
+import com.reactivespring.broadcast.BroadcastHub;
+import com.reactivespring.broadcast.OverflowPolicy;
+import com.reactivespring.broadcast.TopicBroadcastHub;
+import com.reactivespring.domain.Review;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ReviewStreamConfig {
+
+    @Bean
+    public BroadcastHub<Review> reviewsHub(@Value("${reviews.stream.bufferSize:256}") int bufferSize,
+                                           @Value("${reviews.stream.overflowPolicy:DROP_OLDEST}") OverflowPolicy overflowPolicy,
+                                           @Value("${reviews.stream.replayLatest:true}") boolean replayLatest,
+                                           MeterRegistry meterRegistry) {
+        return new BroadcastHub<>("reviews", bufferSize, overflowPolicy, replayLatest, meterRegistry);
+    }
+
+    @Bean
+    public TopicBroadcastHub<Long, Review> reviewsByMovieHub(@Value("${reviews.stream.bufferSize:256}") int bufferSize,
+                                                             @Value("${reviews.stream.overflowPolicy:DROP_OLDEST}") OverflowPolicy overflowPolicy,
+                                                             @Value("${reviews.stream.replayLatest:true}") boolean replayLatest,
+                                                             MeterRegistry meterRegistry) {
+        return new TopicBroadcastHub<>("reviewsByMovie", bufferSize, overflowPolicy, replayLatest, meterRegistry);
+    }
+}
@@ -1,10 +1,13 @@
 package com.reactivespring.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.Min;
@@ -14,6 +17,8 @@ import javax.validation.constraints.NotNull;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document
+// serves the lookups by movieInfoId, newest first when sorted on reviewId
+@CompoundIndex(name = "movieInfoId_id", def = "{'movieInfoId': 1, '_id': -1}")
 public class Review {
 
     @Id
@@ -23,4 +28,14 @@ public class Review {
     private String comment;
     @Min(value = 0L, message = "rating.negative : please pass a non-negative value")
     private Double rating;
+    /**
+     * Incremented by every write of the review, sent as its ETag.
+     */
+    @Version
+    @JsonIgnore
+    private Long version;
+
+    public Review(String reviewId, Long movieInfoId, String comment, Double rating) {
+        this(reviewId, movieInfoId, comment, rating, null);
+    }
 }
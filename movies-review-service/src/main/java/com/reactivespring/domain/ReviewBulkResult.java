@@ -0,0 +1,46 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The outcome of one line of a POST /v1/reviews/bulk upload.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewBulkResult {
+
+    public enum Status {
+        CREATED,
+        /**
+         * Not valid JSON or failing the review constraints, not sent to the database.
+         */
+        INVALID,
+        /**
+         * Rejected by the database, a duplicate reviewId for instance.
+         */
+        FAILED
+    }
+
+    /**
+     * 1-based line number in the upload.
+     */
+    private long line;
+    private String reviewId;
+    private Status status;
+    private String error;
+
+    public static ReviewBulkResult created(long line, String reviewId) {
+        return new ReviewBulkResult(line, reviewId, Status.CREATED, null);
+    }
+
+    public static ReviewBulkResult invalid(long line, String reviewId, String error) {
+        return new ReviewBulkResult(line, reviewId, Status.INVALID, error);
+    }
+
+    public static ReviewBulkResult failed(long line, String reviewId, String error) {
+        return new ReviewBulkResult(line, reviewId, Status.FAILED, error);
+    }
+}
@@ -0,0 +1,21 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * A review added on one of the review-service instances, as exchanged on the cross-instance event bus.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "reviewEvents")
+public class ReviewEvent {
+
+    @Id
+    private String id;
+    private Review review;
+}
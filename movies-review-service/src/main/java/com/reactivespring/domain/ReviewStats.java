@@ -0,0 +1,48 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Review aggregates of one movie. The histogram counts the ratings per bucket : "0" for [0, 1), ..., "10" for 10
+ * and above. Unrated reviews are counted in {@code count} only.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "reviewStats")
+public class ReviewStats {
+
+    public static final int MAX_BUCKET = 10;
+
+    @Id
+    private Long movieInfoId;
+    private long count;
+    private long ratingCount;
+    private double ratingSum;
+    private Map<String, Long> histogram = new HashMap<>();
+    @JsonIgnore
+    private Instant reconciledAt;
+
+    public static ReviewStats empty(Long movieInfoId) {
+        return new ReviewStats(movieInfoId, 0, 0, 0, new HashMap<>(), null);
+    }
+
+    public static String bucket(double rating) {
+        return String.valueOf((int) Math.min(Math.floor(rating), MAX_BUCKET));
+    }
+
+    @Transient
+    public Double getAverage() {
+        return ratingCount == 0 ? null : ratingSum / ratingCount;
+    }
+}
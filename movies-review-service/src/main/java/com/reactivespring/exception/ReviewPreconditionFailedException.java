@@ -0,0 +1,14 @@
+package com.reactivespring.exception;
+
+/**
+ * The If-Match header of a write matches no version of the review : it changed since the client read it.
+ */
+public class ReviewPreconditionFailedException extends RuntimeException{
+
+    private String message;
+
+    public ReviewPreconditionFailedException(String message) {
+        super(message);
+        this.message = message;
+    }
+}
@@ -2,10 +2,13 @@ package com.reactivespring.exceptionhandler;
 
 import com.reactivespring.exception.ReviewDataException;
 import com.reactivespring.exception.ReviewNotFoundException;
+import com.reactivespring.exception.ReviewPreconditionFailedException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.web.reactive.error.ErrorWebExceptionHandler;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
@@ -30,6 +33,17 @@ public class GlobalErrorHandler implements ErrorWebExceptionHandler {
             return exchange.getResponse().writeWith(Mono.just(errorMessage));
         }
 
+        if(ex instanceof ReviewPreconditionFailedException){
+            exchange.getResponse().setStatusCode(HttpStatus.PRECONDITION_FAILED);
+            return exchange.getResponse().writeWith(Mono.just(errorMessage));
+        }
+
+        // a concurrent write changed the review since it was read, or its reviewId is taken already
+        if(ex instanceof OptimisticLockingFailureException || ex instanceof DuplicateKeyException){
+            exchange.getResponse().setStatusCode(HttpStatus.CONFLICT);
+            return exchange.getResponse().writeWith(Mono.just(errorMessage));
+        }
+
         exchange.getResponse().setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
         return exchange.getResponse().writeWith(Mono.just(errorMessage));
     }
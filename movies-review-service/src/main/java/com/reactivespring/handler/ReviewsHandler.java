@@ -1,25 +1,44 @@
 package com.reactivespring.handler;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.broadcast.BroadcastHub;
+import com.reactivespring.broadcast.TopicBroadcastHub;
+import com.reactivespring.bulk.ReviewBulkService;
+import com.reactivespring.bulk.ReviewWriteCoalescer;
+import com.reactivespring.bus.ReviewStreamDispatcher;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewBulkResult;
 import com.reactivespring.exception.ReviewDataException;
 import com.reactivespring.exception.ReviewNotFoundException;
+import com.reactivespring.exception.ReviewPreconditionFailedException;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.stats.ReviewStatsService;
 import com.reactivespring.validator.ReviewValidator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Hints;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.Errors;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Component
@@ -28,13 +47,45 @@ public class ReviewsHandler {
     private ReviewReactiveRepository reviewReactiveRepository;
     //private ReviewValidator reviewValidator;
 
-    Sinks.Many<Review> reviewsSink = Sinks.many().replay().latest();
+    private BroadcastHub<Review> reviewsHub;
+    private TopicBroadcastHub<Long, Review> reviewsByMovieHub;
+    private ReviewStreamDispatcher reviewStreamDispatcher;
+    private ReviewStatsService reviewStatsService;
+    private ReviewBulkService reviewBulkService;
+    private ReviewWriteCoalescer reviewWriteCoalescer;
 
     @Autowired
     private Validator validator;
 
-    public ReviewsHandler(ReviewReactiveRepository reviewReactiveRepository) {
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${reviews.query.defaultPageSize:100}")
+    private int defaultPageSize;
+
+    @Value("${reviews.query.maxPageSize:1000}")
+    private int maxPageSize;
+
+    @Value("${reviews.query.streamBatchSize:500}")
+    private int streamBatchSize;
+
+    @Value("${reviews.query.maxStreamSize:100000}")
+    private int maxStreamSize;
+
+    @Value("${reviews.stream.heartbeat:30s}")
+    private Duration heartbeat;
+
+    public ReviewsHandler(ReviewReactiveRepository reviewReactiveRepository, BroadcastHub<Review> reviewsHub,
+                          TopicBroadcastHub<Long, Review> reviewsByMovieHub, ReviewStreamDispatcher reviewStreamDispatcher,
+                          ReviewStatsService reviewStatsService, ReviewBulkService reviewBulkService,
+                          ReviewWriteCoalescer reviewWriteCoalescer) {
         this.reviewReactiveRepository = reviewReactiveRepository;
+        this.reviewsHub = reviewsHub;
+        this.reviewsByMovieHub = reviewsByMovieHub;
+        this.reviewStreamDispatcher = reviewStreamDispatcher;
+        this.reviewStatsService = reviewStatsService;
+        this.reviewBulkService = reviewBulkService;
+        this.reviewWriteCoalescer = reviewWriteCoalescer;
     }
 
  /*    public ReviewsHandler(ReviewReactiveRepository reviewReactiveRepository, ReviewValidator reviewValidator) {
@@ -45,16 +96,84 @@ public class ReviewsHandler {
 
     static Mono<ServerResponse> notFound = ServerResponse.notFound().build();
 
+    private static final byte[] NEWLINE = {'\n'};
+
 
     public Mono<ServerResponse> getReviews(ServerRequest serverRequest) {
         var movieInfoId = serverRequest.queryParam("movieInfoId");
         if (movieInfoId.isPresent()) {
+            if (serverRequest.queryParam("limit").isPresent()) {
+                return getLatestReviews(movieInfoId(movieInfoId.get()), limit(serverRequest, defaultPageSize, maxPageSize));
+            }
             var reviews = reviewReactiveRepository.findReviewsByMovieInfoId(Long.valueOf(movieInfoId.get()));
             return buildReviewsResponse(reviews);
-        } else {
-            var reviews = reviewReactiveRepository.findAll();
-            return buildReviewsResponse(reviews);
         }
+        var after = serverRequest.queryParam("after").orElse(null);
+        if (serverRequest.headers().accept().contains(MediaType.APPLICATION_NDJSON)) {
+            return streamReviews(after, limit(serverRequest, maxStreamSize, maxStreamSize));
+        }
+        return getReviewsPage(serverRequest, after, limit(serverRequest, defaultPageSize, maxPageSize));
+    }
+
+    /**
+     * The {@code limit} latest reviews of a movie, newest first, read from the (movieInfoId, _id) index whatever the
+     * number of reviews of the movie.
+     */
+    private Mono<ServerResponse> getLatestReviews(Long movieInfoId, int limit) {
+        return buildReviewsResponse(reviewReactiveRepository
+                .findReviewsByMovieInfoIdOrderByReviewIdDesc(movieInfoId, PageRequest.of(0, limit)));
+    }
+
+    /**
+     * One page as a JSON array. When the page is full, the Link header points to the next one.
+     */
+    private Mono<ServerResponse> getReviewsPage(ServerRequest serverRequest, String after, int limit) {
+        return reviewReactiveRepository.findReviewsAfter(after, limit, limit)
+                .collectList()
+                .flatMap(page -> {
+                    var response = ServerResponse.ok();
+                    if (page.size() == limit) {
+                        var next = UriComponentsBuilder.fromUri(serverRequest.uri())
+                                .replaceQueryParam("after", page.get(page.size() - 1).getReviewId())
+                                .replaceQueryParam("limit", limit)
+                                .build()
+                                .toUriString();
+                        response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+                    }
+                    return response.bodyValue(page);
+                });
+    }
+
+    /**
+     * NDJSON written as the Mongo cursor batches arrive, nothing is collected in memory. Capped at maxStreamSize
+     * reviews, a client reads further by passing the last reviewId as {@code after}.
+     */
+    private Mono<ServerResponse> streamReviews(String after, int limit) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(reviewReactiveRepository.findReviewsAfter(after, limit, Math.min(streamBatchSize, limit)), Review.class);
+    }
+
+    private static int limit(ServerRequest serverRequest, int defaultLimit, int maxLimit) {
+        var limit = serverRequest.queryParam("limit")
+                .map(value -> {
+                    try {
+                        return Integer.parseInt(value);
+                    } catch (NumberFormatException ex) {
+                        throw new ReviewDataException("limit must be a number : " + value);
+                    }
+                })
+                .orElse(defaultLimit);
+        if (limit <= 0) {
+            throw new ReviewDataException("limit must be positive : " + limit);
+        }
+        return Math.min(limit, maxLimit);
+    }
+
+    public Mono<ServerResponse> getReviewsByMovieInfoIds(ServerRequest serverRequest) {
+        var reviews = serverRequest.bodyToMono(new ParameterizedTypeReference<List<Long>>() {})
+                .flatMapMany(movieInfoIds -> reviewReactiveRepository.findReviewsByMovieInfoIdIn(movieInfoIds));
+        return buildReviewsResponse(reviews);
     }
 
     private Mono<ServerResponse> buildReviewsResponse(Flux<Review> reviews) {
@@ -62,19 +181,37 @@ public class ReviewsHandler {
                 .body(reviews, Review.class);
     }
 
+    /**
+     * Always creates a review : a reviewId sent by the client is ignored, the review is replaced through
+     * PUT /v1/reviews/{id} only.
+     */
     public Mono<ServerResponse> addReview(ServerRequest serverRequest) {
 
         return serverRequest.bodyToMono(Review.class)
                 .doOnNext(this::validate)
-                .flatMap(review -> reviewReactiveRepository.save(review))
-                .doOnNext(review -> {
-                    reviewsSink.tryEmitNext(review);
-                })
+                .doOnNext(review -> review.setReviewId(null))
+                .flatMap(review -> reviewWriteCoalescer.isEnabled() ? reviewWriteCoalescer.save(review) : save(review))
                 .flatMap(savedReview ->
                         ServerResponse.status(HttpStatus.CREATED)
+                                .eTag(eTag(savedReview))
                                 .bodyValue(savedReview));
     }
 
+    private Mono<Review> save(Review review) {
+        return reviewReactiveRepository.save(review)
+                .flatMap(savedReview -> reviewStatsService.reviewAdded(savedReview).thenReturn(savedReview))
+                .flatMap(savedReview -> reviewStreamDispatcher.publish(savedReview).thenReturn(savedReview));
+    }
+
+    /**
+     * NDJSON in, one {@link ReviewBulkResult} per line out, streamed as the batches are written.
+     */
+    public Mono<ServerResponse> addReviews(ServerRequest serverRequest) {
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(reviewBulkService.insert(serverRequest.bodyToFlux(String.class)), ReviewBulkResult.class);
+    }
+
     private void validate(Review review) {
         Errors errors = new BeanPropertyBindingResult(review, "review");
        /* reviewValidator.validate(review, errors);
@@ -100,43 +237,197 @@ public class ReviewsHandler {
         }
     }
 
+    /**
+     * The comment and rating of the body replace the stored ones in one findAndModify, as a PATCH does, so a review
+     * written before versioning is updated too. With If-Match, only while its version is one of the ETags.
+     */
     public Mono<ServerResponse> updateReview(ServerRequest serverRequest) {
 
         var reviewId = serverRequest.pathVariable("id");
+        var expectedVersions = ifMatchVersions(serverRequest);
 
-        var existingReview = reviewReactiveRepository.findById(reviewId);
-        //.switchIfEmpty(Mono.error(new ReviewNotFoundException("Review not Found for the given Review Id")));
-
-        return existingReview
-                .flatMap(review -> serverRequest.bodyToMono(Review.class)
-                        .map(reqReview -> {
-                            review.setComment(reqReview.getComment());
-                            review.setRating(reqReview.getRating());
-                            return review;
+        return serverRequest.bodyToMono(Review.class)
+                .flatMap(reqReview -> reviewReactiveRepository.updateReview(reviewId, reqReview, expectedVersions)
+                        .flatMap(previousReview -> {
+                            var updatedReview = new Review(reviewId, previousReview.getMovieInfoId(),
+                                    reqReview.getComment(), reqReview.getRating(), version(previousReview) + 1);
+                            return reviewStatsService
+                                    .ratingUpdated(updatedReview.getMovieInfoId(), previousReview.getRating(),
+                                            updatedReview.getRating())
+                                    .then(ServerResponse.status(HttpStatus.OK)
+                                            .eTag(eTag(updatedReview))
+                                            .bodyValue(updatedReview));
                         })
-                        .flatMap(reviewReactiveRepository::save)
-                        .flatMap(savedReview ->
-                                ServerResponse.status(HttpStatus.OK)
-                                        .bodyValue(savedReview)))
+                        .switchIfEmpty(Mono.defer(() -> notPatched(reviewId, expectedVersions))))
                 .switchIfEmpty(notFound);
+    }
 
+    public Mono<ServerResponse> getReviewById(ServerRequest serverRequest) {
+        var reviewId = serverRequest.pathVariable("id");
+        return reviewReactiveRepository.findById(reviewId)
+                .flatMap(review -> ServerResponse.ok()
+                        .eTag(eTag(review))
+                        .bodyValue(review))
+                .switchIfEmpty(notFound);
+    }
+
+    /**
+     * Sets the comment and/or rating of the body, the fields left out keep their value. The review is updated in one
+     * round trip, with If-Match only while its version is one of the ETags, 412 otherwise.
+     */
+    public Mono<ServerResponse> patchReview(ServerRequest serverRequest) {
+        var reviewId = serverRequest.pathVariable("id");
+        var expectedVersions = ifMatchVersions(serverRequest);
+        return serverRequest.bodyToMono(Review.class)
+                .doOnNext(this::validatePatch)
+                .flatMap(patch -> reviewReactiveRepository.patchReview(reviewId, patch, expectedVersions)
+                        .flatMap(previousReview -> {
+                            var patchedReview = patched(previousReview, patch);
+                            return reviewStatsService
+                                    .ratingUpdated(previousReview.getMovieInfoId(), previousReview.getRating(),
+                                            patchedReview.getRating())
+                                    .then(ServerResponse.ok()
+                                            .eTag(eTag(patchedReview))
+                                            .bodyValue(patchedReview));
+                        })
+                        .switchIfEmpty(Mono.defer(() -> notPatched(reviewId, expectedVersions))));
+    }
+
+    private void validatePatch(Review patch) {
+        if (patch.getComment() == null && patch.getRating() == null) {
+            throw new ReviewDataException("comment or rating is required");
+        }
+        var constraintViolations = validator.validateProperty(patch, "rating");
+        if (constraintViolations.size() > 0) {
+            throw new ReviewDataException(constraintViolations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+    }
+
+    private static Review patched(Review previousReview, Review patch) {
+        return new Review(previousReview.getReviewId(), previousReview.getMovieInfoId(),
+                patch.getComment() != null ? patch.getComment() : previousReview.getComment(),
+                patch.getRating() != null ? patch.getRating() : previousReview.getRating(),
+                version(previousReview) + 1);
+    }
+
+    /**
+     * Nothing matched by a PUT or a PATCH : 404 when the review does not exist, 412 when it is at another version.
+     */
+    private Mono<ServerResponse> notPatched(String reviewId, List<Long> expectedVersions) {
+        if (expectedVersions == null) {
+            return notFound;
+        }
+        return reviewReactiveRepository.existsById(reviewId)
+                .flatMap(exists -> exists
+                        ? Mono.error(new ReviewPreconditionFailedException("Review " + reviewId + " does not match If-Match"))
+                        : notFound);
+    }
 
+    /**
+     * @return the versions of the If-Match ETags, null when there is no If-Match or it is {@code *}. An ETag that is
+     * not a version matches no review.
+     */
+    private static List<Long> ifMatchVersions(ServerRequest serverRequest) {
+        var ifMatch = serverRequest.headers().header(HttpHeaders.IF_MATCH);
+        if (ifMatch.isEmpty()) {
+            return null;
+        }
+        var versions = new ArrayList<Long>();
+        for (var header : ifMatch) {
+            for (var eTag : header.split(",")) {
+                var value = eTag.strip();
+                if (value.equals("*")) {
+                    return null;
+                }
+                value = value.startsWith("W/") ? value.substring(2) : value;
+                value = value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")
+                        ? value.substring(1, value.length() - 1) : value;
+                try {
+                    versions.add(Long.valueOf(value));
+                } catch (NumberFormatException ex) {
+                    log.debug("If-Match ETag is not a review version : {}", eTag);
+                }
+            }
+        }
+        return versions;
     }
 
+    private static String eTag(Review review) {
+        return "\"" + version(review) + "\"";
+    }
+
+    /**
+     * Reviews written before versioning have no version : they are at version 0.
+     */
+    private static long version(Review review) {
+        return review.getVersion() != null ? review.getVersion() : 0L;
+    }
+
+    /**
+     * One findAndRemove, which also returns the review its stats need : 204, or 404 when there was no such review.
+     */
     public Mono<ServerResponse> deleteReview(ServerRequest serverRequest) {
         var reviewId = serverRequest.pathVariable("id");
-        return reviewReactiveRepository.findById(reviewId)
-                .flatMap(review -> reviewReactiveRepository.deleteById(reviewId))
+        return reviewReactiveRepository.findAndRemoveById(reviewId)
+                .flatMap(review -> reviewStatsService.reviewDeleted(review)
+                        .then(ServerResponse.noContent().build()))
+                .switchIfEmpty(notFound);
+
+    }
+
+    /**
+     * Every review of {@code movieInfoId} with one deleteMany, and its stats.
+     */
+    public Mono<ServerResponse> deleteReviews(ServerRequest serverRequest) {
+        var movieInfoId = movieInfoId(serverRequest.queryParam("movieInfoId")
+                .orElseThrow(() -> new ReviewDataException("movieInfoId is required")));
+        return reviewReactiveRepository.deleteByMovieInfoId(movieInfoId)
+                .doOnNext(deleted -> log.info("Deleted {} reviews of movie {}", deleted, movieInfoId))
+                .then(reviewStatsService.movieReviewsDeleted(movieInfoId))
                 .then(ServerResponse.noContent().build());
+    }
 
+    public Mono<ServerResponse> getReviewStats(ServerRequest serverRequest) {
+        var movieInfoId = serverRequest.queryParam("movieInfoId")
+                .orElseThrow(() -> new ReviewDataException("movieInfoId is required"));
+        return reviewStatsService.getStats(movieInfoId(movieInfoId))
+                .flatMap(stats -> ServerResponse.ok().bodyValue(stats));
     }
 
+    private static Long movieInfoId(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException ex) {
+            throw new ReviewDataException("movieInfoId must be a number : " + value);
+        }
+    }
+
+    /**
+     * The live reviews as NDJSON, each line flushed. An empty line is written every {@code heartbeat} : on a quiet
+     * stream it is the only write, so a client gone without closing its connection fails it and releases its
+     * subscription instead of holding it forever. Heartbeats the client is too slow to read are dropped.
+     */
     public Mono<ServerResponse> getReviewsStream(ServerRequest serverRequest) {
+        var reviews = serverRequest.queryParam("movieInfoId")
+                .map(movieInfoId -> reviewsByMovieHub.subscribe(movieInfoId(movieInfoId)))
+                .orElseGet(reviewsHub::subscribe);
+        var encoder = new Jackson2JsonEncoder(objectMapper);
         return ServerResponse.ok()
                 .contentType(MediaType.APPLICATION_NDJSON)
-                .body(reviewsSink.asFlux(), Review.class)
+                .body((response, context) -> {
+                    var bufferFactory = response.bufferFactory();
+                    var lines = reviews.map(review -> Flux.just(
+                            encoder.encodeValue(review, bufferFactory, ResolvableType.forClass(Review.class),
+                                    MediaType.APPLICATION_NDJSON, Hints.none()),
+                            bufferFactory.wrap(NEWLINE)));
+                    var heartbeats = Flux.interval(heartbeat)
+                            .onBackpressureDrop()
+                            .map(tick -> Flux.just(bufferFactory.wrap(NEWLINE)));
+                    return response.writeAndFlushWith(lines.mergeWith(heartbeats));
+                })
                 .log();
-
-
     }
 }
@@ -0,0 +1,14 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import reactor.core.publisher.Mono;
+
+public interface ReviewDeleteRepository {
+
+    /**
+     * Deletes the review with one findAndRemove, unlike a findById followed by a deleteById.
+     *
+     * @return the deleted review, empty when there was none.
+     */
+    Mono<Review> findAndRemoveById(String reviewId);
+}
@@ -0,0 +1,21 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+
+public class ReviewDeleteRepositoryImpl implements ReviewDeleteRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public ReviewDeleteRepositoryImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Mono<Review> findAndRemoveById(String reviewId) {
+        return mongoTemplate.findAndRemove(Query.query(Criteria.where("reviewId").is(reviewId)), Review.class);
+    }
+}
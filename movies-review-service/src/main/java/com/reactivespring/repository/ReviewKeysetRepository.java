@@ -0,0 +1,15 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import reactor.core.publisher.Flux;
+
+public interface ReviewKeysetRepository {
+
+    /**
+     * Keyset pagination on _id : the reviews ordered by reviewId, starting right after {@code after}
+     * (from the first one when null). Served from the _id index whatever the page, unlike skip/limit.
+     *
+     * @param cursorBatchSize documents fetched per cursor batch, the Flux emits them as each batch arrives.
+     */
+    Flux<Review> findReviewsAfter(String after, int limit, int cursorBatchSize);
+}
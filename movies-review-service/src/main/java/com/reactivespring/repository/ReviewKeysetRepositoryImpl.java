@@ -0,0 +1,29 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+public class ReviewKeysetRepositoryImpl implements ReviewKeysetRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public ReviewKeysetRepositoryImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Flux<Review> findReviewsAfter(String after, int limit, int cursorBatchSize) {
+        var query = new Query()
+                .with(Sort.by(Sort.Direction.ASC, "reviewId"))
+                .limit(limit)
+                .cursorBatchSize(cursorBatchSize);
+        if (after != null) {
+            query.addCriteria(Criteria.where("reviewId").gt(after));
+        }
+        return mongoTemplate.find(query, Review.class);
+    }
+}
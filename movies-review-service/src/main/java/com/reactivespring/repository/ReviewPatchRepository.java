@@ -0,0 +1,26 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface ReviewPatchRepository {
+
+    /**
+     * Sets the non-null comment and rating of {@code patch} and increments the version, in one findAndModify : no
+     * read-modify-write, concurrent patches of the same review are applied one after the other. With
+     * {@code expectedVersions} (null for any), the review is only updated while at one of these versions.
+     *
+     * @return the review as it was before the update, empty when no review matched.
+     */
+    Mono<Review> patchReview(String reviewId, Review patch, List<Long> expectedVersions);
+
+    /**
+     * As {@link #patchReview}, but the comment and rating of {@code review} replace the stored ones, null ones being
+     * unset.
+     *
+     * @return the review as it was before the update, empty when no review matched.
+     */
+    Mono<Review> updateReview(String reviewId, Review review, List<Long> expectedVersions);
+}
@@ -0,0 +1,60 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public class ReviewPatchRepositoryImpl implements ReviewPatchRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public ReviewPatchRepositoryImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Mono<Review> patchReview(String reviewId, Review patch, List<Long> expectedVersions) {
+        var update = new Update().inc("version", 1L);
+        if (patch.getComment() != null) {
+            update.set("comment", patch.getComment());
+        }
+        if (patch.getRating() != null) {
+            update.set("rating", patch.getRating());
+        }
+        return mongoTemplate.findAndModify(query(reviewId, expectedVersions), update, Review.class);
+    }
+
+    @Override
+    public Mono<Review> updateReview(String reviewId, Review review, List<Long> expectedVersions) {
+        var update = new Update().inc("version", 1L);
+        if (review.getComment() != null) {
+            update.set("comment", review.getComment());
+        } else {
+            update.unset("comment");
+        }
+        if (review.getRating() != null) {
+            update.set("rating", review.getRating());
+        } else {
+            update.unset("rating");
+        }
+        return mongoTemplate.findAndModify(query(reviewId, expectedVersions), update, Review.class);
+    }
+
+    private static Query query(String reviewId, List<Long> expectedVersions) {
+        var criteria = Criteria.where("reviewId").is(reviewId);
+        if (expectedVersions != null) {
+            var version = Criteria.where("version").in(expectedVersions);
+            if (expectedVersions.contains(0L)) {
+                // reviews written before versioning have none, they are at version 0
+                version = new Criteria().orOperator(version, Criteria.where("version").is(null));
+            }
+            criteria = new Criteria().andOperator(criteria, version);
+        }
+        return Query.query(criteria);
+    }
+}
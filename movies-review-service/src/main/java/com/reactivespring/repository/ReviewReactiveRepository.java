@@ -1,12 +1,31 @@
 package com.reactivespring.repository;
 
 import com.reactivespring.domain.Review;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-public interface ReviewReactiveRepository extends ReactiveMongoRepository<Review, String> {
+import java.util.Collection;
+
+public interface ReviewReactiveRepository extends ReactiveMongoRepository<Review, String>, ReviewKeysetRepository,
+        ReviewPatchRepository, ReviewDeleteRepository {
 
     //Flux<Review> findReviewsByMovieInfoId(String reviewId);
 
     Flux<Review> findReviewsByMovieInfoId(Long movieInfoId);
+
+    /**
+     * The latest reviews of a movie first : generated reviewIds are ObjectIds, which grow with their creation time.
+     */
+    Flux<Review> findReviewsByMovieInfoIdOrderByReviewIdDesc(Long movieInfoId, Pageable pageable);
+
+    Flux<Review> findReviewsByMovieInfoIdIn(Collection<Long> movieInfoIds);
+
+    /**
+     * One deleteMany.
+     *
+     * @return the number of deleted reviews.
+     */
+    Mono<Long> deleteByMovieInfoId(Long movieInfoId);
 }
@@ -19,9 +19,15 @@ public class ReviewRouter {
                         builder
                                 .GET("", reviewsHandler::getReviews)
                                 .POST("", reviewsHandler::addReview)
+                                .DELETE("", reviewsHandler::deleteReviews)
+                                .POST("/batch", reviewsHandler::getReviewsByMovieInfoIds)
+                                .POST("/bulk", reviewsHandler::addReviews)
+                                .GET("/stream", reviewsHandler::getReviewsStream)
+                                .GET("/stats", reviewsHandler::getReviewStats)
+                                .GET("/{id}", reviewsHandler::getReviewById)
                                 .PUT("/{id}", reviewsHandler::updateReview)
-                                .DELETE("/{id}", reviewsHandler::deleteReview)
-                                .GET("/stream", reviewsHandler::getReviewsStream))
+                                .PATCH("/{id}", reviewsHandler::patchReview)
+                                .DELETE("/{id}", reviewsHandler::deleteReview))
                 .GET("/v1/helloworld", (request -> ServerResponse.ok().bodyValue("HelloWorld")))
                 .GET("/v1/greeting/{name}", (request -> ServerResponse.ok().bodyValue("hello " + request.pathVariable("name"))))
                 //  .GET("/v1/reviews",reviewsHandler::getReviews)
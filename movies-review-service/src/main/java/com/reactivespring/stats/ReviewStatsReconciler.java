@@ -0,0 +1,92 @@
+package com.reactivespring.stats;
+
+import com.reactivespring.domain.ReviewStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Rewrites the review stats from the reviews every {@code reviews.stats.reconcile.interval}, correcting the drift the
+ * incremental updates of {@link ReviewStatsService} may have accumulated.
+ * <p>
+ * The movies with reviews are recomputed by one aggregation over the reviews collection. The stats the run did not
+ * rewrite (their movie had no review when the aggregation read it) are then recomputed one movie at a time.
+ */
+@Component
+@Slf4j
+public class ReviewStatsReconciler {
+
+    private final ReviewStatsService reviewStatsService;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final Duration interval;
+    private Disposable schedule;
+
+    public ReviewStatsReconciler(ReviewStatsService reviewStatsService, ReactiveMongoTemplate mongoTemplate,
+                                 @Value("${reviews.stats.reconcile.enabled:true}") boolean enabled,
+                                 @Value("${reviews.stats.reconcile.interval:1h}") Duration interval) {
+        this.reviewStatsService = reviewStatsService;
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.interval = interval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || schedule != null) {
+            return;
+        }
+        schedule = Flux.interval(interval, interval)
+                .concatMap(tick -> reconcile()
+                        .onErrorResume(ex -> {
+                            log.error("Review stats reconciliation failed : {}", ex.getMessage(), ex);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (schedule != null) {
+            schedule.dispose();
+        }
+    }
+
+    /**
+     * @return the number of movies whose stats were rewritten.
+     */
+    public Mono<Long> reconcile() {
+        // stored with millisecond precision
+        var runStart = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        var recomputed = reviewStatsService.computeAll()
+                .concatMap(stats -> save(stats, runStart));
+        var notRecomputed = Flux.defer(() -> mongoTemplate.find(
+                        Query.query(new Criteria().orOperator(
+                                Criteria.where("reconciledAt").lt(runStart),
+                                Criteria.where("reconciledAt").exists(false))),
+                        ReviewStats.class))
+                .concatMap(stale -> reviewStatsService.compute(stale.getMovieInfoId()))
+                .concatMap(stats -> save(stats, runStart));
+        return recomputed.concatWith(notRecomputed)
+                .count()
+                .doOnNext(count -> log.info("Review stats reconciled for {} movies", count));
+    }
+
+    private Mono<ReviewStats> save(ReviewStats stats, Instant runStart) {
+        stats.setReconciledAt(runStart);
+        return mongoTemplate.save(stats);
+    }
+}
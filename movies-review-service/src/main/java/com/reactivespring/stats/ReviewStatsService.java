@@ -0,0 +1,175 @@
+package com.reactivespring.stats;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Per-movie review aggregates, kept in the reviewStats collection.
+ * <p>
+ * Every review write applies its delta with a single atomic $inc upsert, so reading the stats of a movie is one
+ * document lookup instead of fetching all of its reviews. The review and its delta are two writes : a failure in
+ * between, or a delta applied while {@link ReviewStatsReconciler} rewrites the same movie, leaves the stats off until
+ * the next reconciliation.
+ */
+@Service
+public class ReviewStatsService {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public ReviewStatsService(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * @return the stats of the movie, empty ones when it has no review.
+     */
+    public Mono<ReviewStats> getStats(Long movieInfoId) {
+        return mongoTemplate.findById(movieInfoId, ReviewStats.class)
+                .defaultIfEmpty(ReviewStats.empty(movieInfoId));
+    }
+
+    public Mono<Void> reviewAdded(Review review) {
+        return apply(review.getMovieInfoId(), ratingDelta(null, review.getRating()).inc("count", 1L));
+    }
+
+    /**
+     * The deltas of a batch of added reviews, one upsert per movie.
+     */
+    public Mono<Void> reviewsAdded(List<Review> reviews) {
+        var reviewsByMovie = reviews.stream()
+                .collect(Collectors.groupingBy(Review::getMovieInfoId, LinkedHashMap::new, Collectors.toList()));
+        return Flux.fromIterable(reviewsByMovie.entrySet())
+                .concatMap(movieReviews -> apply(movieReviews.getKey(), addedDelta(movieReviews.getValue())))
+                .then();
+    }
+
+    public Mono<Void> reviewDeleted(Review review) {
+        return apply(review.getMovieInfoId(), ratingDelta(review.getRating(), null).inc("count", -1L));
+    }
+
+    /**
+     * Every review of the movie was deleted : its stats go too. A review added in between is left to the
+     * reconciliation.
+     */
+    public Mono<Void> movieReviewsDeleted(Long movieInfoId) {
+        return mongoTemplate.remove(Query.query(Criteria.where("movieInfoId").is(movieInfoId)), ReviewStats.class)
+                .then();
+    }
+
+    public Mono<Void> ratingUpdated(Long movieInfoId, Double previousRating, Double rating) {
+        if (Objects.equals(previousRating, rating)) {
+            return Mono.empty();
+        }
+        return apply(movieInfoId, ratingDelta(previousRating, rating));
+    }
+
+    /**
+     * Recomputes the stats of every movie with reviews from the reviews collection.
+     */
+    public Flux<ReviewStats> computeAll() {
+        return aggregate(List.of());
+    }
+
+    /**
+     * Recomputes the stats of one movie from the reviews collection, empty ones when it has no review.
+     */
+    public Mono<ReviewStats> compute(Long movieInfoId) {
+        return aggregate(List.of(Aggregation.match(Criteria.where("movieInfoId").is(movieInfoId))))
+                .next()
+                .defaultIfEmpty(ReviewStats.empty(movieInfoId));
+    }
+
+    /**
+     * $group per movie and rating bucket, then per movie with the buckets folded into the histogram document.
+     * Runs on MongoDB 4.0 : no $merge, the caller writes the result back.
+     */
+    private Flux<ReviewStats> aggregate(List<AggregationOperation> match) {
+        var operations = new ArrayList<AggregationOperation>(match);
+        operations.add(context -> new Document("$group", new Document("_id", new Document("movieInfoId", "$movieInfoId")
+                .append("bucket", new Document("$cond", Arrays.asList(
+                        // unrated (null or missing) reviews get a null bucket
+                        new Document("$gt", Arrays.asList("$rating", null)),
+                        new Document("$toString", new Document("$toInt",
+                                new Document("$min", List.of(new Document("$floor", "$rating"), ReviewStats.MAX_BUCKET)))),
+                        null))))
+                .append("count", new Document("$sum", 1L))
+                .append("ratingSum", new Document("$sum", "$rating"))));
+        operations.add(context -> new Document("$group", new Document("_id", "$_id.movieInfoId")
+                .append("count", new Document("$sum", "$count"))
+                .append("ratingSum", new Document("$sum", "$ratingSum"))
+                .append("buckets", new Document("$push", new Document("k", "$_id.bucket").append("v", "$count")))));
+        operations.add(context -> new Document("$project", new Document("count", 1)
+                .append("ratingSum", 1)
+                .append("ratedBuckets", new Document("$filter", new Document("input", "$buckets")
+                        .append("cond", new Document("$ne", Arrays.asList("$$this.k", null)))))));
+        operations.add(context -> new Document("$project", new Document("count", 1)
+                .append("ratingSum", 1)
+                .append("ratingCount", new Document("$sum", "$ratedBuckets.v"))
+                .append("histogram", new Document("$arrayToObject", "$ratedBuckets"))));
+        return mongoTemplate.aggregate(Aggregation.newAggregation(operations), Review.class, ReviewStats.class);
+    }
+
+    /**
+     * One $inc per field : a rating moving within its bucket leaves the histogram as is.
+     */
+    private static Update ratingDelta(Double previousRating, Double rating) {
+        var update = new Update();
+        var ratingCount = (rating != null ? 1L : 0L) - (previousRating != null ? 1L : 0L);
+        if (ratingCount != 0) {
+            update.inc("ratingCount", ratingCount);
+        }
+        update.inc("ratingSum", (rating != null ? rating : 0.0) - (previousRating != null ? previousRating : 0.0));
+        var buckets = new HashMap<String, Long>();
+        if (previousRating != null) {
+            buckets.merge(ReviewStats.bucket(previousRating), -1L, Long::sum);
+        }
+        if (rating != null) {
+            buckets.merge(ReviewStats.bucket(rating), 1L, Long::sum);
+        }
+        buckets.forEach((bucket, delta) -> {
+            if (delta != 0) {
+                update.inc("histogram." + bucket, delta);
+            }
+        });
+        return update;
+    }
+
+    private static Update addedDelta(List<Review> reviews) {
+        var update = new Update().inc("count", (long) reviews.size());
+        var ratings = reviews.stream()
+                .map(Review::getRating)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        if (!ratings.isEmpty()) {
+            update.inc("ratingCount", (long) ratings.size());
+        }
+        update.inc("ratingSum", ratings.stream().mapToDouble(Double::doubleValue).sum());
+        ratings.stream()
+                .collect(Collectors.groupingBy(ReviewStats::bucket, Collectors.counting()))
+                .forEach((bucket, count) -> update.inc("histogram." + bucket, count));
+        return update;
+    }
+
+    private Mono<Void> apply(Long movieInfoId, Update update) {
+        return mongoTemplate.upsert(Query.query(Criteria.where("movieInfoId").is(movieInfoId)), update, ReviewStats.class)
+                .then();
+    }
+}
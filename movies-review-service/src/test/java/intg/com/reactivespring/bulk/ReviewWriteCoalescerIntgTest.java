@@ -0,0 +1,52 @@
+package com.reactivespring.bulk;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = {
+        "reviews.write.coalesce.enabled=true",
+        "reviews.write.coalesce.maxBatchSize=16",
+        "reviews.write.coalesce.maxDelay=20ms",
+})
+@ActiveProfiles("test")
+public class ReviewWriteCoalescerIntgTest {
+
+    @Autowired
+    ReviewWriteCoalescer reviewWriteCoalescer;
+
+    @Autowired
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+
+    @AfterEach
+    void tearDown() {
+        reviewReactiveRepository.deleteAll().block();
+        mongoTemplate.dropCollection(ReviewStats.class).block();
+    }
+
+    @Test
+    void save_concurrentReviewsWrittenInBatches() {
+        //when
+        var saved = Flux.range(0, 50)
+                .flatMap(i -> reviewWriteCoalescer.save(new Review(null, 1L, "Review " + i, 8.0)))
+                .collectList()
+                .block();
+
+        //then
+        assertEquals(50, saved.size());
+        assertEquals(50L, reviewReactiveRepository.findReviewsByMovieInfoId(1L).count().block());
+        assertEquals(50L, mongoTemplate.findById(1L, ReviewStats.class).block().getCount());
+    }
+}
@@ -0,0 +1,66 @@
+package com.reactivespring.bus;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewEvent;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Date;
+
+/**
+ * Two buses over the same embedded Mongo stand for two review-service instances.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class MongoReviewEventBusIntgTest {
+
+    @Autowired
+    MongoReviewEventBus reviewEventBus;
+
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+
+    @Test
+    void events_publishedOnAnotherInstance() {
+        //given
+        var otherInstance = new MongoReviewEventBus(mongoTemplate, 1024 * 1024, 1000, Duration.ofSeconds(5),
+                Duration.ofMillis(100));
+        var review = new Review("remote-1", 1L, "Awesome Movie", 9.0);
+
+        //when
+        var events = reviewEventBus.events();
+
+        //then
+        StepVerifier.create(events)
+                .thenAwait(Duration.ofMillis(200))
+                .then(() -> otherInstance.publish(review).block())
+                .expectNext(review)
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void events_fromInstanceWithLaggingClock() {
+        //given
+        var review = new Review("remote-2", 1L, "Awesome Movie", 9.0);
+        // ObjectId generated by an instance whose clock is 2s behind
+        var event = new ReviewEvent(new ObjectId(new Date(System.currentTimeMillis() - 2000)).toHexString(), review);
+
+        //when
+        var events = reviewEventBus.events();
+
+        //then
+        StepVerifier.create(events)
+                .thenAwait(Duration.ofMillis(200))
+                .then(() -> mongoTemplate.insert(event).block())
+                .expectNext(review)
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+    }
+}
@@ -0,0 +1,107 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.config.MongoIndexConfig;
+import com.reactivespring.domain.Review;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Profiles the queries the repository actually sends : none may fall back to a collection scan.
+ */
+@DataMongoTest
+@ActiveProfiles("test")
+@Import(MongoIndexConfig.class)
+public class ReviewReactiveRepositoryIndexIntgTest {
+
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    @BeforeEach
+    void setUp() {
+        reviewReactiveRepository.saveAll(List.of(
+                        new Review("1", 1L, "Awesome Movie", 9.0),
+                        new Review("2", 1L, "Excellent Movie", 8.0),
+                        new Review("3", 2L, "Awesome Movie", 7.0)))
+                .blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reviewReactiveRepository.deleteAll().block();
+    }
+
+    @Test
+    void findReviewsByMovieInfoId() {
+        assertNoCollectionScan(profile(reviewReactiveRepository.findReviewsByMovieInfoId(1L)));
+    }
+
+    @Test
+    void findReviewsByMovieInfoIdOrderByReviewIdDesc() {
+        var profiled = profile(reviewReactiveRepository.findReviewsByMovieInfoIdOrderByReviewIdDesc(1L, PageRequest.of(0, 10)));
+        assertNoCollectionScan(profiled);
+        profiled.forEach(query -> assertFalse(query.getBoolean("hasSortStage", false),
+                () -> "sorts in memory : " + query.getString("planSummary")));
+    }
+
+    @Test
+    void findReviewsByMovieInfoIdIn() {
+        assertNoCollectionScan(profile(reviewReactiveRepository.findReviewsByMovieInfoIdIn(List.of(1L, 2L))));
+    }
+
+    @Test
+    void findReviewsAfter() {
+        assertNoCollectionScan(profile(reviewReactiveRepository.findReviewsAfter("1", 10, 10)));
+    }
+
+    @Test
+    void deleteByMovieInfoId() {
+        assertNoCollectionScan(profile(reviewReactiveRepository.deleteByMovieInfoId(1L)));
+    }
+
+    /**
+     * Runs {@code queries} with the profiler on.
+     *
+     * @return the profiled reads and deletes of the review collection.
+     */
+    private List<Document> profile(Publisher<?> queries) {
+        mongoTemplate.executeCommand(new Document("profile", 2)).block();
+        try {
+            Flux.from(queries).blockLast();
+        } finally {
+            mongoTemplate.executeCommand(new Document("profile", 0)).block();
+        }
+        var profiled = mongoTemplate.find(Query.query(Criteria.where("ns").regex("\\.review$")
+                                .and("op").in("query", "remove")),
+                        Document.class, "system.profile")
+                .collectList()
+                .block();
+        mongoTemplate.dropCollection("system.profile").block();
+        assert profiled != null;
+        return profiled;
+    }
+
+    private static void assertNoCollectionScan(List<Document> profiled) {
+        assertFalse(profiled.isEmpty(), "no query profiled");
+        profiled.forEach(query -> assertFalse(query.getString("planSummary").contains("COLLSCAN"),
+                () -> query.toJson() + " scans the collection"));
+    }
+}
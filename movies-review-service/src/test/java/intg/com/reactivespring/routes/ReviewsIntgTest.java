@@ -1,23 +1,32 @@
 package com.reactivespring.routes;
 
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewBulkResult;
+import com.reactivespring.domain.ReviewBulkResult.Status;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import org.bson.Document;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -30,6 +39,9 @@ public class ReviewsIntgTest {
     @Autowired
     ReviewReactiveRepository reviewReactiveRepository;
 
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+
     static String REVIEWS_URL = "/v1/reviews";
 
     @BeforeEach
@@ -118,6 +130,58 @@ public class ReviewsIntgTest {
     }
 
 
+    @Test
+    void getReviews_keysetPages() {
+        //given
+        var firstPage = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "?limit=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .hasSize(2)
+                .returnResult();
+        var next = firstPage.getResponseHeaders().getFirst(HttpHeaders.LINK);
+        assertNotNull(next);
+
+        //when
+        var lastPage = webTestClient
+                .get()
+                .uri(next.substring(next.indexOf('<') + 1, next.indexOf('>')))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().doesNotExist(HttpHeaders.LINK)
+                .expectBodyList(Review.class)
+                .returnResult()
+                .getResponseBody();
+
+        //then
+        assertEquals(1, lastPage.size());
+        assertTrue(firstPage.getResponseBody().stream()
+                .allMatch(review -> review.getReviewId().compareTo(lastPage.get(0).getReviewId()) < 0));
+    }
+
+    @Test
+    void getReviews_ndjson() {
+        //when
+        var reviews = webTestClient
+                .get()
+                .uri(REVIEWS_URL)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(Review.class)
+                .getResponseBody();
+
+        //then
+        StepVerifier.create(reviews)
+                .expectNextCount(3)
+                .verifyComplete();
+    }
+
     @Test
     void getReviewsByMovieInfoId() {
         //given
@@ -141,6 +205,76 @@ public class ReviewsIntgTest {
 
     }
 
+    @Test
+    void getLatestReviewsByMovieInfoId() {
+        //given
+
+        //when
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL)
+                        .queryParam("movieInfoId", "1")
+                        .queryParam("limit", "1")
+                        .build())
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .value(reviewList -> {
+                    assertEquals(1, reviewList.size());
+                    assertEquals(1L, reviewList.get(0).getMovieInfoId());
+                });
+
+    }
+
+    @Test
+    void addReviews() {
+        //given
+        var body = "{\"reviewId\": \"b1\", \"movieInfoId\": 3, \"comment\": \"Awesome Movie\", \"rating\": 9.0}\n"
+                + "{\"reviewId\": \"b1\", \"movieInfoId\": 3, \"comment\": \"Duplicate\", \"rating\": 1.0}\n"
+                + "{\"movieInfoId\": 3, \"comment\": \"Bad Movie\", \"rating\": -1.0}\n"
+                + "{\"movieInfoId\": 3, \"comment\": \"Excellent Movie\", \"rating\": 8.0}\n";
+
+        //when
+        var results = webTestClient
+                .post()
+                .uri(REVIEWS_URL + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(ReviewBulkResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        //then
+        assertNotNull(results);
+        assertEquals(List.of(Status.CREATED, Status.FAILED, Status.INVALID, Status.CREATED),
+                results.stream().map(ReviewBulkResult::getStatus).collect(Collectors.toList()));
+        assertEquals(2L, reviewReactiveRepository.findReviewsByMovieInfoId(3L).count().block());
+    }
+
+    @Test
+    void getReviewsByMovieInfoIds() {
+        //given
+
+        //when
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL + "/batch")
+                .bodyValue(List.of(1L, 2L, 3L))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .value(reviewList -> {
+                    assertEquals(3, reviewList.size());
+                });
+
+    }
+
     @Test
     void addReview() {
         //given
@@ -188,6 +322,27 @@ public class ReviewsIntgTest {
 
     }
 
+    @Test
+    void updateReview_storedWithoutVersion() {
+        //given
+        mongoTemplate.insert(new Document("_id", "legacy").append("movieInfoId", 1L)
+                .append("comment", "Awesome Movie").append("rating", 9.0), "review").block();
+        //when
+        webTestClient
+                .put()
+                .uri(REVIEWS_URL+"/{id}", "legacy")
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(new Review(null, 1L, "Not an Awesome Movie", 8.0))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"");
+        //then
+        StepVerifier.create(reviewReactiveRepository.findById("legacy"))
+                .expectNextMatches(review -> review.getVersion() == 1L
+                        && "Not an Awesome Movie".equals(review.getComment()) && review.getRating() == 8.0)
+                .verifyComplete();
+    }
+
     @Test
     void updateReview_NotFound() {
         //given
@@ -201,6 +356,60 @@ public class ReviewsIntgTest {
                 .expectStatus().isNotFound();
     }
 
+    @Test
+    void patchReview_ifMatch() {
+        //given
+        var savedReview = reviewReactiveRepository.save(new Review(null, 1L, "Awesome Movie", 9.0)).block();
+        assert savedReview != null;
+        assertEquals(0L, savedReview.getVersion());
+        //when
+        webTestClient
+                .patch()
+                .uri(REVIEWS_URL+"/{id}", savedReview.getReviewId())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(new Review(null, null, null, 7.0))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"")
+                .expectBody(Review.class)
+                .value(patchedReview -> {
+                    assertEquals("Awesome Movie", patchedReview.getComment());
+                    assertEquals(7.0, patchedReview.getRating());
+                });
+        // the client that read version 0 too lost the race
+        webTestClient
+                .patch()
+                .uri(REVIEWS_URL+"/{id}", savedReview.getReviewId())
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(new Review(null, null, "Not an Awesome Movie", null))
+                .exchange()
+                .expectStatus().isEqualTo(412);
+        //then
+        StepVerifier.create(reviewReactiveRepository.findById(savedReview.getReviewId()))
+                .expectNextMatches(review -> review.getVersion() == 1L
+                        && "Awesome Movie".equals(review.getComment()) && review.getRating() == 7.0)
+                .verifyComplete();
+    }
+
+    @Test
+    void patchReview_concurrentPatchesAllApplied() {
+        //given
+        var savedReview = reviewReactiveRepository.save(new Review(null, 1L, "Awesome Movie", 9.0)).block();
+        assert savedReview != null;
+        //when
+        Flux.range(0, 10)
+                .flatMap(i -> reviewReactiveRepository.patchReview(savedReview.getReviewId(),
+                        new Review(null, null, "Comment " + i, null), null))
+                .blockLast();
+        //then
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL+"/{id}", savedReview.getReviewId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"10\"");
+    }
+
     @Test
     void deleteReview() {
         //given
@@ -213,6 +422,25 @@ public class ReviewsIntgTest {
                 .uri(REVIEWS_URL+"/{id}", savedReview.getReviewId())
                 .exchange()
                 .expectStatus().isNoContent();
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL+"/{id}", savedReview.getReviewId())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void deleteReviewsByMovieInfoId() {
+        //when
+        webTestClient
+                .delete()
+                .uri(REVIEWS_URL+"?movieInfoId={movieInfoId}", 1L)
+                .exchange()
+                .expectStatus().isNoContent();
+        //then
+        StepVerifier.create(reviewReactiveRepository.findAll().map(Review::getMovieInfoId))
+                .expectNext(2L)
+                .verifyComplete();
     }
 
 }
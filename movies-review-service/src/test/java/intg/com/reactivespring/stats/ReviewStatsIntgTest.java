@@ -0,0 +1,141 @@
+package com.reactivespring.stats;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
+import com.reactivespring.repository.ReviewReactiveRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@TestPropertySource(properties = "reviews.stats.reconcile.enabled=false")
+public class ReviewStatsIntgTest {
+
+    static String REVIEWS_URL = "/v1/reviews";
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    @Autowired
+    ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    ReviewStatsReconciler reviewStatsReconciler;
+
+    @BeforeEach
+    void setUp() {
+        reviewReactiveRepository.deleteAll().block();
+        mongoTemplate.dropCollection(ReviewStats.class).block();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reviewReactiveRepository.deleteAll().block();
+        mongoTemplate.dropCollection(ReviewStats.class).block();
+    }
+
+    @Test
+    void stats_updatedByEveryWrite() {
+        //given
+        var first = addReview(new Review(null, 1L, "Awesome Movie", 9.0));
+        addReview(new Review(null, 1L, "Good Movie", 7.5));
+        addReview(new Review(null, 1L, "No rating", null));
+
+        //when
+        webTestClient.put()
+                .uri(REVIEWS_URL + "/{id}", first.getReviewId())
+                .bodyValue(new Review(null, 1L, "Not that awesome", 9.5))
+                .exchange()
+                .expectStatus().isOk();
+
+        //then
+        assertStats(new ReviewStats(1L, 3, 2, 17.0, Map.of("7", 1L, "9", 1L), null));
+
+        //when
+        webTestClient.delete()
+                .uri(REVIEWS_URL + "/{id}", first.getReviewId())
+                .exchange()
+                .expectStatus().isNoContent();
+
+        //then
+        webTestClient.get()
+                .uri(REVIEWS_URL + "/stats?movieInfoId=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.count").isEqualTo(2)
+                .jsonPath("$.average").isEqualTo(7.5)
+                .jsonPath("$.histogram.7").isEqualTo(1)
+                .jsonPath("$.histogram.9").isEqualTo(0);
+    }
+
+    @Test
+    void stats_noReview() {
+        webTestClient.get()
+                .uri(REVIEWS_URL + "/stats?movieInfoId=42")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.count").isEqualTo(0)
+                .jsonPath("$.average").doesNotExist();
+    }
+
+    @Test
+    void reconcile_rewritesDriftedStats() {
+        //given : reviews written without their stats, stats left for a movie without reviews
+        reviewReactiveRepository.saveAll(List.of(
+                        new Review(null, 1L, "Awesome Movie", 9.0),
+                        new Review(null, 1L, "Perfect", 10.0),
+                        new Review(null, 1L, "Beyond perfect", 12.0),
+                        new Review(null, 1L, "No rating", null),
+                        new Review(null, 2L, "Excellent Movie", 8.0)))
+                .blockLast();
+        mongoTemplate.save(new ReviewStats(3L, 5, 5, 40.0, Map.of("8", 5L), null)).block();
+
+        //when
+        var reconciled = reviewStatsReconciler.reconcile().block();
+
+        //then
+        assertEquals(3L, reconciled);
+        assertStats(new ReviewStats(1L, 4, 3, 31.0, Map.of("9", 1L, "10", 2L), null));
+        assertStats(new ReviewStats(2L, 1, 1, 8.0, Map.of("8", 1L), null));
+        assertStats(ReviewStats.empty(3L));
+    }
+
+    private Review addReview(Review review) {
+        return webTestClient.post()
+                .uri(REVIEWS_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Review.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private void assertStats(ReviewStats expected) {
+        var stats = mongoTemplate.findById(expected.getMovieInfoId(), ReviewStats.class).block();
+        assert stats != null;
+        assertEquals(expected.getCount(), stats.getCount());
+        assertEquals(expected.getRatingCount(), stats.getRatingCount());
+        assertEquals(expected.getRatingSum(), stats.getRatingSum(), 0.0001);
+        expected.getHistogram().forEach((bucket, count) -> assertEquals(count, stats.getHistogram().get(bucket), bucket));
+    }
+}
@@ -0,0 +1,122 @@
+package com.reactivespring.broadcast;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BroadcastHubUnitTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void publish_thousandSubscribers_concurrentProducers() throws InterruptedException {
+        //given
+        var hub = new BroadcastHub<Integer>("test", 256, OverflowPolicy.DISCONNECT, false, meterRegistry);
+        var subscribers = 1_000;
+        var producers = 4;
+        var itemsPerProducer = 250;
+        var total = producers * itemsPerProducer;
+        var received = IntStream.range(0, subscribers)
+                .mapToObj(i -> hub.subscribe().take(total).collectList().toFuture())
+                .collect(Collectors.toList());
+        assertEquals(subscribers, hub.subscriberCount());
+
+        //when
+        var executor = Executors.newFixedThreadPool(producers);
+        var start = new CountDownLatch(1);
+        for (int producer = 0; producer < producers; producer++) {
+            var offset = producer * itemsPerProducer;
+            executor.submit(() -> {
+                start.await();
+                IntStream.range(offset, offset + itemsPerProducer).forEach(hub::publish);
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        //then : every subscriber got every item, in the same order, and each producer's items in order
+        var reference = received.get(0).join();
+        assertEquals(total, reference.size());
+        received.forEach(items -> assertEquals(reference, items.join()));
+        for (int producer = 0; producer < producers; producer++) {
+            var offset = producer * itemsPerProducer;
+            var fromProducer = reference.stream()
+                    .filter(item -> item >= offset && item < offset + itemsPerProducer)
+                    .collect(Collectors.toList());
+            assertEquals(IntStream.range(offset, offset + itemsPerProducer).boxed().collect(Collectors.toList()), fromProducer);
+        }
+        assertEquals(0, hub.subscriberCount());
+        assertEquals(0.0, meterRegistry.get("broadcast.disconnected").counter().count());
+        assertEquals(total, meterRegistry.get("broadcast.published").counter().count());
+    }
+
+    @Test
+    void publish_dropOldest_slowSubscriberSkipsAhead() {
+        //given
+        var hub = new BroadcastHub<Integer>("test", 4, OverflowPolicy.DROP_OLDEST, false, meterRegistry);
+        var fast = new ArrayList<Integer>();
+        hub.subscribe().subscribe(fast::add);
+
+        //when
+        StepVerifier.create(hub.subscribe(), 0)
+                .then(() -> IntStream.rangeClosed(1, 10).forEach(hub::publish))
+                .then(() -> assertEquals(4, hub.maxLag()))
+                .thenRequest(4)
+                .expectNext(7, 8, 9, 10)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        //then
+        assertEquals(IntStream.rangeClosed(1, 10).boxed().collect(Collectors.toList()), fast);
+        assertEquals(6.0, meterRegistry.get("broadcast.dropped").counter().count());
+        assertEquals(4.0, meterRegistry.get("broadcast.lag").summary().max());
+    }
+
+    @Test
+    void publish_disconnect_slowSubscriberTerminated() {
+        //given
+        var hub = new BroadcastHub<Integer>("test", 4, OverflowPolicy.DISCONNECT, false, meterRegistry);
+        var fast = new ArrayList<Integer>();
+        hub.subscribe().subscribe(fast::add);
+
+        //when
+        StepVerifier.create(hub.subscribe(), 0)
+                .then(() -> IntStream.rangeClosed(1, 5).forEach(hub::publish))
+                .expectError(SlowSubscriberException.class)
+                .verify(Duration.ofSeconds(5));
+
+        //then
+        assertEquals(List.of(1, 2, 3, 4, 5), fast);
+        assertEquals(1, hub.subscriberCount());
+        assertEquals(1.0, meterRegistry.get("broadcast.disconnected").counter().count());
+    }
+
+    @Test
+    void subscribe_replayLatest() {
+        //given
+        var hub = new BroadcastHub<Integer>("test", 4, OverflowPolicy.DROP_OLDEST, true, meterRegistry);
+        hub.publish(1);
+        hub.publish(2);
+
+        //when
+        var first = Mono.from(hub.subscribe()).block(Duration.ofSeconds(5));
+
+        //then
+        assertEquals(2, first);
+    }
+}
@@ -0,0 +1,96 @@
+package com.reactivespring.broadcast;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TopicBroadcastHubUnitTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TopicBroadcastHub<Long, String> hub =
+            new TopicBroadcastHub<>("test", 16, OverflowPolicy.DROP_OLDEST, false, meterRegistry);
+
+    @Test
+    void publish_onlyReachesTheSubscribersOfTheKey() {
+        //given
+        var movie1 = new ArrayList<String>();
+        var movie2 = new ArrayList<String>();
+        var subscription1 = hub.subscribe(1L).subscribe(movie1::add);
+        var subscription2 = hub.subscribe(2L).subscribe(movie2::add);
+
+        //when
+        hub.publish(1L, "review of 1");
+        hub.publish(2L, "review of 2");
+        hub.publish(3L, "review of 3");
+
+        //then
+        assertEquals(List.of("review of 1"), movie1);
+        assertEquals(List.of("review of 2"), movie2);
+        assertEquals(2, hub.topicCount());
+        assertEquals(2.0, meterRegistry.get("broadcast.published").counter().count());
+
+        subscription1.dispose();
+        subscription2.dispose();
+    }
+
+    @Test
+    void subscribe_topicRemovedWithItsLastSubscriber() {
+        //given
+        var first = hub.subscribe(1L).subscribe();
+        var second = hub.subscribe(1L).subscribe();
+        assertEquals(1, hub.topicCount());
+        assertEquals(2, hub.subscriberCount());
+
+        //when
+        first.dispose();
+
+        //then
+        assertEquals(1, hub.topicCount());
+        second.dispose();
+        assertEquals(0, hub.topicCount());
+    }
+
+    @Test
+    void subscribe_concurrentJoinAndLeave_neverLosesALiveSubscriber() {
+        //given
+        var received = new ArrayList<String>();
+        var live = hub.subscribe(1L).subscribe(received::add);
+
+        //when
+        Flux.range(0, 10_000)
+                .parallel(8)
+                .runOn(Schedulers.parallel())
+                .flatMap(i -> hub.subscribe(i % 2 == 0 ? 1L : 2L).take(Duration.ofMillis(1)).then())
+                .sequential()
+                .blockLast(Duration.ofSeconds(30));
+        hub.publish(1L, "still there");
+
+        //then
+        assertEquals(List.of("still there"), received);
+        assertEquals(1, hub.topicCount());
+        live.dispose();
+        assertEquals(0, hub.topicCount());
+    }
+
+    @Test
+    void subscribe_quietSubscriberStaysSubscribed() {
+        //when
+        StepVerifier.withVirtualTime(() -> hub.subscribe(1L))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofHours(1))
+                .then(() -> hub.publish(1L, "review of 1"))
+                //then
+                .expectNext("review of 1")
+                .thenCancel()
+                .verify();
+        assertEquals(0, hub.topicCount());
+    }
+}
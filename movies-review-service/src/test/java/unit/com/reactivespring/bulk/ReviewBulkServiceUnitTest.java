@@ -0,0 +1,138 @@
+package com.reactivespring.bulk;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.result.InsertManyResult;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.reactivespring.bus.ReviewStreamDispatcher;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewBulkResult;
+import com.reactivespring.domain.ReviewBulkResult.Status;
+import com.reactivespring.stats.ReviewStatsService;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Validation;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReviewBulkServiceUnitTest {
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> collection = mock(MongoCollection.class);
+    private final ReviewStatsService reviewStatsService = mock(ReviewStatsService.class);
+    private final ReviewStreamDispatcher reviewStreamDispatcher = mock(ReviewStreamDispatcher.class);
+
+    private final ReviewBulkService reviewBulkService = new ReviewBulkService(mongoTemplate, new ObjectMapper(),
+            Validation.buildDefaultValidatorFactory().getValidator(), reviewStatsService, reviewStreamDispatcher, 2);
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        when(mongoTemplate.getCollectionName(Review.class)).thenReturn("review");
+        when(mongoTemplate.getCollection("review")).thenReturn(Mono.just(collection));
+        when(reviewStatsService.reviewsAdded(anyList())).thenReturn(Mono.empty());
+        when(reviewStreamDispatcher.publishAll(anyList())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void insert() {
+        //given
+        when(collection.insertMany(anyList(), any(InsertManyOptions.class)))
+                .thenReturn(Mono.just(InsertManyResult.acknowledged(Map.of())));
+        var lines = Flux.just(
+                "{\"reviewId\": \"r1\", \"movieInfoId\": 1, \"comment\": \"Awesome Movie\", \"rating\": 9.0}",
+                "{\"movieInfoId\": 1, \"comment\": ",
+                "",
+                "{\"reviewId\": \"r4\", \"movieInfoId\": 1, \"comment\": \"Bad Movie\", \"rating\": -1.0}",
+                "{\"reviewId\": \"r5\", \"movieInfoId\": 2, \"comment\": \"Excellent Movie\", \"rating\": 8.0}",
+                "{\"movieInfoId\": 2, \"comment\": \"Good Movie\"}");
+
+        //when
+        var results = reviewBulkService.insert(lines).collectList().block();
+
+        //then
+        assertNotNull(results);
+        assertEquals(List.of(1L, 2L, 4L, 5L, 6L), results.stream().map(ReviewBulkResult::getLine).collect(Collectors.toList()));
+        assertEquals(List.of(Status.CREATED, Status.INVALID, Status.INVALID, Status.CREATED, Status.CREATED),
+                results.stream().map(ReviewBulkResult::getStatus).collect(Collectors.toList()));
+        assertEquals("rating.negative : please pass a non-negative value", results.get(2).getError());
+        // a generated ObjectId
+        assertEquals(24, results.get(4).getReviewId().length());
+
+        // batches of 2 lines : [1, 2], [4, 5], [6], each with one valid review
+        verify(collection, times(3)).insertMany(anyList(), any(InsertManyOptions.class));
+        verify(reviewStatsService, times(3)).reviewsAdded(anyList());
+    }
+
+    @Test
+    void insert_rejectedDocumentsReportedPerLine() {
+        //given
+        var duplicate = new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 0);
+        when(collection.insertMany(anyList(), any(InsertManyOptions.class)))
+                .thenReturn(Mono.error(new MongoBulkWriteException(
+                        BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of()), List.of(duplicate), null,
+                        new ServerAddress(), Set.of())));
+        var lines = Flux.just(
+                "{\"reviewId\": \"r1\", \"movieInfoId\": 1, \"comment\": \"Awesome Movie\", \"rating\": 9.0}",
+                "{\"reviewId\": \"r2\", \"movieInfoId\": 1, \"comment\": \"Excellent Movie\", \"rating\": 8.0}");
+
+        //when
+        var results = reviewBulkService.insert(lines).collectList().block();
+
+        //then
+        assertNotNull(results);
+        assertEquals(Status.FAILED, results.get(0).getStatus());
+        assertEquals("E11000 duplicate key error", results.get(0).getError());
+        assertEquals(Status.CREATED, results.get(1).getStatus());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Review>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(reviewStatsService).reviewsAdded(inserted.capture());
+        assertEquals(List.of("r2"), inserted.getValue().stream().map(Review::getReviewId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void insert_databaseUnavailable() {
+        //given
+        when(collection.insertMany(anyList(), any(InsertManyOptions.class)))
+                .thenReturn(Mono.error(new IllegalStateException("connection refused")));
+
+        //when
+        var results = reviewBulkService.insert(Flux.just(
+                        "{\"reviewId\": \"r1\", \"movieInfoId\": 1, \"comment\": \"Awesome Movie\", \"rating\": 9.0}"))
+                .collectList()
+                .block();
+
+        //then
+        assertNotNull(results);
+        assertEquals(ReviewBulkResult.failed(1, "r1", "connection refused"), results.get(0));
+        verify(reviewStatsService, times(0)).reviewsAdded(anyList());
+    }
+}
@@ -0,0 +1,157 @@
+package com.reactivespring.bulk;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.reactivespring.bus.ReviewStreamDispatcher;
+import com.reactivespring.domain.Review;
+import com.reactivespring.stats.ReviewStatsService;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReviewWriteCoalescerUnitTest {
+
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> collection = mock(MongoCollection.class);
+    private final ReviewStatsService reviewStatsService = mock(ReviewStatsService.class);
+    private final ReviewStreamDispatcher reviewStreamDispatcher = mock(ReviewStreamDispatcher.class);
+
+    private ReviewWriteCoalescer reviewWriteCoalescer;
+
+    @AfterEach
+    void tearDown() {
+        if (reviewWriteCoalescer != null) {
+            reviewWriteCoalescer.stop();
+        }
+    }
+
+    private ReviewWriteCoalescer start(int maxBatchSize, Duration maxDelay) {
+        when(mongoTemplate.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        when(mongoTemplate.getCollectionName(Review.class)).thenReturn("review");
+        when(mongoTemplate.getCollection("review")).thenReturn(Mono.just(collection));
+        when(reviewStatsService.reviewsAdded(anyList())).thenReturn(Mono.empty());
+        when(reviewStreamDispatcher.publishAll(anyList())).thenReturn(Mono.empty());
+        reviewWriteCoalescer = new ReviewWriteCoalescer(mongoTemplate, reviewStatsService, reviewStreamDispatcher,
+                true, maxBatchSize, maxDelay, 2);
+        reviewWriteCoalescer.start();
+        return reviewWriteCoalescer;
+    }
+
+    @Test
+    void save_batchFlushedWhenFull() {
+        //given
+        var coalescer = start(3, Duration.ofHours(1));
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+                .thenReturn(Mono.just(BulkWriteResult.acknowledged(3, 0, 0, 0, List.of(), List.of())));
+
+        //when
+        var saved = Mono.zip(
+                coalescer.save(new Review(null, 1L, "Awesome Movie", 9.0)),
+                coalescer.save(new Review("r2", 1L, "Excellent Movie", 8.0)),
+                coalescer.save(new Review(null, 2L, "Good Movie", 7.0)));
+
+        //then
+        StepVerifier.create(saved)
+                .assertNext(reviews -> {
+                    assertEquals(24, reviews.getT1().getReviewId().length());
+                    assertEquals("r2", reviews.getT2().getReviewId());
+                    assertEquals(0L, reviews.getT2().getVersion());
+                    assertEquals(2L, reviews.getT3().getMovieInfoId());
+                })
+                .verifyComplete();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<WriteModel<Document>>> writes = ArgumentCaptor.forClass(List.class);
+        verify(collection, times(1)).bulkWrite(writes.capture(), any(BulkWriteOptions.class));
+        assertEquals(3, writes.getValue().size());
+        // new reviews are inserted, with or without a reviewId, as ReactiveMongoRepository.save does
+        assertTrue(writes.getValue().stream().allMatch(write -> write instanceof InsertOneModel));
+        assertEquals(0L, ((InsertOneModel<Document>) writes.getValue().get(1)).getDocument().get("version"));
+        verify(reviewStatsService, times(1)).reviewsAdded(anyList());
+        verify(reviewStreamDispatcher, times(1)).publishAll(anyList());
+    }
+
+    @Test
+    void save_batchFlushedAfterMaxDelay() {
+        //given
+        var coalescer = start(100, Duration.ofMillis(20));
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+                .thenReturn(Mono.just(BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of())));
+
+        //when
+        StepVerifier.create(coalescer.save(new Review(null, 1L, "Awesome Movie", 9.0)))
+                //then
+                .expectNextMatches(review -> review.getReviewId() != null)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void save_writeErrorFailsOnlyItsCaller() {
+        //given
+        var coalescer = start(2, Duration.ofHours(1));
+        var duplicate = new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 1);
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+                .thenReturn(Mono.error(new MongoBulkWriteException(BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of()),
+                        List.of(duplicate), null, new ServerAddress(), Set.of())));
+
+        //when
+        var first = coalescer.save(new Review(null, 1L, "Awesome Movie", 9.0)).cache();
+        var second = coalescer.save(new Review(null, 1L, "Excellent Movie", 8.0)).cache();
+        first.subscribe(review -> {}, ex -> {});
+        second.subscribe(review -> {}, ex -> {});
+
+        //then
+        StepVerifier.create(first)
+                .expectNextMatches(review -> "Awesome Movie".equals(review.getComment()))
+                .verifyComplete();
+        StepVerifier.create(second)
+                .expectError(DuplicateKeyException.class)
+                .verify();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Review>> saved = ArgumentCaptor.forClass(List.class);
+        verify(reviewStatsService).reviewsAdded(saved.capture());
+        assertEquals(1, saved.getValue().size());
+    }
+
+    @Test
+    void save_disabled() {
+        var coalescer = new ReviewWriteCoalescer(mongoTemplate, reviewStatsService, reviewStreamDispatcher,
+                false, 100, Duration.ofMillis(5), 2);
+        coalescer.start();
+
+        StepVerifier.create(coalescer.save(new Review(null, 1L, "Awesome Movie", 9.0)))
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+}
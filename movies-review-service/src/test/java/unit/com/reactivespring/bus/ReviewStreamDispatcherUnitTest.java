@@ -0,0 +1,115 @@
+package com.reactivespring.bus;
+
+import com.reactivespring.broadcast.BroadcastHub;
+import com.reactivespring.broadcast.OverflowPolicy;
+import com.reactivespring.broadcast.TopicBroadcastHub;
+import com.reactivespring.domain.Review;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReviewStreamDispatcherUnitTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Sinks.Many<Review> remoteEvents = Sinks.many().multicast().directBestEffort();
+    private final List<Review> published = new ArrayList<>();
+    private final BroadcastHub<Review> reviewsHub = new BroadcastHub<>("reviews", 64, OverflowPolicy.DROP_OLDEST, false, meterRegistry);
+    private final TopicBroadcastHub<Long, Review> reviewsByMovieHub =
+            new TopicBroadcastHub<>("reviewsByMovie", 64, OverflowPolicy.DROP_OLDEST, false, meterRegistry);
+    private final ReviewStreamDispatcher dispatcher = new ReviewStreamDispatcher(new ReviewEventBus() {
+        @Override
+        public Mono<Void> publish(Review review) {
+            return Mono.fromRunnable(() -> published.add(review));
+        }
+
+        @Override
+        public Flux<Review> events() {
+            return remoteEvents.asFlux();
+        }
+    }, reviewsHub, reviewsByMovieHub, 16, Duration.ofMillis(10), 100);
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.stop();
+    }
+
+    @Test
+    void publish_dispatchedLocallyAndSharedOnTheBus() {
+        //given
+        dispatcher.start();
+        var review = new Review("1", 1L, "Awesome Movie", 9.0);
+
+        //when
+        var reviews = reviewsHub.subscribe().take(1);
+        var reviewsOfMovie = reviewsByMovieHub.subscribe(1L).take(1);
+        StepVerifier.create(Flux.merge(reviews, reviewsOfMovie).map(Review::getReviewId))
+                .then(() -> dispatcher.publish(review).block())
+                .expectNext("1", "1")
+                .verifyComplete();
+
+        //then
+        assertEquals(List.of(review), published);
+    }
+
+    @Test
+    void events_fromOtherInstancesDispatched_duplicatesSuppressed() {
+        //given
+        dispatcher.start();
+        var local = new Review("1", 1L, "Awesome Movie", 9.0);
+
+        //when
+        var reviewIds = reviewsHub.subscribe()
+                .map(Review::getReviewId)
+                .take(3)
+                .collectList();
+        StepVerifier.create(reviewIds)
+                .then(() -> {
+                    dispatcher.publish(local).block();
+                    // echo of the local review, a remote review delivered twice, another remote review
+                    List.of(local, new Review("2", 2L, "Excellent Movie", 8.0), new Review("2", 2L, "Excellent Movie", 8.0),
+                            new Review("3", 1L, "Awesome Movie1", 9.0))
+                            .forEach(remoteEvents::tryEmitNext);
+                })
+                .assertNext(ids -> assertEquals(List.of("1", "2", "3"), ids))
+                .verifyComplete();
+
+        //then
+        assertEquals(3.0, meterRegistry.get("broadcast.published").tag("hub", "reviews").counter().count());
+    }
+
+    @Test
+    void events_remoteBurstDispatchedInBatches() {
+        //given
+        dispatcher.start();
+        var burst = Flux.range(1, 100)
+                .map(i -> new Review(String.valueOf(i), 1L, "Review " + i, 8.0))
+                .collect(Collectors.toList())
+                .block();
+
+        //when
+        var reviewIds = reviewsByMovieHub.subscribe(1L)
+                .map(Review::getReviewId)
+                .take(100)
+                .collectList();
+        StepVerifier.create(reviewIds)
+                .then(() -> burst.forEach(remoteEvents::tryEmitNext))
+                .assertNext(ids -> assertEquals(burst.stream().map(Review::getReviewId).collect(Collectors.toList()), ids))
+                .verifyComplete();
+
+        //then : the lag is recorded once per subscriber and batch, not per review
+        var lagSamples = meterRegistry.get("broadcast.lag").tag("hub", "reviewsByMovie").summary().count();
+        assertTrue(lagSamples < 100, "lag samples : " + lagSamples);
+    }
+}
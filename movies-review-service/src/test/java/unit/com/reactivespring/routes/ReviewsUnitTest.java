@@ -1,28 +1,49 @@
 package com.reactivespring.routes;
 
+import com.reactivespring.broadcast.TopicBroadcastHub;
+import com.reactivespring.bulk.ReviewBulkService;
+import com.reactivespring.bulk.ReviewWriteCoalescer;
+import com.reactivespring.bus.LocalReviewEventBus;
+import com.reactivespring.bus.ReviewStreamDispatcher;
+import com.reactivespring.config.ReviewStreamConfig;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewBulkResult;
+import com.reactivespring.domain.ReviewStats;
 import com.reactivespring.exceptionhandler.GlobalErrorHandler;
 import com.reactivespring.handler.ReviewsHandler;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.stats.ReviewStatsService;
 import com.reactivespring.validator.ReviewValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 @WebFluxTest
-@ContextConfiguration(classes = {ReviewRouter.class, ReviewsHandler.class, GlobalErrorHandler.class})
+@ContextConfiguration(classes = {ReviewRouter.class, ReviewsHandler.class, GlobalErrorHandler.class,
+        ReviewStreamConfig.class, ReviewStreamDispatcher.class, LocalReviewEventBus.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {"reviews.stream.bus=local", "reviews.stream.heartbeat=100ms"})
 @AutoConfigureWebTestClient
 public class ReviewsUnitTest {
 
@@ -32,9 +53,21 @@ public class ReviewsUnitTest {
     @MockBean
     private ReviewValidator reviewValidator;
 
+    @MockBean
+    private ReviewStatsService reviewStatsService;
+
+    @MockBean
+    private ReviewBulkService reviewBulkService;
+
+    @MockBean
+    private ReviewWriteCoalescer reviewWriteCoalescer;
+
     @Autowired
     private WebTestClient webTestClient;
 
+    @Autowired
+    private TopicBroadcastHub<Long, Review> reviewsByMovieHub;
+
     @Test
     void getAllReviews() {
         //given
@@ -43,7 +76,7 @@ public class ReviewsUnitTest {
                 new Review(null, 1L, "Awesome Movie1", 9.0),
                 new Review(null, 2L, "Excellent Movie", 8.0));
 
-        when(reviewReactiveRepository.findAll()).thenReturn(Flux.fromIterable(reviewList));
+        when(reviewReactiveRepository.findReviewsAfter(null, 100, 100)).thenReturn(Flux.fromIterable(reviewList));
         doCallRealMethod().when(reviewValidator).validate(any(), any());
 
         //when
@@ -53,6 +86,7 @@ public class ReviewsUnitTest {
                 .exchange()
                 .expectStatus()
                 .is2xxSuccessful()
+                .expectHeader().doesNotExist(HttpHeaders.LINK)
                 .expectBodyList(Review.class)
                 .value(reviews -> {
                     assertEquals(3, reviews.size());
@@ -60,12 +94,126 @@ public class ReviewsUnitTest {
 
     }
 
+    @Test
+    void getAllReviews_fullPageLinksToTheNextOne() {
+        //given
+        var reviewList = List.of(
+                new Review("a1", 1L, "Awesome Movie", 9.0),
+                new Review("a2", 2L, "Excellent Movie", 8.0));
+
+        when(reviewReactiveRepository.findReviewsAfter("a0", 2, 2)).thenReturn(Flux.fromIterable(reviewList));
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews?after=a0&limit=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().value(HttpHeaders.LINK, link -> assertTrue(link.contains("after=a2&limit=2"), link))
+                .expectBodyList(Review.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void getAllReviews_ndjsonStreamCapped() {
+        //given
+        when(reviewReactiveRepository.findReviewsAfter(null, 100_000, 500))
+                .thenReturn(Flux.just(new Review("a1", 1L, "Awesome Movie", 9.0)));
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews?limit=1000000")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(Review.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void getAllReviews_invalidLimit() {
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews?limit=0")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("limit must be positive : 0");
+    }
+
+    @Test
+    void getReviewsStream_invalidMovieInfoId() {
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews/stream?movieInfoId=abc")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("movieInfoId must be a number : abc");
+    }
+
+    @Test
+    void getReviewsStream_quietSubscriberStaysSubscribed() {
+        //when
+        var lines = webTestClient
+                .get()
+                .uri("/v1/reviews/stream?movieInfoId=1")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(String.class)
+                .getResponseBody();
+
+        //then : heartbeats while no review is added, then the review
+        StepVerifier.create(lines)
+                .expectNext("", "", "")
+                .then(() -> reviewsByMovieHub.publish(1L, new Review("1", 1L, "Awesome Movie", 9.0)))
+                .thenConsumeWhile(String::isEmpty)
+                .assertNext(line -> assertTrue(line.contains("Awesome Movie"), line))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void getReviewsByMovieInfoIds() {
+        //given
+        var reviewList = List.of(
+                new Review(null, 1L, "Awesome Movie", 9.0),
+                new Review(null, 2L, "Excellent Movie", 8.0));
+
+        when(reviewReactiveRepository.findReviewsByMovieInfoIdIn(List.of(1L, 2L))).thenReturn(Flux.fromIterable(reviewList));
+
+        //when
+        webTestClient
+                .post()
+                .uri("/v1/reviews/batch")
+                .bodyValue(List.of(1L, 2L))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .value(reviews -> {
+                    assertEquals(2, reviews.size());
+                });
+
+    }
+
     @Test
     void addReview() {
         //given
         var review = new Review(null, 1L, "Awesome Movie", 9.0);
 
         when(reviewReactiveRepository.save(isA(Review.class))).thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+        when(reviewStatsService.reviewAdded(isA(Review.class))).thenReturn(Mono.empty());
         doCallRealMethod().when(reviewValidator).validate(any(), any());
         //when
         webTestClient
@@ -82,9 +230,51 @@ public class ReviewsUnitTest {
                     assertEquals("abc", savedReview.getReviewId());
 
                 });
+        verify(reviewStatsService).reviewAdded(new Review("abc", 1L, "Awesome Movie", 9.0));
 
     }
 
+    @Test
+    void addReview_clientReviewIdIgnored() {
+        //given
+        var review = new Review("abc", 1L, "Awesome Movie", 9.0);
+
+        when(reviewReactiveRepository.save(isA(Review.class))).thenReturn(Mono.just(new Review("def", 1L, "Awesome Movie", 9.0)));
+        when(reviewStatsService.reviewAdded(isA(Review.class))).thenReturn(Mono.empty());
+        //when
+        webTestClient
+                .post()
+                .uri("/v1/reviews")
+                .bodyValue(review)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Review.class)
+                .value(savedReview -> assertEquals("def", savedReview.getReviewId()));
+        //then : inserted as a new review, not an update of "abc"
+        verify(reviewReactiveRepository).save(new Review(null, 1L, "Awesome Movie", 9.0));
+    }
+
+    @Test
+    void addReview_coalesced() {
+        //given
+        var review = new Review(null, 1L, "Awesome Movie", 9.0);
+
+        when(reviewWriteCoalescer.isEnabled()).thenReturn(true);
+        when(reviewWriteCoalescer.save(isA(Review.class))).thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+        //when
+        webTestClient
+                .post()
+                .uri("/v1/reviews")
+                .bodyValue(review)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Review.class)
+                .value(savedReview -> assertEquals("abc", savedReview.getReviewId()));
+        //then
+        verify(reviewReactiveRepository, never()).save(any());
+        verify(reviewStatsService, never()).reviewAdded(any());
+    }
+
     @Test
     void addReview_Validations() {
         //given
@@ -107,8 +297,8 @@ public class ReviewsUnitTest {
 
         var reviewUpdate = new Review(null, 1L, "Not an Awesome Movie", 8.0);
 
-        when(reviewReactiveRepository.save(isA(Review.class))).thenReturn(Mono.just(new Review("abc", 1L, "Not an Awesome Movie", 8.0)));
-        when(reviewReactiveRepository.findById((String) any())).thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+        when(reviewReactiveRepository.updateReview("abc", reviewUpdate, null)).thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+        when(reviewStatsService.ratingUpdated(1L, 9.0, 8.0)).thenReturn(Mono.empty());
         doCallRealMethod().when(reviewValidator).validate(any(), any());
         //when
 
@@ -127,15 +317,129 @@ public class ReviewsUnitTest {
                     assertEquals(8.0,updatedReview.getRating());
                     assertEquals("Not an Awesome Movie", updatedReview.getComment());
                 });
+        verify(reviewStatsService).ratingUpdated(1L, 9.0, 8.0);
+        verify(reviewReactiveRepository, never()).save(any());
 
     }
 
+    @Test
+    void updateReview_staleIfMatch() {
+        //given
+        var reviewUpdate = new Review(null, 1L, "Not an Awesome Movie", 8.0);
+        when(reviewReactiveRepository.updateReview("abc", reviewUpdate, List.of(2L))).thenReturn(Mono.empty());
+        when(reviewReactiveRepository.existsById("abc")).thenReturn(Mono.just(true));
+        //when
+        webTestClient
+                .put()
+                .uri("/v1/reviews/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .bodyValue(reviewUpdate)
+                .exchange()
+                .expectStatus().isEqualTo(412);
+        //then
+        verify(reviewStatsService, never()).ratingUpdated(any(), any(), any());
+    }
+
+    @Test
+    void getReviewById() {
+        //given
+        when(reviewReactiveRepository.findById("abc")).thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0, 3L)));
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews/{id}", "abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3\"")
+                .expectBody(Review.class)
+                .value(review -> assertEquals("Awesome Movie", review.getComment()));
+    }
+
+    @Test
+    void patchReview() {
+        //given
+        var patch = new Review(null, null, null, 7.0);
+        when(reviewReactiveRepository.patchReview("abc", patch, List.of(3L)))
+                .thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0, 3L)));
+        when(reviewStatsService.ratingUpdated(1L, 9.0, 7.0)).thenReturn(Mono.empty());
+        //when
+        webTestClient
+                .patch()
+                .uri("/v1/reviews/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .bodyValue(patch)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"4\"")
+                .expectBody(Review.class)
+                .value(review -> {
+                    assertEquals("Awesome Movie", review.getComment());
+                    assertEquals(7.0, review.getRating());
+                });
+        //then
+        verify(reviewStatsService).ratingUpdated(1L, 9.0, 7.0);
+        verify(reviewReactiveRepository, never()).save(any());
+    }
+
+    @Test
+    void patchReview_staleIfMatch() {
+        //given
+        var patch = new Review(null, null, "Not an Awesome Movie", null);
+        when(reviewReactiveRepository.patchReview("abc", patch, List.of(2L))).thenReturn(Mono.empty());
+        when(reviewReactiveRepository.existsById("abc")).thenReturn(Mono.just(true));
+        //when
+        webTestClient
+                .patch()
+                .uri("/v1/reviews/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .bodyValue(patch)
+                .exchange()
+                .expectStatus().isEqualTo(412);
+        //then
+        verify(reviewStatsService, never()).ratingUpdated(any(), any(), any());
+    }
+
+    @Test
+    void patchReview_notFound() {
+        //given
+        var patch = new Review(null, null, "Not an Awesome Movie", null);
+        when(reviewReactiveRepository.patchReview("abc", patch, null)).thenReturn(Mono.empty());
+        //when
+        webTestClient
+                .patch()
+                .uri("/v1/reviews/{id}", "abc")
+                .bodyValue(patch)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void patchReview_Validations() {
+        //when
+        webTestClient
+                .patch()
+                .uri("/v1/reviews/{id}", "abc")
+                .bodyValue(new Review(null, null, null, -1.0))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("rating.negative : please pass a non-negative value");
+        webTestClient
+                .patch()
+                .uri("/v1/reviews/{id}", "abc")
+                .bodyValue(new Review())
+                .exchange()
+                .expectStatus().isBadRequest();
+        //then
+        verify(reviewReactiveRepository, never()).patchReview(any(), any(), any());
+    }
+
     @Test
     void deleteReview() {
         //given
         var reviewId= "abc";
-        when(reviewReactiveRepository.findById((String) any())).thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
-        when(reviewReactiveRepository.deleteById((String) any())).thenReturn(Mono.empty());
+        when(reviewReactiveRepository.findAndRemoveById(reviewId)).thenReturn(Mono.just(new Review("abc", 1L, "Awesome Movie", 9.0)));
+        when(reviewStatsService.reviewDeleted(isA(Review.class))).thenReturn(Mono.empty());
         doCallRealMethod().when(reviewValidator).validate(any(), any());
 
         //when
@@ -144,6 +448,163 @@ public class ReviewsUnitTest {
                 .uri("/v1/reviews/{id}", reviewId)
                 .exchange()
                 .expectStatus().isNoContent();
+
+        //then
+        verify(reviewStatsService).reviewDeleted(new Review("abc", 1L, "Awesome Movie", 9.0));
+        verify(reviewReactiveRepository, never()).findById((String) any());
+    }
+
+    @Test
+    void deleteReview_notFound() {
+        //given
+        when(reviewReactiveRepository.findAndRemoveById("abc")).thenReturn(Mono.empty());
+
+        //when
+        webTestClient
+                .delete()
+                .uri("/v1/reviews/{id}", "abc")
+                .exchange()
+                .expectStatus().isNotFound();
+
+        //then
+        verify(reviewStatsService, never()).reviewDeleted(any());
+    }
+
+    @Test
+    void deleteReviewsByMovieInfoId() {
+        //given
+        when(reviewReactiveRepository.deleteByMovieInfoId(1L)).thenReturn(Mono.just(3L));
+        when(reviewStatsService.movieReviewsDeleted(1L)).thenReturn(Mono.empty());
+
+        //when
+        webTestClient
+                .delete()
+                .uri("/v1/reviews?movieInfoId=1")
+                .exchange()
+                .expectStatus().isNoContent();
+
+        //then
+        verify(reviewStatsService).movieReviewsDeleted(1L);
+    }
+
+    @Test
+    void deleteReviewsByMovieInfoId_movieInfoIdRequired() {
+        //when
+        webTestClient
+                .delete()
+                .uri("/v1/reviews")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("movieInfoId is required");
+
+        //then
+        verify(reviewReactiveRepository, never()).deleteByMovieInfoId(any());
+    }
+
+    @Test
+    void getLatestReviewsByMovieInfoId() {
+        //given
+        when(reviewReactiveRepository.findReviewsByMovieInfoIdOrderByReviewIdDesc(1L, PageRequest.of(0, 2)))
+                .thenReturn(Flux.just(new Review("a3", 1L, "Awesome Movie", 9.0), new Review("a2", 1L, "Good Movie", 7.0)));
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews?movieInfoId=1&limit=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .value(reviews -> assertEquals(List.of("a3", "a2"),
+                        reviews.stream().map(Review::getReviewId).collect(Collectors.toList())));
+
+        //then
+        verify(reviewReactiveRepository, never()).findReviewsByMovieInfoId(any());
+    }
+
+    @Test
+    void getLatestReviewsByMovieInfoId_limitCapped() {
+        //given
+        when(reviewReactiveRepository.findReviewsByMovieInfoIdOrderByReviewIdDesc(1L, PageRequest.of(0, 1000)))
+                .thenReturn(Flux.empty());
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews?movieInfoId=1&limit=5000")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .hasSize(0);
+    }
+
+    @Test
+    void getLatestReviewsByMovieInfoId_invalidLimit() {
+        webTestClient
+                .get()
+                .uri("/v1/reviews?movieInfoId=1&limit=0")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("limit must be positive : 0");
+    }
+
+    @Test
+    void addReviews() {
+        //given
+        when(reviewBulkService.insert(any())).thenAnswer(invocation -> invocation.<Flux<String>>getArgument(0)
+                .index((index, line) -> ReviewBulkResult.created(index + 1, line.substring(0, 2))));
+
+        //when
+        var results = webTestClient
+                .post()
+                .uri("/v1/reviews/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue("r1\nr2\n")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(ReviewBulkResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        //then
+        assertEquals(List.of(ReviewBulkResult.created(1, "r1"), ReviewBulkResult.created(2, "r2")), results);
+    }
+
+    @Test
+    void getReviewStats() {
+        //given
+        when(reviewStatsService.getStats(1L))
+                .thenReturn(Mono.just(new ReviewStats(1L, 3, 2, 17.0, Map.of("8", 1L, "9", 1L), null)));
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/reviews/stats?movieInfoId=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.movieInfoId").isEqualTo(1)
+                .jsonPath("$.count").isEqualTo(3)
+                .jsonPath("$.average").isEqualTo(8.5)
+                .jsonPath("$.histogram.9").isEqualTo(1)
+                .jsonPath("$.reconciledAt").doesNotExist();
+    }
+
+    @Test
+    void getReviewStats_invalidMovieInfoId() {
+        webTestClient
+                .get()
+                .uri("/v1/reviews/stats?movieInfoId=abc")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("movieInfoId must be a number : abc");
     }
 
 
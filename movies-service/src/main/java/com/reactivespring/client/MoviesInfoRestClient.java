@@ -1,43 +1,130 @@
 package com.reactivespring.client;
 
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reactivespring.config.HedgingProperties;
+import com.reactivespring.config.LoadBalancerProperties;
+import com.reactivespring.config.MovieInfoCacheProperties;
+import com.reactivespring.config.RetryProperties;
+import com.reactivespring.config.WebClientConfig;
 import com.reactivespring.domain.MovieInfo;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.util.Hedging;
+import com.reactivespring.util.LoadBalancer;
+import com.reactivespring.util.RetryBudget;
 import com.reactivespring.util.RetryUtil;
+import com.reactivespring.util.SingleFlight;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.util.List;
 
 @Component
 @Slf4j
 public class MoviesInfoRestClient {
 
     private WebClient webClient;
-
-    @Value("${restClient.moviesInfoUrl}")
-    private String moviesInfoUrl;
-
-    public MoviesInfoRestClient(WebClient webClient) {
+    private SingleFlight singleFlight;
+    private AsyncLoadingCache<String, MovieInfo> movieInfoCache;
+    private Retry retrySpec;
+    private CircuitBreaker circuitBreaker;
+    private Bulkhead bulkhead;
+    private Hedging hedging;
+    private LoadBalancer loadBalancer;
+
+    public MoviesInfoRestClient(@Qualifier("moviesInfoWebClient") WebClient webClient, MeterRegistry meterRegistry, MovieInfoCacheProperties cacheProperties,
+                                RetryProperties retryProperties, CircuitBreakerRegistry circuitBreakerRegistry,
+                                BulkheadRegistry bulkheadRegistry, HedgingProperties hedgingProperties,
+                                LoadBalancerProperties loadBalancerProperties, @Value("${restClient.moviesInfoUrl}") String moviesInfoUrl) {
         this.webClient = webClient;
+        var loadBalancerPolicy = loadBalancerProperties.getMoviesInfo();
+        var instances = loadBalancerPolicy.getInstances().isEmpty() ? List.of(moviesInfoUrl) : loadBalancerPolicy.getInstances();
+        this.loadBalancer = new LoadBalancer("moviesInfo", instances, loadBalancerPolicy,
+                ex -> ex instanceof MoviesInfoServerException || ex instanceof WebClientRequestException, meterRegistry);
+        if (hedgingProperties.isEnabled()) {
+            this.hedging = new Hedging("moviesInfo", hedgingProperties, meterRegistry);
+        }
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("moviesInfo");
+        this.bulkhead = bulkheadRegistry.bulkhead("moviesInfo");
+        this.singleFlight = new SingleFlight("moviesInfo", meterRegistry);
+        var retryPolicy = retryProperties.getMoviesInfo();
+        this.retrySpec = RetryUtil.retrySpec(retryPolicy,
+                new RetryBudget("moviesInfo", retryPolicy.getBudgetPercent(), retryPolicy.getBudgetMaxTokens(), meterRegistry));
+        if (cacheProperties.isEnabled()) {
+            this.movieInfoCache = buildMovieInfoCache(cacheProperties, meterRegistry);
+        }
     }
 
     public Mono<MovieInfo> retrieveMovieInfo(String movieId) {
 
-        var url = moviesInfoUrl.concat("/{id}");
+        if (movieInfoCache == null) {
+            return singleFlight.mono(movieId, () -> fetchMovieInfo(movieId));
+        }
+        return Mono.defer(() -> {
+            var movieInfoFuture = movieInfoCache.get(movieId);
+            // Caffeine drops failed loads asynchronously, evict right away so the next call retries
+            return Mono.fromFuture(movieInfoFuture)
+                    .doOnError(ex -> movieInfoCache.asMap().remove(movieId, movieInfoFuture));
+        });
+    }
+
+    /**
+     * W-TinyLFU bounded cache. Loads and refreshes subscribe to the WebClient call and hand back its future,
+     * so a miss never blocks the calling event-loop thread. Failed or empty loads are not cached.
+     */
+    private AsyncLoadingCache<String, MovieInfo> buildMovieInfoCache(MovieInfoCacheProperties cacheProperties, MeterRegistry meterRegistry) {
+        AsyncLoadingCache<String, MovieInfo> cache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getMaximumSize())
+                .refreshAfterWrite(cacheProperties.getRefreshAfter())
+                .expireAfterWrite(cacheProperties.getExpireAfter())
+                .recordStats()
+                .buildAsync((movieId, executor) -> singleFlight.mono(movieId, () -> fetchMovieInfo(movieId)).toFuture());
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "movieInfo");
+    }
+
+    private Mono<MovieInfo> fetchMovieInfo(String movieId) {
+
+        var movieInfo = hedging == null
+                ? requestMovieInfo(movieId)
+                : hedging.execute(() -> requestMovieInfo(movieId));
+
+        return movieInfo
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+               //.retry(3)
+                //.retryWhen(Retry.fixedDelay(3, Duration.ofMillis(500)))
+                .retryWhen(retrySpec)
+                .log();
+
+    }
+
+    private Mono<MovieInfo> requestMovieInfo(String movieId) {
+
         /*var retrySpec = RetrySpec.fixedDelay(3, Duration.ofSeconds(1))
                 .filter((ex) -> ex instanceof MoviesInfoServerException)
                 .onRetryExhaustedThrow(((retryBackoffSpec, retrySignal) -> Exceptions.propagate(retrySignal.failure())));*/
 
-        return webClient.get()
-                .uri(url, movieId)
+        return loadBalancer.mono(baseUrl -> webClient.get()
+                .uri(baseUrl.concat("/{id}"), movieId)
                 .retrieve()
                 .onStatus(HttpStatus::is4xxClientError, (clientResponse -> {
                     log.info("Status code : {}", clientResponse.statusCode().value());
@@ -52,23 +139,41 @@ public class MoviesInfoRestClient {
                     return clientResponse.bodyToMono(String.class)
                             .flatMap(response -> Mono.error(new MoviesInfoServerException(response)));
                 }))
-                .bodyToMono(MovieInfo.class)
-               //.retry(3)
-                //.retryWhen(Retry.fixedDelay(3, Duration.ofMillis(500)))
-                .retryWhen(RetryUtil.retrySpec())
-                .log();
+                .bodyToMono(MovieInfo.class));
+    }
+
+    public Flux<MovieInfo> retrieveMovieInfos(List<String> movieIds) {
+
+        return loadBalancer.flux(baseUrl -> webClient.post()
+                .uri(baseUrl.concat("/batch"))
+                .bodyValue(movieIds)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, (clientResponse -> {
+                    log.info("Status code : {}", clientResponse.statusCode().value());
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(response -> Mono.error(new MoviesInfoClientException(response, clientResponse.statusCode().value())));
+                }))
+                .onStatus(HttpStatus::is5xxServerError, (clientResponse -> {
+                    log.info("Status code : {}", clientResponse.statusCode().value());
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(response -> Mono.error(new MoviesInfoServerException(response)));
+                }))
+                .bodyToFlux(MovieInfo.class))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .retryWhen(retrySpec);
 
     }
 
     public Flux<MovieInfo> retrieveMovieInfoStream() {
 
-        var url = moviesInfoUrl.concat("/stream");
         /*var retrySpec = RetrySpec.fixedDelay(3, Duration.ofSeconds(1))
                 .filter((ex) -> ex instanceof MoviesInfoServerException)
                 .onRetryExhaustedThrow(((retryBackoffSpec, retrySignal) -> Exceptions.propagate(retrySignal.failure())));*/
 
-        return webClient.get()
-                .uri(url)
+        return loadBalancer.flux(baseUrl -> webClient.get()
+                .uri(baseUrl.concat("/stream"))
+                .attribute(WebClientConfig.STREAMING, true)
                 .retrieve()
                 .onStatus(HttpStatus::is4xxClientError, (clientResponse -> {
                     log.info("Status code : {}", clientResponse.statusCode().value());
@@ -80,19 +185,17 @@ public class MoviesInfoRestClient {
                     return clientResponse.bodyToMono(String.class)
                             .flatMap(response -> Mono.error(new MoviesInfoServerException(response)));
                 }))
-                .bodyToFlux(MovieInfo.class)
+                .bodyToFlux(MovieInfo.class))
                 //.retry(3)
-                .retryWhen(RetryUtil.retrySpec())
+                .retryWhen(retrySpec)
                 .log();
 
     }
 
     public Mono<MovieInfo> retrieveMovieInfo_exchange(String movieId) {
 
-        var url = moviesInfoUrl.concat("/{id}");
-
-        return webClient.get()
-                .uri(url, movieId)
+        return loadBalancer.mono(baseUrl -> webClient.get()
+                .uri(baseUrl.concat("/{id}"), movieId)
                 .exchangeToMono(clientResponse -> {
 
                     switch (clientResponse.statusCode()) {
@@ -104,8 +207,8 @@ public class MoviesInfoRestClient {
                             return clientResponse.bodyToMono(String.class)
                                     .flatMap(response -> Mono.error(new MoviesInfoServerException(response)));
                     }
-                })
-                .retryWhen(RetryUtil.retrySpec())
+                }))
+                .retryWhen(retrySpec)
                 .log();
 
     }
@@ -1,44 +1,92 @@
 package com.reactivespring.client;
 
+import com.reactivespring.config.LoadBalancerProperties;
+import com.reactivespring.config.RetryProperties;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
 import com.reactivespring.exception.ReviewsClientException;
 import com.reactivespring.exception.ReviewsServerException;
+import com.reactivespring.util.LoadBalancer;
+import com.reactivespring.util.RetryBudget;
 import com.reactivespring.util.RetryUtil;
+import com.reactivespring.util.SingleFlight;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.util.List;
+import java.util.Optional;
 
 @Component
 @Slf4j
 public class ReviewsRestClient {
 
     private WebClient webClient;
+    private SingleFlight singleFlight;
+    private Retry retrySpec;
+    private CircuitBreaker circuitBreaker;
+    private Bulkhead bulkhead;
+    private LoadBalancer loadBalancer;
 
-    @Value("${restClient.reviewsUrl}")
-    private String reviewsUrl;
-
-    public ReviewsRestClient(WebClient webClient) {
+    public ReviewsRestClient(@Qualifier("reviewsWebClient") WebClient webClient, MeterRegistry meterRegistry,
+                             RetryProperties retryProperties, CircuitBreakerRegistry circuitBreakerRegistry,
+                             BulkheadRegistry bulkheadRegistry, LoadBalancerProperties loadBalancerProperties,
+                             @Value("${restClient.reviewsUrl}") String reviewsUrl) {
         this.webClient = webClient;
+        var loadBalancerPolicy = loadBalancerProperties.getReviews();
+        var instances = loadBalancerPolicy.getInstances().isEmpty() ? List.of(reviewsUrl) : loadBalancerPolicy.getInstances();
+        this.loadBalancer = new LoadBalancer("reviews", instances, loadBalancerPolicy,
+                ex -> ex instanceof ReviewsServerException || ex instanceof WebClientRequestException, meterRegistry);
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("reviews");
+        this.bulkhead = bulkheadRegistry.bulkhead("reviews");
+        this.singleFlight = new SingleFlight("reviews", meterRegistry);
+        var retryPolicy = retryProperties.getReviews();
+        this.retrySpec = RetryUtil.retrySpec(retryPolicy,
+                new RetryBudget("reviews", retryPolicy.getBudgetPercent(), retryPolicy.getBudgetMaxTokens(), meterRegistry));
     }
 
     public Flux<Review> retrieveReviews(String movieId){
 
-        var url = UriComponentsBuilder.fromHttpUrl(reviewsUrl)
-                .queryParam("movieInfoId", movieId)
-                .buildAndExpand().toString();
+        return singleFlight.flux(movieId, () -> fetchReviews(movieId, Optional.empty()));
+    }
 
-        return webClient.get()
-                .uri(url)
+    /**
+     * The {@code limit} latest reviews of the movie, newest first : the reviews service reads no more than that.
+     */
+    public Flux<Review> retrieveLatestReviews(String movieId, int limit){
+
+        return singleFlight.flux(movieId + "?limit=" + limit, () -> fetchReviews(movieId, Optional.of(limit)));
+    }
+
+    private Flux<Review> fetchReviews(String movieId, Optional<Integer> limit){
+
+        return loadBalancer.flux(baseUrl -> webClient.get()
+                .uri(UriComponentsBuilder.fromHttpUrl(baseUrl)
+                        .queryParam("movieInfoId", movieId)
+                        .queryParamIfPresent("limit", limit)
+                        .buildAndExpand().toString())
                 .retrieve()
                 .onStatus(HttpStatus::is4xxClientError, (clientResponse -> {
                     log.info("Status code : {}", clientResponse.statusCode().value());
                     if(clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)){
-                        return Mono.empty();
+                        // no reviews for the movie : mapped to an empty Flux below, whatever the error body is
+                        return clientResponse.createException();
                     }
                     return clientResponse.bodyToMono(String.class)
                             .flatMap(response -> Mono.error(new ReviewsClientException(response)));
@@ -49,11 +97,62 @@ public class ReviewsRestClient {
                             .flatMap(response -> Mono.error(new ReviewsServerException(response)));
                 }))
                 .bodyToFlux(Review.class)
-                .retryWhen(RetryUtil.retrySpec());
+                .onErrorResume(WebClientResponseException.NotFound.class, ex -> Flux.empty()))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .retryWhen(retrySpec);
+
+    }
+
+    /**
+     * The rating stats of the movie, maintained by the reviews service : one document read whatever the number of reviews.
+     */
+    public Mono<ReviewStats> retrieveReviewStats(String movieId){
+
+        return singleFlight.mono("stats:" + movieId, () -> loadBalancer.mono(baseUrl -> webClient.get()
+                .uri(UriComponentsBuilder.fromHttpUrl(baseUrl)
+                        .path("/stats")
+                        .queryParam("movieInfoId", movieId)
+                        .buildAndExpand().toString())
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, (clientResponse -> {
+                    log.info("Status code : {}", clientResponse.statusCode().value());
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(response -> Mono.error(new ReviewsClientException(response)));
+                }))
+                .onStatus(HttpStatus::is5xxServerError, (clientResponse -> {
+                    log.info("Status code : {}", clientResponse.statusCode().value());
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(response -> Mono.error(new ReviewsServerException(response)));
+                }))
+                .bodyToMono(ReviewStats.class))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .retryWhen(retrySpec));
 
     }
 
+    public Flux<Review> retrieveReviews(List<String> movieIds){
 
+        return loadBalancer.flux(baseUrl -> webClient.post()
+                .uri(baseUrl.concat("/batch"))
+                .bodyValue(movieIds)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, (clientResponse -> {
+                    log.info("Status code : {}", clientResponse.statusCode().value());
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(response -> Mono.error(new ReviewsClientException(response)));
+                }))
+                .onStatus(HttpStatus::is5xxServerError, (clientResponse -> {
+                    log.info("Status code : {}", clientResponse.statusCode().value());
+                    return clientResponse.bodyToMono(String.class)
+                            .flatMap(response -> Mono.error(new ReviewsServerException(response)));
+                }))
+                .bodyToFlux(Review.class))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .retryWhen(retrySpec);
 
+    }
 
 }
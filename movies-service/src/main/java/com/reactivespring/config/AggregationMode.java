@@ -0,0 +1,15 @@
+package com.reactivespring.config;
+
+import com.reactivespring.domain.Movie;
+
+/**
+ * How {@link Movie} aggregates are assembled from the movie-info and reviews backends.
+ * <ul>
+ *     <li>SEQUENTIAL - reviews are requested only after the movie info has been retrieved.</li>
+ *     <li>PARALLEL - both calls start at once, the reviews call is cancelled if the movie info lookup fails.</li>
+ * </ul>
+ */
+public enum AggregationMode {
+    SEQUENTIAL,
+    PARALLEL
+}
@@ -0,0 +1,26 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Request hedging for {@link com.reactivespring.client.MoviesInfoRestClient#retrieveMovieInfo(String)} :
+ * when the first call has not answered after the observed {@code percentile} latency (clamped between
+ * {@code minDelay} and {@code maxDelay}), an identical second call is sent and the first response wins.
+ */
+@Data
+@ConfigurationProperties(prefix = "restclient.movies-info-hedging")
+public class HedgingProperties {
+
+    private boolean enabled = false;
+    private double percentile = 0.95;
+    private Duration minDelay = Duration.ofMillis(10);
+    private Duration maxDelay = Duration.ofSeconds(1);
+    /**
+     * Hedged calls allowed as a percentage of the requests.
+     */
+    private double maxHedgePercent = 10;
+    private long maxHedgeBurst = 10;
+}
@@ -0,0 +1,45 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import reactor.netty.http.HttpProtocol;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Connection pool and timeout settings of the WebClient used for each downstream service.
+ * Every downstream gets its own Reactor Netty connection provider, so a slow reviews backend
+ * cannot exhaust the connections of the movie-info backend.
+ */
+@Data
+@ConfigurationProperties(prefix = "restclient.http")
+public class HttpClientProperties {
+
+    private ConnectionPool moviesInfo = new ConnectionPool();
+    private ConnectionPool reviews = new ConnectionPool();
+
+    @Data
+    public static class ConnectionPool {
+
+        private int maxConnections = 200;
+        /**
+         * Requests allowed to wait for a connection once the pool is exhausted, beyond that they fail fast.
+         */
+        private int pendingAcquireMaxCount = 1000;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        private Duration evictInBackground = Duration.ofSeconds(30);
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        /**
+         * Applied per request, streaming calls have none.
+         */
+        private Duration responseTimeout = Duration.ofSeconds(5);
+        private boolean keepAlive = true;
+        /**
+         * HTTP11, H2C (cleartext HTTP/2) or H2 (HTTP/2 over TLS).
+         */
+        private List<HttpProtocol> protocols = List.of(HttpProtocol.HTTP11);
+    }
+}
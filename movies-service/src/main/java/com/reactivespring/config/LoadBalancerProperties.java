@@ -0,0 +1,43 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Static client-side load balancing of each downstream client. When no instance is listed, the client
+ * keeps calling its single {@code restClient.moviesInfoUrl} / {@code restClient.reviewsUrl}.
+ */
+@Data
+@ConfigurationProperties(prefix = "restclient.load-balancer")
+public class LoadBalancerProperties {
+
+    private Policy moviesInfo = new Policy();
+    private Policy reviews = new Policy();
+
+    @Data
+    public static class Policy {
+
+        /**
+         * Base urls of the instances, e.g. http://host-1:8080/v1/movieinfos.
+         */
+        private List<String> instances = new ArrayList<>();
+        private LoadBalancingStrategy strategy = LoadBalancingStrategy.POWER_OF_TWO_CHOICES;
+        /**
+         * Consecutive server errors after which an instance is ejected.
+         */
+        private int failureThreshold = 5;
+        /**
+         * Ejection time of an instance, multiplied by the number of times it was ejected in a row.
+         */
+        private Duration baseEjectionTime = Duration.ofSeconds(30);
+        private Duration maxEjectionTime = Duration.ofMinutes(5);
+        /**
+         * Instances that may be ejected at once, as a percentage of all the instances.
+         */
+        private double maxEjectionPercent = 50;
+    }
+}
@@ -0,0 +1,13 @@
+package com.reactivespring.config;
+
+/**
+ * How {@link com.reactivespring.util.LoadBalancer} picks an instance among the healthy ones.
+ * <ul>
+ *     <li>POWER_OF_TWO_CHOICES - two random instances are sampled, the one with fewer outstanding requests wins.</li>
+ *     <li>LEAST_OUTSTANDING - every instance is scanned, the one with the fewest outstanding requests wins.</li>
+ * </ul>
+ */
+public enum LoadBalancingStrategy {
+    POWER_OF_TWO_CHOICES,
+    LEAST_OUTSTANDING
+}
@@ -0,0 +1,21 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Near-cache settings for {@link com.reactivespring.client.MoviesInfoRestClient#retrieveMovieInfo(String)}.
+ * An entry older than {@code refreshAfter} is still served while a single background refresh runs,
+ * an entry older than {@code expireAfter} is no longer served at all.
+ */
+@Data
+@ConfigurationProperties(prefix = "restclient.movies-info-cache")
+public class MovieInfoCacheProperties {
+
+    private boolean enabled = true;
+    private long maximumSize = 10_000;
+    private Duration refreshAfter = Duration.ofMinutes(5);
+    private Duration expireAfter = Duration.ofHours(1);
+}
@@ -0,0 +1,37 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Retry policy of each downstream client : exponential backoff with jitter, bounded by a retry budget.
+ */
+@Data
+@ConfigurationProperties(prefix = "restclient.retry")
+public class RetryProperties {
+
+    private Policy moviesInfo = new Policy();
+    private Policy reviews = new Policy();
+
+    @Data
+    public static class Policy {
+
+        private long maxAttempts = 3;
+        private Duration minBackoff = Duration.ofMillis(200);
+        private Duration maxBackoff = Duration.ofSeconds(2);
+        /**
+         * Randomization factor applied to each backoff, between 0 and 1.
+         */
+        private double jitter = 0.5;
+        /**
+         * Retries allowed as a percentage of the requests sent to the client.
+         */
+        private double budgetPercent = 10;
+        /**
+         * Retry tokens the budget can accumulate, this is also the burst allowed after an idle period.
+         */
+        private long budgetMaxTokens = 10;
+    }
+}
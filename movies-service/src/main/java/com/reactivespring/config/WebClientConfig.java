@@ -1,14 +1,86 @@
 package com.reactivespring.config;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class WebClientConfig {
 
+    /**
+     * Request attribute marking a long-lived streaming call, which gets no response timeout.
+     */
+    public static final String STREAMING = WebClientConfig.class.getName() + ".STREAMING";
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider moviesInfoConnectionProvider(HttpClientProperties httpClientProperties) {
+        return connectionProvider("moviesInfo", httpClientProperties.getMoviesInfo());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider reviewsConnectionProvider(HttpClientProperties httpClientProperties) {
+        return connectionProvider("reviews", httpClientProperties.getReviews());
+    }
+
     @Bean
-    public WebClient webClient(WebClient.Builder builder) {
-        return builder.build();
+    public WebClient moviesInfoWebClient(WebClient.Builder builder, HttpClientProperties httpClientProperties,
+                                         @Qualifier("moviesInfoConnectionProvider") ConnectionProvider connectionProvider) {
+        var pool = httpClientProperties.getMoviesInfo();
+        return builder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient(connectionProvider, pool)))
+                .filter(responseTimeout(pool.getResponseTimeout()))
+                .build();
+    }
+
+    @Bean
+    public WebClient reviewsWebClient(WebClient.Builder builder, HttpClientProperties httpClientProperties,
+                                      @Qualifier("reviewsConnectionProvider") ConnectionProvider connectionProvider) {
+        var pool = httpClientProperties.getReviews();
+        return builder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient(connectionProvider, pool)))
+                .filter(responseTimeout(pool.getResponseTimeout()))
+                .build();
+    }
+
+    public static ConnectionProvider connectionProvider(String name, HttpClientProperties.ConnectionPool pool) {
+        return ConnectionProvider.builder(name)
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxLifeTime(pool.getMaxLifeTime())
+                .evictInBackground(pool.getEvictInBackground())
+                .metrics(true)
+                .build();
+    }
+
+    public static HttpClient httpClient(ConnectionProvider connectionProvider, HttpClientProperties.ConnectionPool pool) {
+        return HttpClient.create(connectionProvider)
+                .protocol(pool.getProtocols().toArray(new HttpProtocol[0]))
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) pool.getConnectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, pool.isKeepAlive());
+    }
+
+    /**
+     * Applies the response timeout per request rather than on the HttpClient, so the streaming calls
+     * (marked with {@link #STREAMING}) can stay open as long as the downstream keeps them open.
+     */
+    public static ExchangeFilterFunction responseTimeout(Duration responseTimeout) {
+        return (request, next) -> request.attribute(STREAMING).isPresent()
+                ? next.exchange(request)
+                : next.exchange(ClientRequest.from(request)
+                        .httpRequest(httpRequest -> httpRequest.<HttpClientRequest>getNativeRequest().responseTimeout(responseTimeout))
+                        .build());
     }
 }
@@ -2,23 +2,56 @@ package com.reactivespring.controller;
 
 import com.reactivespring.client.MoviesInfoRestClient;
 import com.reactivespring.client.ReviewsRestClient;
+import com.reactivespring.config.AggregationMode;
 import com.reactivespring.domain.Movie;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieSummary;
+import com.reactivespring.domain.Review;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
 @RestController
 @RequestMapping("/v1/movies")
+@Slf4j
 public class MoviesController {
 
     private MoviesInfoRestClient moviesInfoRestClient;
     private ReviewsRestClient reviewsRestClient;
 
+    @Value("${movies.aggregation.mode:PARALLEL}")
+    private AggregationMode aggregationMode;
+
+    @Value("${movies.summary.latestReviews:5}")
+    private int summaryLatestReviews;
+
+    @Value("${movies.stream.enrich.batchSize:20}")
+    private int enrichBatchSize;
+
+    @Value("${movies.stream.enrich.maxDelay:100ms}")
+    private Duration enrichMaxDelay;
+
+    @Value("${movies.stream.enrich.concurrency:4}")
+    private int enrichConcurrency;
+
     public MoviesController(MoviesInfoRestClient moviesInfoRestClient, ReviewsRestClient reviewsRestClient) {
         this.moviesInfoRestClient = moviesInfoRestClient;
         this.reviewsRestClient = reviewsRestClient;
@@ -27,14 +60,118 @@ public class MoviesController {
     @GetMapping("/{id}")
     public Mono<Movie> retrieveMovieById(@PathVariable("id") String movieId){
 
+        if (aggregationMode == AggregationMode.SEQUENTIAL) {
+            return retrieveMovieSequential(movieId);
+        }
+        return retrieveMovieParallel(movieId);
+
+    }
+
+    /**
+     * The MovieInfo with the rating stats and the {@code summaryLatestReviews} latest reviews : two bounded calls to the
+     * reviews service instead of all the reviews of the movie, so the response has the same size whatever their number.
+     * Degrades like {@link #retrieveReviewList(String)}.
+     */
+    @GetMapping(value = "/{id}", params = "view=summary")
+    public Mono<MovieSummary> retrieveMovieSummaryById(@PathVariable("id") String movieId){
+
+        var movieInfoMono = moviesInfoRestClient.retrieveMovieInfo(movieId);
+        var reviewsSummaryMono = Mono.zip(reviewsRestClient.retrieveReviewStats(movieId),
+                        reviewsRestClient.retrieveLatestReviews(movieId, summaryLatestReviews).collectList())
+                .map(Optional::of)
+                .onErrorResume(MoviesController::isReviewsUnavailable, ex -> {
+                    log.warn("Reviews unavailable for movie {}, returning a degraded summary : {}", movieId, ex.getMessage());
+                    return Mono.just(Optional.empty());
+                });
+
+        return Mono.zip(movieInfoMono, reviewsSummaryMono, (movieInfo, reviewsSummary) -> reviewsSummary
+                .map(statsAndReviews -> new MovieSummary(movieInfo, statsAndReviews.getT1(), statsAndReviews.getT2(), false))
+                .orElseGet(() -> new MovieSummary(movieInfo, null, List.of(), true)));
+    }
+
+    Mono<Movie> retrieveMovieSequential(String movieId) {
+
         return moviesInfoRestClient.retrieveMovieInfo(movieId)
                 //moviesInfoRestClient.retrieveMovieInfo_exchange(movieId)
                 .flatMap(movieInfo -> {
-                    var reviewList = reviewsRestClient.retrieveReviews(movieId)
-                            .collectList();
-                   return reviewList.map(reviews -> new Movie(movieInfo, reviews));
+                    var reviewList = retrieveReviewList(movieId);
+                   return reviewList.map(reviews -> toMovie(movieInfo, reviews));
                 });
+    }
+
+    /**
+     * Subscribes to both backends at once. Mono.zip cancels the sibling source as soon as one of them
+     * errors, so a 404 from movie-info also cancels the in-flight reviews call.
+     */
+    Mono<Movie> retrieveMovieParallel(String movieId) {
 
+        var movieInfoMono = moviesInfoRestClient.retrieveMovieInfo(movieId);
+        var reviewListMono = retrieveReviewList(movieId);
+
+        return Mono.zip(movieInfoMono, reviewListMono, MoviesController::toMovie);
+    }
+
+    /**
+     * Reviews are optional in the aggregate : when the reviews circuit breaker is open or its bulkhead is full,
+     * an empty Optional is returned right away instead of failing the whole Movie.
+     */
+    private Mono<Optional<List<Review>>> retrieveReviewList(String movieId) {
+        return reviewsRestClient.retrieveReviews(movieId)
+                .collectList()
+                .map(Optional::of)
+                .onErrorResume(MoviesController::isReviewsUnavailable, ex -> {
+                    log.warn("Reviews unavailable for movie {}, returning a degraded Movie : {}", movieId, ex.getMessage());
+                    return Mono.just(Optional.empty());
+                });
+    }
+
+    private static Movie toMovie(MovieInfo movieInfo, Optional<List<Review>> reviewList) {
+        return reviewList
+                .map(reviews -> new Movie(movieInfo, reviews))
+                .orElseGet(() -> new Movie(movieInfo, List.of(), true));
+    }
+
+    private static boolean isReviewsUnavailable(Throwable ex) {
+        return ex instanceof CallNotPermittedException || ex instanceof BulkheadFullException;
+    }
+
+    /**
+     * Resolves many movies with one bulk call per backend and stitches the aggregates in memory,
+     * in the order of the requested ids. Unknown ids are skipped.
+     */
+    @PostMapping("/batch")
+    public Flux<Movie> retrieveMoviesByIds(@RequestBody List<String> movieIds){
+
+        var distinctIds = movieIds.stream().distinct().collect(Collectors.toList());
+        if (distinctIds.isEmpty()) {
+            return Flux.empty();
+        }
+
+        var movieInfosById = moviesInfoRestClient.retrieveMovieInfos(distinctIds)
+                .collectMap(MovieInfo::getMovieInfoId);
+
+        return Mono.zip(movieInfosById, retrieveReviewsByMovieId(distinctIds))
+                .flatMapMany(tuple -> Flux.fromIterable(distinctIds)
+                        .filter(tuple.getT1()::containsKey)
+                        .map(movieId -> toMovieFromBatch(tuple.getT1().get(movieId), tuple.getT2())));
+    }
+
+    /**
+     * Reviews of many movies in one bulk call, grouped by movie id. Degrades like {@link #retrieveReviewList(String)}.
+     */
+    private Mono<Optional<Map<String, Collection<Review>>>> retrieveReviewsByMovieId(List<String> movieIds) {
+        return reviewsRestClient.retrieveReviews(movieIds)
+                .collectMultimap(review -> String.valueOf(review.getMovieInfoId()))
+                .map(Optional::of)
+                .onErrorResume(MoviesController::isReviewsUnavailable, ex -> {
+                    log.warn("Reviews unavailable for the batch, returning degraded Movies : {}", ex.getMessage());
+                    return Mono.just(Optional.empty());
+                });
+    }
+
+    private static Movie toMovieFromBatch(MovieInfo movieInfo, Optional<Map<String, Collection<Review>>> reviewsByMovieId) {
+        return toMovie(movieInfo, reviewsByMovieId
+                .<List<Review>>map(reviews -> new ArrayList<>(reviews.getOrDefault(movieInfo.getMovieInfoId(), List.of()))));
     }
 
     @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
@@ -43,4 +180,37 @@ public class MoviesController {
         return moviesInfoRestClient.retrieveMovieInfoStream();
 
     }
+
+    /**
+     * Streams {@link Movie} aggregates : the MovieInfo stream is cut in batches of {@code enrichBatchSize}, or of
+     * whatever arrived within {@code enrichMaxDelay} so a quiet live stream does not hold movie infos back,
+     * the reviews of each batch are fetched with one bulk call and at most {@code enrichConcurrency} batches are
+     * in flight. flatMapSequential keeps the upstream order and only requests a new batch once one has been
+     * drained downstream, and the fair-backpressure windowTimeout only opens a window on request (bufferTimeout
+     * fails when its delay expires without one), so a slow client slows down the MovieInfo stream instead of
+     * buffering it.
+     */
+    @GetMapping(value = "/stream", params = "enrich=true", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Movie> retrieveMoviesStream(){
+
+        return moviesInfoRestClient.retrieveMovieInfoStream()
+                .windowTimeout(enrichBatchSize, enrichMaxDelay, true)
+                .concatMap(Flux::collectList)
+                .filter(movieInfos -> !movieInfos.isEmpty())
+                .flatMapSequential(this::enrich, enrichConcurrency, 1);
+
+    }
+
+    private Flux<Movie> enrich(List<MovieInfo> movieInfos) {
+
+        var movieIds = movieInfos.stream()
+                .map(MovieInfo::getMovieInfoId)
+                .distinct()
+                .collect(Collectors.toList());
+
+        return retrieveReviewsByMovieId(movieIds)
+                .flatMapIterable(reviewsByMovieId -> movieInfos.stream()
+                        .map(movieInfo -> toMovieFromBatch(movieInfo, reviewsByMovieId))
+                        .collect(Collectors.toList()));
+    }
 }
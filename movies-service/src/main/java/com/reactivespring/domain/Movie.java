@@ -14,4 +14,12 @@ public class Movie {
 
     private MovieInfo movieInfo;
     private List<Review> reviewList;
+    /**
+     * true when the reviews backend was unavailable and the reviewList was left empty.
+     */
+    private boolean degraded;
+
+    public Movie(MovieInfo movieInfo, List<Review> reviewList) {
+        this(movieInfo, reviewList, false);
+    }
 }
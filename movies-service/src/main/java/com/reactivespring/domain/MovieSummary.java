@@ -0,0 +1,27 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A {@link Movie} whose size does not grow with its reviews : the rating stats and only the latest reviews.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieSummary {
+
+    private MovieInfo movieInfo;
+    private ReviewStats reviewStats;
+    /**
+     * The latest reviews, newest first.
+     */
+    private List<Review> latestReviews;
+    /**
+     * true when the reviews backend was unavailable : reviewStats is null and latestReviews empty.
+     */
+    private boolean degraded;
+}
@@ -0,0 +1,25 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewStats {
+
+    private Long movieInfoId;
+    private long count;
+    private long ratingCount;
+    /**
+     * null when no review of the movie is rated.
+     */
+    private Double average;
+    /**
+     * Rated reviews per rating bucket, the bucket being the integer part of the rating.
+     */
+    private Map<String, Long> histogram;
+}
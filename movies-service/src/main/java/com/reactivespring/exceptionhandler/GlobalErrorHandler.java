@@ -1,6 +1,8 @@
 package com.reactivespring.exceptionhandler;
 
 import com.reactivespring.exception.MoviesInfoClientException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -18,6 +20,12 @@ public class GlobalErrorHandler {
         return ResponseEntity.status(HttpStatus.valueOf(ex.getStatusCode())).body(ex.getMessage());
     }
 
+    @ExceptionHandler({CallNotPermittedException.class, BulkheadFullException.class})
+    public ResponseEntity<String> handleUnavailableException(RuntimeException ex){
+        log.error("Exception caught in handleUnavailableException :  {} " ,ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ex.getMessage());
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<String> handleRuntimeException(RuntimeException ex){
         log.error("Exception caught in handleClientException :  {} " ,ex.getMessage(),  ex);
@@ -0,0 +1,100 @@
+package com.reactivespring.util;
+
+import com.reactivespring.config.HedgingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second, identical call when the first one is slower than the observed latency percentile.
+ * Whichever call signals first wins and the other one is cancelled. Hedged calls are capped by a
+ * {@link TokenBucket}, so a slow backend never sees more than {@code maxHedgePercent} extra traffic.
+ * <p>
+ * Metrics (tagged with {@code client}) :
+ * <ul>
+ *     <li>movies.client.hedging.latency - latency of the successful calls, percentiles drive the hedge delay</li>
+ *     <li>movies.client.hedging.hedges - hedged calls sent</li>
+ *     <li>movies.client.hedging.denied - hedged calls denied by the rate cap</li>
+ * </ul>
+ */
+public class Hedging {
+
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final HedgingProperties properties;
+    private final TokenBucket hedgeBudget;
+    private final Timer latency;
+    private final Counter hedges;
+    private final Counter denied;
+
+    private volatile Duration hedgeDelay;
+    private volatile long hedgeDelayComputedAt;
+
+    public Hedging(String client, HedgingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.hedgeBudget = new TokenBucket(properties.getMaxHedgePercent(), properties.getMaxHedgeBurst());
+        this.latency = Timer.builder("movies.client.hedging.latency")
+                .tag("client", client)
+                .publishPercentiles(properties.getPercentile())
+                .register(meterRegistry);
+        this.hedges = Counter.builder("movies.client.hedging.hedges")
+                .tag("client", client)
+                .register(meterRegistry);
+        this.denied = Counter.builder("movies.client.hedging.denied")
+                .tag("client", client)
+                .register(meterRegistry);
+        this.hedgeDelay = properties.getMaxDelay();
+        this.hedgeDelayComputedAt = System.nanoTime();
+    }
+
+    public <T> Mono<T> execute(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            hedgeBudget.deposit();
+            var hedge = Mono.delay(hedgeDelay())
+                    .then(Mono.defer(() -> {
+                        if (!hedgeBudget.tryWithdraw()) {
+                            denied.increment();
+                            return Mono.<T>never();
+                        }
+                        hedges.increment();
+                        return timed(call);
+                    }));
+            return Mono.firstWithSignal(timed(call), hedge);
+        });
+    }
+
+    Duration hedgeDelay() {
+        var now = System.nanoTime();
+        if (now - hedgeDelayComputedAt > DELAY_REFRESH_NANOS && latency.count() > 0) {
+            hedgeDelayComputedAt = now;
+            for (var percentileValue : latency.takeSnapshot().percentileValues()) {
+                var observed = Duration.ofNanos((long) percentileValue.value(TimeUnit.NANOSECONDS));
+                hedgeDelay = clamp(observed);
+            }
+        }
+        return hedgeDelay;
+    }
+
+    private Duration clamp(Duration observed) {
+        if (observed.compareTo(properties.getMinDelay()) < 0) {
+            return properties.getMinDelay();
+        }
+        if (observed.compareTo(properties.getMaxDelay()) > 0) {
+            return properties.getMaxDelay();
+        }
+        return observed;
+    }
+
+    private <T> Mono<T> timed(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            var start = System.nanoTime();
+            return call.get()
+                    .doOnSuccess(value -> latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+}
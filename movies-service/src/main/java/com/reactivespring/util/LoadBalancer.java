@@ -0,0 +1,199 @@
+package com.reactivespring.util;
+
+import com.reactivespring.config.LoadBalancerProperties;
+import com.reactivespring.config.LoadBalancingStrategy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Client-side load balancer over a static list of instances. Each subscription picks an instance, so a retry
+ * or a hedged call may land on another one. Instances are ejected passively after {@code failureThreshold}
+ * consecutive failures, and re-admitted once their ejection time is over : a single failure ejects them again,
+ * for longer.
+ * <p>
+ * Metrics (tagged with {@code client} and {@code instance}) :
+ * <ul>
+ *     <li>movies.client.loadbalancer.outstanding - requests in flight</li>
+ *     <li>movies.client.loadbalancer.ejections - ejections of the instance</li>
+ * </ul>
+ */
+@Slf4j
+public class LoadBalancer {
+
+    private final List<Instance> instances;
+    private final LoadBalancerProperties.Policy policy;
+    private final Predicate<Throwable> isFailure;
+    private final int maxEjected;
+
+    /**
+     * @param isFailure tells the errors that reflect on the health of the instance (5xx, connection errors)
+     *                  from the ones that do not (4xx).
+     */
+    public LoadBalancer(String client, List<String> urls, LoadBalancerProperties.Policy policy,
+                        Predicate<Throwable> isFailure, MeterRegistry meterRegistry) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("No instance configured for " + client);
+        }
+        this.policy = policy;
+        this.isFailure = isFailure;
+        this.maxEjected = (int) (urls.size() * policy.getMaxEjectionPercent() / 100);
+        this.instances = urls.stream()
+                .map(url -> new Instance(client, url, meterRegistry))
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    public <T> Mono<T> mono(Function<String, Mono<T>> call) {
+        return Mono.defer(() -> {
+            var instance = choose();
+            instance.outstanding.incrementAndGet();
+            return call.apply(instance.url)
+                    .doOnSuccess(value -> instance.onSuccess())
+                    .doOnError(ex -> onError(instance, ex))
+                    .doFinally(signal -> instance.outstanding.decrementAndGet());
+        });
+    }
+
+    public <T> Flux<T> flux(Function<String, Flux<T>> call) {
+        return Flux.defer(() -> {
+            var instance = choose();
+            instance.outstanding.incrementAndGet();
+            return call.apply(instance.url)
+                    .doOnComplete(instance::onSuccess)
+                    .doOnError(ex -> onError(instance, ex))
+                    .doFinally(signal -> instance.outstanding.decrementAndGet());
+        });
+    }
+
+    Instance choose() {
+        var now = System.nanoTime();
+        var available = new ArrayList<Instance>(instances.size());
+        for (var instance : instances) {
+            if (instance.isAvailable(now)) {
+                available.add(instance);
+            }
+        }
+        if (available.isEmpty()) {
+            // every instance is ejected : spreading the load is better than failing fast
+            available.addAll(instances);
+        }
+        if (available.size() == 1) {
+            return available.get(0);
+        }
+        return policy.getStrategy() == LoadBalancingStrategy.LEAST_OUTSTANDING
+                ? leastOutstanding(available)
+                : powerOfTwoChoices(available);
+    }
+
+    List<Instance> instances() {
+        return instances;
+    }
+
+    private Instance powerOfTwoChoices(List<Instance> available) {
+        var random = ThreadLocalRandom.current();
+        var first = random.nextInt(available.size());
+        var second = random.nextInt(available.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        var a = available.get(first);
+        var b = available.get(second);
+        return b.outstanding.get() < a.outstanding.get() ? b : a;
+    }
+
+    private Instance leastOutstanding(List<Instance> available) {
+        // random starting point, so ties do not always go to the first instance
+        var start = ThreadLocalRandom.current().nextInt(available.size());
+        var best = available.get(start);
+        for (int i = 1; i < available.size(); i++) {
+            var candidate = available.get((start + i) % available.size());
+            if (candidate.outstanding.get() < best.outstanding.get()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private void onError(Instance instance, Throwable ex) {
+        if (!isFailure.test(ex)) {
+            instance.onSuccess();
+            return;
+        }
+        var failures = instance.consecutiveFailures.incrementAndGet();
+        if (failures >= policy.getFailureThreshold() && canEject()) {
+            instance.eject();
+        }
+    }
+
+    private boolean canEject() {
+        var now = System.nanoTime();
+        var ejected = instances.stream()
+                .filter(instance -> !instance.isAvailable(now))
+                .count();
+        return ejected < maxEjected;
+    }
+
+    class Instance {
+
+        final String url;
+        final AtomicInteger outstanding = new AtomicInteger();
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final Counter ejections;
+        private volatile int ejectionsInARow;
+        private volatile long ejectedUntil;
+        private volatile boolean ejected;
+
+        Instance(String client, String url, MeterRegistry meterRegistry) {
+            this.url = url;
+            Gauge.builder("movies.client.loadbalancer.outstanding", outstanding, AtomicInteger::get)
+                    .tag("client", client)
+                    .tag("instance", url)
+                    .register(meterRegistry);
+            this.ejections = Counter.builder("movies.client.loadbalancer.ejections")
+                    .tag("client", client)
+                    .tag("instance", url)
+                    .register(meterRegistry);
+        }
+
+        boolean isAvailable(long now) {
+            if (ejected && now - ejectedUntil >= 0) {
+                // re-admitted on probation : the failure counter is primed so the next failure ejects again
+                ejected = false;
+                consecutiveFailures.set(Math.max(policy.getFailureThreshold() - 1, 0));
+                log.info("Re-admitting instance {}", url);
+            }
+            return !ejected;
+        }
+
+        synchronized void eject() {
+            if (ejected) {
+                return;
+            }
+            ejectionsInARow++;
+            var ejectionTime = policy.getBaseEjectionTime().multipliedBy(ejectionsInARow);
+            if (ejectionTime.compareTo(policy.getMaxEjectionTime()) > 0) {
+                ejectionTime = policy.getMaxEjectionTime();
+            }
+            ejectedUntil = System.nanoTime() + ejectionTime.toNanos();
+            ejected = true;
+            ejections.increment();
+            log.warn("Ejecting instance {} for {} after {} consecutive failures", url, ejectionTime, consecutiveFailures.get());
+        }
+
+        void onSuccess() {
+            consecutiveFailures.set(0);
+            ejectionsInARow = 0;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * {@link TokenBucket} capping retries to a percentage of live traffic : every request deposits a fraction of a token,
+ * every retry withdraws a whole one. Once the bucket is empty, failures are propagated instead of retried,
+ * so a partial outage is not amplified by retry storms.
+ * <p>
+ * Metrics (tagged with {@code client}) :
+ * <ul>
+ *     <li>movies.client.retries - retries performed</li>
+ *     <li>movies.client.retry.budget.exhausted - retries denied by the budget</li>
+ *     <li>movies.client.retry.budget.tokens - tokens currently available</li>
+ * </ul>
+ */
+public class RetryBudget {
+
+    private final TokenBucket tokenBucket;
+    private final Counter retries;
+    private final Counter exhausted;
+
+    public RetryBudget(String client, double budgetPercent, long maxTokens, MeterRegistry meterRegistry) {
+        this.tokenBucket = new TokenBucket(budgetPercent, maxTokens);
+        this.retries = Counter.builder("movies.client.retries")
+                .tag("client", client)
+                .register(meterRegistry);
+        this.exhausted = Counter.builder("movies.client.retry.budget.exhausted")
+                .tag("client", client)
+                .register(meterRegistry);
+        Gauge.builder("movies.client.retry.budget.tokens", this, RetryBudget::availableTokens)
+                .tag("client", client)
+                .register(meterRegistry);
+    }
+
+    public void deposit() {
+        tokenBucket.deposit();
+    }
+
+    public boolean tryWithdraw() {
+        if (tokenBucket.tryWithdraw()) {
+            retries.increment();
+            return true;
+        }
+        exhausted.increment();
+        return false;
+    }
+
+    public double availableTokens() {
+        return tokenBucket.availableTokens();
+    }
+}
@@ -1,20 +1,57 @@
 package com.reactivespring.util;
 
+import com.reactivespring.config.RetryProperties;
 import com.reactivespring.exception.MoviesInfoServerException;
 import com.reactivespring.exception.ReviewsServerException;
+import org.reactivestreams.Publisher;
 import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.util.retry.Retry;
-import reactor.util.retry.RetrySpec;
-
-import java.time.Duration;
+import reactor.util.retry.RetryBackoffSpec;
 
 public class RetryUtil {
 
 
-    public static Retry retrySpec() {
-        return RetrySpec.fixedDelay(3, Duration.ofSeconds(1))
-                .filter((ex) -> ex instanceof MoviesInfoServerException || ex instanceof ReviewsServerException)
+    public static Retry retrySpec(RetryProperties.Policy policy, RetryBudget retryBudget) {
+        var backoffSpec = Retry.backoff(policy.getMaxAttempts(), policy.getMinBackoff())
+                .maxBackoff(policy.getMaxBackoff())
+                .jitter(policy.getJitter())
+                .filter(RetryUtil::isRetryable)
                 .onRetryExhaustedThrow(((retryBackoffSpec, retrySignal) -> Exceptions.propagate(retrySignal.failure())));
+        return new BudgetedRetry(backoffSpec, retryBudget);
+    }
+
+    private static boolean isRetryable(Throwable ex) {
+        return ex instanceof MoviesInfoServerException || ex instanceof ReviewsServerException;
+    }
+
+    /**
+     * Every subscription (one per request) deposits into the budget, every retry the backoff spec would
+     * perform has to withdraw from it first, otherwise the failure is propagated as is.
+     */
+    private static class BudgetedRetry extends Retry {
+
+        private final RetryBackoffSpec backoffSpec;
+        private final RetryBudget retryBudget;
+
+        BudgetedRetry(RetryBackoffSpec backoffSpec, RetryBudget retryBudget) {
+            this.backoffSpec = backoffSpec;
+            this.retryBudget = retryBudget;
+        }
 
+        @Override
+        public Publisher<?> generateCompanion(Flux<RetrySignal> retrySignals) {
+            retryBudget.deposit();
+            return backoffSpec.generateCompanion(retrySignals
+                    .handle((retrySignal, sink) -> {
+                        var willRetry = isRetryable(retrySignal.failure())
+                                && retrySignal.totalRetries() < backoffSpec.maxAttempts;
+                        if (willRetry && !retryBudget.tryWithdraw()) {
+                            sink.error(retrySignal.failure());
+                            return;
+                        }
+                        sink.next(retrySignal);
+                    }));
+        }
     }
 }
@@ -0,0 +1,82 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key : while a call is in flight, every other subscriber for that key
+ * shares its result instead of triggering a new downstream call. A subscriber joining after the call started emitting
+ * still gets every element from the first one : they are replayed while the call is in flight. The key is dropped as
+ * soon as the call terminates (or is cancelled by all of its subscribers), so results are never cached beyond the
+ * lifetime of the call.
+ * <p>
+ * Metrics (tagged with {@code client}) :
+ * <ul>
+ *     <li>movies.client.coalescing.requests - calls requested by callers</li>
+ *     <li>movies.client.coalescing.executions - calls actually sent downstream</li>
+ *     <li>movies.client.coalescing.ratio - share of requests served by an in-flight call</li>
+ *     <li>movies.client.coalescing.inflight - keys currently in flight</li>
+ * </ul>
+ */
+public class SingleFlight {
+
+    private final Map<String, Flux<?>> inFlight = new ConcurrentHashMap<>();
+    private final Counter requests;
+    private final Counter executions;
+
+    public SingleFlight(String client, MeterRegistry meterRegistry) {
+        this.requests = Counter.builder("movies.client.coalescing.requests")
+                .tag("client", client)
+                .register(meterRegistry);
+        this.executions = Counter.builder("movies.client.coalescing.executions")
+                .tag("client", client)
+                .register(meterRegistry);
+        Gauge.builder("movies.client.coalescing.ratio", this, SingleFlight::coalescingRatio)
+                .tag("client", client)
+                .register(meterRegistry);
+        Gauge.builder("movies.client.coalescing.inflight", inFlight, Map::size)
+                .tag("client", client)
+                .register(meterRegistry);
+    }
+
+    public <T> Mono<T> mono(String key, Supplier<Mono<T>> call) {
+        return flux(key, () -> call.get().flux()).singleOrEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Flux<T> flux(String key, Supplier<Flux<T>> call) {
+        return Flux.defer(() -> {
+            requests.increment();
+            return (Flux<T>) inFlight.computeIfAbsent(key, k -> share(k, call));
+        });
+    }
+
+    public double coalescingRatio() {
+        var requested = requests.count();
+        return requested == 0 ? 0 : 1 - executions.count() / requested;
+    }
+
+    private <T> Flux<T> share(String key, Supplier<Flux<T>> call) {
+        var self = new AtomicReference<Flux<T>>();
+        Flux<T> shared = Flux.defer(() -> {
+                    executions.increment();
+                    return call.get();
+                })
+                // only remove our own entry, a newer call may already have taken the key. Removed before the
+                // terminal signal is replayed, so a caller that sees it done starts a new call
+                .doOnTerminate(() -> inFlight.remove(key, self.get()))
+                .doOnCancel(() -> inFlight.remove(key, self.get()))
+                .replay()
+                .refCount();
+        self.set(shared);
+        return shared;
+    }
+}
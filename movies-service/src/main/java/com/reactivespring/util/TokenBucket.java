@@ -0,0 +1,41 @@
+package com.reactivespring.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket refilled by traffic rather than by time : each request deposits a fraction of a token,
+ * each extra call (retry, hedge...) withdraws a whole one. Starts full.
+ */
+public class TokenBucket {
+
+    private static final long SCALE = 1000;
+
+    private final long depositPerRequest;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    public TokenBucket(double percentOfRequests, long maxTokens) {
+        this.depositPerRequest = Math.round(percentOfRequests / 100 * SCALE);
+        this.maxBalance = maxTokens * SCALE;
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+    public void deposit() {
+        balance.accumulateAndGet(depositPerRequest, (current, deposit) -> Math.min(current + deposit, maxBalance));
+    }
+
+    public boolean tryWithdraw() {
+        var current = balance.get();
+        while (current >= SCALE) {
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+            current = balance.get();
+        }
+        return false;
+    }
+
+    public double availableTokens() {
+        return (double) balance.get() / SCALE;
+    }
+}
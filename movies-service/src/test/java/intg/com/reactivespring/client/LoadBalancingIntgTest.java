@@ -0,0 +1,114 @@
+package com.reactivespring.client;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Both rest clients balanced over three WireMock instances.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "restClient.moviesInfoCache.enabled=false",
+        "restClient.retry.moviesInfo.minBackoff=10ms",
+        "restClient.retry.reviews.minBackoff=10ms",
+        "restClient.loadBalancer.moviesInfo.failureThreshold=3",
+        "restClient.loadBalancer.moviesInfo.strategy=LEAST_OUTSTANDING",
+})
+public class LoadBalancingIntgTest {
+
+    static List<WireMockServer> servers = Stream.generate(() -> new WireMockServer(options().dynamicPort()))
+            .limit(3)
+            .peek(WireMockServer::start)
+            .collect(Collectors.toList());
+
+    @Autowired
+    MoviesInfoRestClient moviesInfoRestClient;
+
+    @Autowired
+    ReviewsRestClient reviewsRestClient;
+
+    @DynamicPropertySource
+    static void instances(DynamicPropertyRegistry registry) {
+        for (int i = 0; i < servers.size(); i++) {
+            var baseUrl = servers.get(i).baseUrl();
+            registry.add("restClient.loadBalancer.moviesInfo.instances[" + i + "]", () -> baseUrl + "/v1/movieinfos");
+            registry.add("restClient.loadBalancer.reviews.instances[" + i + "]", () -> baseUrl + "/v1/reviews");
+        }
+    }
+
+    @AfterAll
+    static void stopServers() {
+        servers.forEach(WireMockServer::stop);
+    }
+
+    @BeforeEach
+    void setUp() {
+        servers.forEach(server -> {
+            server.resetAll();
+            server.stubFor(get(urlPathMatching("/v1/movieinfos/.*"))
+                    .willReturn(aResponse()
+                            .withHeader("Content-Type", "application/json")
+                            .withBody("{\"movieInfoId\": \"abc\", \"name\": \"Batman Begins\"}")));
+            server.stubFor(get(urlPathEqualTo("/v1/reviews"))
+                    .willReturn(aResponse()
+                            .withHeader("Content-Type", "application/json")
+                            .withBody("[{\"reviewId\": \"1\", \"movieInfoId\": 1, \"comment\": \"Awesome Movie\", \"rating\": 9.0}]")));
+        });
+    }
+
+    @Test
+    void retrieveReviews_spreadAcrossInstances() {
+        //given
+        var calls = 300;
+
+        //when
+        for (int i = 0; i < calls; i++) {
+            StepVerifier.create(reviewsRestClient.retrieveReviews("movie-" + i))
+                    .expectNextCount(1)
+                    .verifyComplete();
+        }
+
+        //then
+        servers.forEach(server -> {
+            var requests = server.countRequestsMatching(getRequestedFor(urlPathEqualTo("/v1/reviews")).build()).getCount();
+            assertTrue(requests > calls / 6, "requests on " + server.baseUrl() + " : " + requests);
+        });
+    }
+
+    @Test
+    void retrieveMovieInfo_failingInstanceEjected() {
+        //given
+        var failing = servers.get(2);
+        failing.stubFor(get(urlPathMatching("/v1/movieinfos/.*"))
+                .willReturn(serverError().withBody("MovieInfo Service Unavailable")));
+
+        //when
+        for (int i = 0; i < 60; i++) {
+            StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo("movie-" + i))
+                    .expectNextCount(1)
+                    .verifyComplete();
+        }
+
+        //then
+        assertEquals(3, failing.countRequestsMatching(getRequestedFor(urlPathMatching("/v1/movieinfos/.*")).build()).getCount());
+    }
+}
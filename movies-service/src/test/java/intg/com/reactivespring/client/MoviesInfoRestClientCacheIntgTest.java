@@ -0,0 +1,107 @@
+package com.reactivespring.client;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.reactivespring.exception.MoviesInfoClientException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.client.AutoConfigureWebClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import reactor.test.StepVerifier;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebClient
+@AutoConfigureWireMock(port = 8084)
+@TestPropertySource(properties = {
+        "restClient.moviesInfoUrl=http://localhost:8084/v1/movieinfos",
+        "restClient.reviewsUrl=http://localhost:8084/v1/reviews",
+        "restClient.moviesInfoCache.refreshAfter=300ms",
+})
+public class MoviesInfoRestClientCacheIntgTest {
+
+    @Autowired
+    MoviesInfoRestClient moviesInfoRestClient;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        WireMock.reset();
+    }
+
+    @Test
+    void retrieveMovieInfo_servedFromCache() {
+        //given
+        var movieId = "cached";
+        stubMovieInfo(movieId, "Batman Begins");
+
+        //when
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId))
+                    .assertNext(movieInfo -> assertEquals("Batman Begins", movieInfo.getName()))
+                    .verifyComplete();
+        }
+
+        //then
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/movieinfos/" + movieId)));
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", "movieInfo").tag("result", "hit").functionCounter().count() >= 2);
+    }
+
+    @Test
+    void retrieveMovieInfo_staleWhileRevalidate() throws InterruptedException {
+        //given
+        var movieId = "stale";
+        stubMovieInfo(movieId, "Batman Begins");
+        moviesInfoRestClient.retrieveMovieInfo(movieId).block();
+        stubMovieInfo(movieId, "Batman Begins Remastered");
+        Thread.sleep(400);
+
+        //when : the stale entry is served immediately, a background refresh replaces it
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId))
+                .assertNext(movieInfo -> assertEquals("Batman Begins", movieInfo.getName()))
+                .verifyComplete();
+        Thread.sleep(200);
+
+        //then
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId))
+                .assertNext(movieInfo -> assertEquals("Batman Begins Remastered", movieInfo.getName()))
+                .verifyComplete();
+        WireMock.verify(2, getRequestedFor(urlEqualTo("/v1/movieinfos/" + movieId)));
+    }
+
+    @Test
+    void retrieveMovieInfo_notFoundIsNotCached() {
+        //given
+        var movieId = "missing";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withStatus(404)));
+
+        //when
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(moviesInfoRestClient.retrieveMovieInfo(movieId))
+                    .expectError(MoviesInfoClientException.class)
+                    .verify();
+        }
+
+        //then
+        WireMock.verify(2, getRequestedFor(urlEqualTo("/v1/movieinfos/" + movieId)));
+    }
+
+    private void stubMovieInfo(String movieId, String name) {
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"movieInfoId\": \"" + movieId + "\", \"name\": \"" + name + "\", \"year\": 2005, \"cast\": [\"Christian Bale\"]}")));
+    }
+}
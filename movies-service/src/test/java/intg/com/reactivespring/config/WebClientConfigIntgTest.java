@@ -0,0 +1,71 @@
+package com.reactivespring.config;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.netty.http.client.HttpClient;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+public class WebClientConfigIntgTest {
+
+    WireMockServer wireMockServer;
+    WebClient webClient;
+
+    @BeforeEach
+    void setUp() {
+        wireMockServer = new WireMockServer(options().dynamicPort());
+        wireMockServer.start();
+        wireMockServer.stubFor(get(anyUrl())
+                .willReturn(aResponse()
+                        .withBody("slow")
+                        .withFixedDelay(500)));
+        webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create()))
+                .filter(WebClientConfig.responseTimeout(Duration.ofMillis(100)))
+                .baseUrl(wireMockServer.baseUrl())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    void responseTimeout() {
+        //when
+        var response = webClient.get()
+                .uri("/v1/movieinfos/abc")
+                .retrieve()
+                .bodyToMono(String.class);
+
+        //then
+        StepVerifier.create(response)
+                .expectError(WebClientRequestException.class)
+                .verify();
+    }
+
+    @Test
+    void responseTimeout_notAppliedToStreaming() {
+        //when
+        var response = webClient.get()
+                .uri("/v1/movieinfos/stream")
+                .attribute(WebClientConfig.STREAMING, true)
+                .retrieve()
+                .bodyToMono(String.class);
+
+        //then
+        StepVerifier.create(response)
+                .expectNext("slow")
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,113 @@
+package com.reactivespring.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives the default Reactor Netty client and the tuned per-downstream client to saturation against a WireMock
+ * backend with a fixed delay, and logs throughput and failed requests for both.
+ * Timing dependent, so it only runs with ./gradlew throughputTest.
+ */
+@Tag("throughput")
+@Slf4j
+public class WebClientConfigLoadIntgTest {
+
+    static int REQUESTS = 2000;
+    static int CONCURRENCY = 200;
+
+    WireMockServer wireMockServer;
+
+    @BeforeAll
+    static void quietLogging() {
+        // no Spring context here, so logback would otherwise log every request at DEBUG
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+    }
+
+    @BeforeEach
+    void setUp() {
+        wireMockServer = new WireMockServer(options().dynamicPort().containerThreads(CONCURRENCY + 50).disableRequestJournal());
+        wireMockServer.start();
+        wireMockServer.stubFor(get(urlEqualTo("/v1/movieinfos/abc"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"movieInfoId\": \"abc\", \"name\": \"Batman Begins\"}")
+                        .withFixedDelay(20)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    void throughputAtSaturation() {
+
+        var baseline = load(HttpClient.create());
+
+        var pool = new HttpClientProperties.ConnectionPool();
+        var connectionProvider = WebClientConfig.connectionProvider("load-test", pool);
+        var tuned = load(WebClientConfig.httpClient(connectionProvider, pool));
+        connectionProvider.dispose();
+
+        log.info("default : {} req/s, {} failed", baseline.throughput(), baseline.failed);
+        log.info("tuned   : {} req/s, {} failed", tuned.throughput(), tuned.failed);
+
+        // every request waits for a connection rather than failing once the pool is saturated
+        assertEquals(0, tuned.failed);
+    }
+
+    private Result load(HttpClient httpClient) {
+        var webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .baseUrl(wireMockServer.baseUrl())
+                .build();
+        var failed = new AtomicInteger();
+        var start = System.nanoTime();
+
+        Flux.range(0, REQUESTS)
+                .flatMap(i -> webClient.get()
+                        .uri("/v1/movieinfos/abc")
+                        .retrieve()
+                        .bodyToMono(String.class)
+                        .onErrorResume(ex -> {
+                            failed.incrementAndGet();
+                            return Mono.empty();
+                        }), CONCURRENCY)
+                .blockLast();
+
+        return new Result(System.nanoTime() - start, failed.get());
+    }
+
+    static class Result {
+        final long elapsedNanos;
+        final int failed;
+
+        Result(long elapsedNanos, int failed) {
+            this.elapsedNanos = elapsedNanos;
+            this.failed = failed;
+        }
+
+        long throughput() {
+            return (REQUESTS - failed) * 1_000_000_000L / elapsedNanos;
+        }
+    }
+}
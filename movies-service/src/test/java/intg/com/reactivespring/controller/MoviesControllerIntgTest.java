@@ -2,6 +2,8 @@ package com.reactivespring.controller;
 
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieSummary;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,10 +14,12 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.util.List;
 import java.util.Objects;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -24,12 +28,16 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 @TestPropertySource(properties = {
         "restClient.moviesInfoUrl=http://localhost:8084/v1/movieinfos",
         "restClient.reviewsUrl=http://localhost:8084/v1/reviews",
+        "restClient.moviesInfoCache.enabled=false",
 })
 public class MoviesControllerIntgTest {
 
     @Autowired
     WebTestClient webTestClient;
 
+    @Autowired
+    CircuitBreakerRegistry circuitBreakerRegistry;
+
 
     @BeforeEach
     void setUp() {
@@ -67,6 +75,80 @@ public class MoviesControllerIntgTest {
         //then
     }
 
+    @Test
+    void retrieveMovieSummaryById() {
+        //given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews/stats"))
+                .withQueryParam("movieInfoId", equalTo(movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"movieInfoId\": 1, \"count\": 2, \"ratingCount\": 2, \"ratingSum\": 17.0, "
+                                + "\"histogram\": {\"8\": 1, \"9\": 1}, \"average\": 8.5}")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo(movieId))
+                .withQueryParam("limit", equalTo("5"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?view=summary", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieSummary.class)
+                .consumeWith(movieSummaryEntityExchangeResult -> {
+                            var summary = Objects.requireNonNull(movieSummaryEntityExchangeResult.getResponseBody());
+                            assertEquals("Batman Begins", summary.getMovieInfo().getName());
+                            assertEquals(2, summary.getReviewStats().getCount());
+                            assertEquals(8.5, summary.getReviewStats().getAverage());
+                            assertEquals(1L, summary.getReviewStats().getHistogram().get("9"));
+                            assertEquals(2, summary.getLatestReviews().size());
+                        }
+                );
+        //then
+        WireMock.verify(0, getRequestedFor(urlPathEqualTo("/v1/reviews")).withQueryParam("limit", absent()));
+    }
+
+    @Test
+    void retrieveMoviesByIds() {
+        //given
+        stubFor(post(urlEqualTo("/v1/movieinfos/batch"))
+                .withRequestBody(equalToJson("[\"1\", \"2\"]"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("[" + "{\"movieInfoId\": \"1\", \"name\": \"Batman Begins\", \"year\": 2005, \"cast\": [\"Christian Bale\"]}" + "]")));
+
+        stubFor(post(urlEqualTo("/v1/reviews/batch"))
+                .withRequestBody(equalToJson("[\"1\", \"2\"]"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when
+        webTestClient.post()
+                .uri("/v1/movies/batch")
+                .bodyValue(List.of("1", "2", "1"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Movie.class)
+                .value(movies -> {
+                    assertEquals(1, movies.size());
+                    assertEquals("Batman Begins", movies.get(0).getMovieInfo().getName());
+                    assertEquals(2, movies.get(0).getReviewList().size());
+                });
+        //then
+        WireMock.verify(1, postRequestedFor(urlEqualTo("/v1/movieinfos/batch")));
+        WireMock.verify(1, postRequestedFor(urlEqualTo("/v1/reviews/batch")));
+    }
+
     @Test
     void retrieveMovieById_404() {
         //given
@@ -115,6 +197,38 @@ public class MoviesControllerIntgTest {
         // WireMock.verify(4, getRequestedFor(urlEqualTo("/v1/movieinfos/" + movieId)));;
     }
 
+    @Test
+    void retrieveMovieById_reviewsCircuitOpen() {
+        //given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+        var reviewsCircuitBreaker = circuitBreakerRegistry.circuitBreaker("reviews");
+        reviewsCircuitBreaker.transitionToForcedOpenState();
+
+        //when
+        try {
+            webTestClient.get()
+                    .uri("/v1/movies/{id}", movieId)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(Movie.class)
+                    .consumeWith(movieEntityExchangeResult -> {
+                                var movie = Objects.requireNonNull(movieEntityExchangeResult.getResponseBody());
+                                assertTrue(movie.isDegraded());
+                                assertTrue(movie.getReviewList().isEmpty());
+                                assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                            }
+                    );
+        } finally {
+            reviewsCircuitBreaker.transitionToClosedState();
+        }
+        //then
+        WireMock.verify(0, getRequestedFor(urlPathMatching("/v1/reviews*")));
+    }
+
     @Test
     void retrieveMovieById_5XX() {
         //given
@@ -0,0 +1,125 @@
+package com.reactivespring.controller;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.matching.RequestPatternBuilder;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.client.AutoConfigureWebClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.reactivespring.util.LatencyStats.measure;
+import static com.reactivespring.util.LatencyStats.percentile;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The sequential and parallel aggregation modes against WireMock stubs with injected delays. Whether the two calls
+ * overlap is read from the WireMock journal, the p50/p99 comparison runs with {@code ./gradlew throughputTest}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebClient
+@AutoConfigureWireMock(port = 8084)
+@TestPropertySource(properties = {
+        "restClient.moviesInfoUrl=http://localhost:8084/v1/movieinfos",
+        "restClient.reviewsUrl=http://localhost:8084/v1/reviews",
+        "restClient.moviesInfoCache.enabled=false",
+})
+@Slf4j
+public class MoviesControllerLatencyIntgTest {
+
+    static int WARMUP = 5;
+    static int ITERATIONS = 40;
+    static int MOVIE_INFO_DELAY_MS = 500;
+
+    @Autowired
+    MoviesController moviesController;
+
+    @BeforeEach
+    void setUp() {
+        WireMock.reset();
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")
+                        .withUniformRandomDelay(40, 80)));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo(movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")
+                        .withUniformRandomDelay(60, 100)));
+    }
+
+    @Test
+    void sequential_reviewsRequestedAfterMovieInfo() {
+        //given
+        stubMovieInfoWithFixedDelay();
+
+        //when
+        moviesController.retrieveMovieSequential("abc").block();
+
+        //then
+        assertTrue(reviewsRequest().getLoggedDate().getTime()
+                >= movieInfoRequest().getLoggedDate().getTime() + MOVIE_INFO_DELAY_MS);
+    }
+
+    @Test
+    void parallel_reviewsRequestedWhileMovieInfoInFlight() {
+        //given
+        stubMovieInfoWithFixedDelay();
+
+        //when
+        moviesController.retrieveMovieParallel("abc").block();
+
+        //then
+        assertTrue(reviewsRequest().getLoggedDate().getTime()
+                < movieInfoRequest().getLoggedDate().getTime() + MOVIE_INFO_DELAY_MS);
+    }
+
+    @Test
+    @Tag("throughput")
+    void sequentialVsParallel() {
+
+        var sequential = measure(WARMUP, ITERATIONS, () -> moviesController.retrieveMovieSequential("abc"));
+        var parallel = measure(WARMUP, ITERATIONS, () -> moviesController.retrieveMovieParallel("abc"));
+
+        log.info("sequential : p50={}ms p99={}ms", percentile(sequential, 50), percentile(sequential, 99));
+        log.info("parallel   : p50={}ms p99={}ms", percentile(parallel, 50), percentile(parallel, 99));
+
+        // sequential is the sum of both delays (>= 100ms), parallel is bounded by the slower call (<= 100ms + overhead)
+        assertTrue(percentile(parallel, 50) < percentile(sequential, 50));
+    }
+
+    private void stubMovieInfoWithFixedDelay() {
+        stubFor(get(urlEqualTo("/v1/movieinfos/abc"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")
+                        .withFixedDelay(MOVIE_INFO_DELAY_MS)));
+    }
+
+    private static LoggedRequest movieInfoRequest() {
+        return singleRequest(getRequestedFor(urlEqualTo("/v1/movieinfos/abc")));
+    }
+
+    private static LoggedRequest reviewsRequest() {
+        return singleRequest(getRequestedFor(urlPathEqualTo("/v1/reviews")));
+    }
+
+    private static LoggedRequest singleRequest(RequestPatternBuilder pattern) {
+        var requests = findAll(pattern);
+        assertEquals(1, requests.size());
+        return requests.get(0);
+    }
+}
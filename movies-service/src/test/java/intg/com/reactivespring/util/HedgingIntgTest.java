@@ -0,0 +1,138 @@
+package com.reactivespring.util;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import com.reactivespring.config.HedgingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static com.reactivespring.util.LatencyStats.measure;
+import static com.reactivespring.util.LatencyStats.percentile;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every tenth response of the WireMock backend is slow. Which call answered is read from the WireMock journal and the
+ * hedges counter, the p99 comparison of plain and hedged calls runs with {@code ./gradlew throughputTest}.
+ */
+@Slf4j
+public class HedgingIntgTest {
+
+    static int SLOW_EVERY = 10;
+    static int SLOW_DELAY_MS = 500;
+    static int WARMUP = 50;
+    static int ITERATIONS = 100;
+
+    WireMockServer wireMockServer;
+    WebClient webClient;
+
+    @BeforeAll
+    static void quietLogging() {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+    }
+
+    @BeforeEach
+    void setUp() {
+        wireMockServer = new WireMockServer(options().dynamicPort());
+        wireMockServer.start();
+        for (int i = 0; i < SLOW_EVERY; i++) {
+            var state = i == 0 ? Scenario.STARTED : "call-" + i;
+            var nextState = i == SLOW_EVERY - 1 ? Scenario.STARTED : "call-" + (i + 1);
+            var response = aResponse()
+                    .withHeader("Content-Type", "application/json")
+                    .withBody("{\"movieInfoId\": \"abc\", \"name\": \"Batman Begins\"}");
+            if (i == SLOW_EVERY - 1) {
+                response.withFixedDelay(SLOW_DELAY_MS);
+            }
+            wireMockServer.stubFor(get(urlEqualTo("/v1/movieinfos/abc"))
+                    .inScenario("slow-instance")
+                    .whenScenarioStateIs(state)
+                    .willSetStateTo(nextState)
+                    .willReturn(response));
+        }
+        webClient = WebClient.builder()
+                .baseUrl(wireMockServer.baseUrl())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    void slowCall_answeredByHedge() {
+        //given : the hedge delay pinned to 50ms, the first call slow and the next one fast
+        var properties = new HedgingProperties();
+        properties.setEnabled(true);
+        properties.setMinDelay(Duration.ofMillis(50));
+        properties.setMaxDelay(Duration.ofMillis(50));
+        var meterRegistry = new SimpleMeterRegistry();
+        var hedging = new Hedging("test", properties, meterRegistry);
+        wireMockServer.resetAll();
+        wireMockServer.stubFor(get(urlEqualTo("/v1/movieinfos/abc"))
+                .inScenario("slow-first")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willSetStateTo("fast")
+                .willReturn(aResponse()
+                        .withBody("primary")
+                        .withFixedDelay(5_000)));
+        wireMockServer.stubFor(get(urlEqualTo("/v1/movieinfos/abc"))
+                .inScenario("slow-first")
+                .whenScenarioStateIs("fast")
+                .willReturn(aResponse()
+                        .withBody("hedge")));
+
+        //when
+        var movieInfo = hedging.execute(this::retrieveMovieInfo).block();
+
+        //then
+        assertEquals("hedge", movieInfo);
+        assertEquals(1, meterRegistry.get("movies.client.hedging.hedges").counter().count());
+        assertEquals(2, wireMockServer.findAll(getRequestedFor(urlEqualTo("/v1/movieinfos/abc"))).size());
+    }
+
+    @Test
+    @Tag("throughput")
+    void hedgingReducesTailLatency() {
+        //given
+        var properties = new HedgingProperties();
+        properties.setEnabled(true);
+        properties.setPercentile(0.8);
+        properties.setMinDelay(Duration.ofMillis(10));
+        properties.setMaxHedgePercent(30);
+        var hedging = new Hedging("test", properties, new SimpleMeterRegistry());
+
+        //when
+        var plain = measure(WARMUP, ITERATIONS, this::retrieveMovieInfo);
+        var hedged = measure(WARMUP, ITERATIONS, () -> hedging.execute(this::retrieveMovieInfo));
+
+        //then
+        log.info("plain  : p50={}ms p99={}ms", percentile(plain, 50), percentile(plain, 99));
+        log.info("hedged : p50={}ms p99={}ms (hedge delay {}ms)", percentile(hedged, 50), percentile(hedged, 99),
+                hedging.hedgeDelay().toMillis());
+        assertTrue(percentile(plain, 99) >= SLOW_DELAY_MS);
+        assertTrue(percentile(hedged, 99) < SLOW_DELAY_MS / 2);
+    }
+
+    private Mono<String> retrieveMovieInfo() {
+        return webClient.get()
+                .uri("/v1/movieinfos/abc")
+                .retrieve()
+                .bodyToMono(String.class);
+    }
+}
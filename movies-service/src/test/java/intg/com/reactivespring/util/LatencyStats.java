@@ -0,0 +1,41 @@
+package com.reactivespring.util;
+
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Latency percentiles of blocking calls, for the throughput-tagged comparisons.
+ */
+public final class LatencyStats {
+
+    private LatencyStats() {
+    }
+
+    /**
+     * Blocks on {@code warmup} calls, then on {@code iterations} timed calls.
+     *
+     * @return the latencies of the timed calls in milliseconds, sorted.
+     */
+    public static List<Long> measure(int warmup, int iterations, Supplier<? extends Mono<?>> call) {
+        for (int i = 0; i < warmup; i++) {
+            call.get().block();
+        }
+        var latencies = new ArrayList<Long>();
+        for (int i = 0; i < iterations; i++) {
+            var start = System.nanoTime();
+            call.get().block();
+            latencies.add((System.nanoTime() - start) / 1_000_000);
+        }
+        Collections.sort(latencies);
+        return latencies;
+    }
+
+    public static long percentile(List<Long> sortedLatencies, int percentile) {
+        var index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.size()) - 1;
+        return sortedLatencies.get(Math.max(index, 0));
+    }
+}
@@ -4,28 +4,52 @@ import com.reactivespring.client.MoviesInfoRestClient;
 import com.reactivespring.client.ReviewsRestClient;
 import com.reactivespring.domain.Movie;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieSummary;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewStats;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(controllers = MoviesController.class)
 @AutoConfigureWebTestClient
+@TestPropertySource(properties = {
+        "movies.stream.enrich.batchSize=2",
+        "movies.stream.enrich.concurrency=2",
+})
 public class MoviesControllerUnitTest {
 
     @MockBean
@@ -37,6 +61,9 @@ public class MoviesControllerUnitTest {
     @Autowired
     private WebTestClient webTestClient;
 
+    @Autowired
+    private MoviesController moviesController;
+
 
     @Test
     void retrieveMovieById() {
@@ -69,6 +96,232 @@ public class MoviesControllerUnitTest {
         //then
     }
 
+    @Test
+    void retrieveMoviesByIds() {
+
+        var reviewList = List.of(
+                new Review(null, 1L, "Awesome Movie", 9.0),
+                new Review(null, 1L, "Awesome Movie1", 9.0),
+                new Review(null, 2L, "Excellent Movie", 8.0));
+
+        when(moviesInfoRestClient.retrieveMovieInfos(anyList()))
+                .thenReturn(Flux.just(
+                        new MovieInfo("2", "The Dark Knight", 2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")),
+                        new MovieInfo("1", "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"))));
+
+        when(reviewsRestClient.retrieveReviews(anyList()))
+                .thenReturn(Flux.fromIterable(reviewList));
+
+        //when
+        webTestClient.post()
+                .uri("/v1/movies/batch")
+                .bodyValue(List.of("1", "2", "3"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Movie.class)
+                .value(movies -> {
+                    assertEquals(2, movies.size());
+                    assertEquals("Batman Begins", movies.get(0).getMovieInfo().getName());
+                    assertEquals(2, movies.get(0).getReviewList().size());
+                    assertEquals("The Dark Knight", movies.get(1).getMovieInfo().getName());
+                    assertEquals(1, movies.get(1).getReviewList().size());
+                });
+    }
+
+    @Test
+    void retrieveMoviesStream_enriched() {
+
+        var movieInfos = IntStream.rangeClosed(1, 5)
+                .mapToObj(i -> new MovieInfo(String.valueOf(i), "Movie " + i, 2000 + i, List.of("Christian Bale"), LocalDate.parse("2005-06-15")))
+                .collect(Collectors.toList());
+        when(moviesInfoRestClient.retrieveMovieInfoStream())
+                .thenReturn(Flux.fromIterable(movieInfos));
+
+        when(reviewsRestClient.retrieveReviews(anyList()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<List<String>>getArgument(0))
+                        .map(movieId -> new Review(null, Long.valueOf(movieId), "Awesome Movie", 9.0)));
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/stream?enrich=true")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Movie.class)
+                .value(movies -> {
+                    assertEquals(5, movies.size());
+                    for (int i = 0; i < movies.size(); i++) {
+                        assertEquals("Movie " + (i + 1), movies.get(i).getMovieInfo().getName());
+                        assertEquals(1, movies.get(i).getReviewList().size());
+                    }
+                });
+
+        //then
+        verify(reviewsRestClient, times(3)).retrieveReviews(anyList());
+    }
+
+    @Test
+    void retrieveMoviesStream_enriched_singleMovieInfo() {
+
+        // a live stream : one movie info, then nothing for a while
+        when(moviesInfoRestClient.retrieveMovieInfoStream())
+                .thenReturn(Flux.just(new MovieInfo("1", "Movie 1", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15")))
+                        .concatWith(Flux.never()));
+
+        when(reviewsRestClient.retrieveReviews(anyList()))
+                .thenReturn(Flux.just(new Review(null, 1L, "Awesome Movie", 9.0)));
+
+        //when
+        StepVerifier.create(moviesController.retrieveMoviesStream())
+                //then : the partial batch (1 of 2) is enriched after maxDelay
+                .assertNext(movie -> assertEquals(1, movie.getReviewList().size()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void retrieveMoviesStream_enriched_slowConsumerOfLiveStream() {
+
+        var movieInfos = Sinks.many().unicast().<MovieInfo>onBackpressureBuffer();
+        when(moviesInfoRestClient.retrieveMovieInfoStream())
+                .thenReturn(movieInfos.asFlux());
+        when(reviewsRestClient.retrieveReviews(anyList()))
+                .thenReturn(Flux.empty());
+
+        //when
+        StepVerifier.create(moviesController.retrieveMoviesStream(), 0)
+                .then(() -> movieInfos.tryEmitNext(movieInfo(1)))
+                .thenRequest(1)
+                // a partial batch (1 of 2), emitted after maxDelay
+                .expectNextCount(1)
+                // the client stops reading while the live stream trickles on : every batch would be partial
+                .then(() -> movieInfos.tryEmitNext(movieInfo(2)))
+                .expectNoEvent(Duration.ofMillis(300))
+                .then(() -> movieInfos.tryEmitNext(movieInfo(3)))
+                .expectNoEvent(Duration.ofMillis(300))
+                .then(() -> movieInfos.tryEmitNext(movieInfo(4)))
+                .expectNoEvent(Duration.ofMillis(300))
+                //then : nothing lost once the client reads again
+                .thenRequest(3)
+                .expectNextCount(3)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void retrieveMoviesStream_enriched_backpressure() {
+
+        var requested = new AtomicLong();
+        when(moviesInfoRestClient.retrieveMovieInfoStream())
+                .thenReturn(Flux.range(1, 1000)
+                        .map(i -> new MovieInfo(String.valueOf(i), "Movie " + i, 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15")))
+                        .doOnRequest(n -> requested.addAndGet(n)));
+
+        when(reviewsRestClient.retrieveReviews(anyList()))
+                .thenReturn(Flux.empty());
+
+        //when
+        StepVerifier.create(moviesController.retrieveMoviesStream(), 0)
+                .thenRequest(1)
+                .expectNextCount(1)
+                .thenCancel()
+                .verify();
+
+        //then : batchSize (2) * concurrency (2) movie infos, not the whole stream
+        assertTrue(requested.get() <= 4, "requested : " + requested.get());
+    }
+
+    private static MovieInfo movieInfo(int i) {
+        return new MovieInfo(String.valueOf(i), "Movie " + i, 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+    }
+
+    @Test
+    void retrieveMovieById_reviewsCircuitOpen() {
+
+        var movieId = "abc";
+        when(moviesInfoRestClient.retrieveMovieInfo(anyString()))
+                .thenReturn(Mono.just(new MovieInfo(movieId, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"))));
+
+        when(reviewsRestClient.retrieveReviews(anyString()))
+                .thenReturn(Flux.error(CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults("reviews"))));
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                            var movie = movieEntityExchangeResult.getResponseBody();
+                            assertTrue(Objects.requireNonNull(movie).isDegraded());
+                            assertTrue(movie.getReviewList().isEmpty());
+                            assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                        }
+                );
+    }
+
+    @Test
+    void retrieveMovieSummaryById() {
+
+        var movieId = "abc";
+        when(moviesInfoRestClient.retrieveMovieInfo(anyString()))
+                .thenReturn(Mono.just(new MovieInfo(movieId, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"))));
+
+        when(reviewsRestClient.retrieveReviewStats(movieId))
+                .thenReturn(Mono.just(new ReviewStats(1L, 120, 100, 8.5, Map.of("8", 50L, "9", 50L))));
+        when(reviewsRestClient.retrieveLatestReviews(movieId, 5))
+                .thenReturn(Flux.just(new Review("r2", 1L, "Excellent Movie", 8.0), new Review("r1", 1L, "Awesome Movie", 9.0)));
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?view=summary", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieSummary.class)
+                .consumeWith(movieSummaryEntityExchangeResult -> {
+                            var summary = Objects.requireNonNull(movieSummaryEntityExchangeResult.getResponseBody());
+                            assertEquals("Batman Begins", summary.getMovieInfo().getName());
+                            assertEquals(120, summary.getReviewStats().getCount());
+                            assertEquals(8.5, summary.getReviewStats().getAverage());
+                            assertEquals(List.of("r2", "r1"), summary.getLatestReviews().stream()
+                                    .map(Review::getReviewId)
+                                    .collect(Collectors.toList()));
+                            assertFalse(summary.isDegraded());
+                        }
+                );
+        //then
+        verify(reviewsRestClient, never()).retrieveReviews(anyString());
+    }
+
+    @Test
+    void retrieveMovieSummaryById_reviewsCircuitOpen() {
+
+        var movieId = "abc";
+        when(moviesInfoRestClient.retrieveMovieInfo(anyString()))
+                .thenReturn(Mono.just(new MovieInfo(movieId, "Batman Begins",
+                        2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"))));
+
+        var circuitOpen = CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults("reviews"));
+        when(reviewsRestClient.retrieveReviewStats(movieId)).thenReturn(Mono.error(circuitOpen));
+        when(reviewsRestClient.retrieveLatestReviews(movieId, 5)).thenReturn(Flux.error(circuitOpen));
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}?view=summary", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(MovieSummary.class)
+                .consumeWith(movieSummaryEntityExchangeResult -> {
+                            var summary = Objects.requireNonNull(movieSummaryEntityExchangeResult.getResponseBody());
+                            assertTrue(summary.isDegraded());
+                            assertNull(summary.getReviewStats());
+                            assertTrue(summary.getLatestReviews().isEmpty());
+                            assertEquals("Batman Begins", summary.getMovieInfo().getName());
+                        }
+                );
+    }
+
     @Test
     void retrieveMovieById_404() {
 
@@ -96,6 +349,29 @@ public class MoviesControllerUnitTest {
                 );
     }
 
+    @Test
+    void retrieveMovieById_404_cancelsReviews() {
+
+        var reviewsCancelled = new AtomicBoolean(false);
+
+        when(moviesInfoRestClient.retrieveMovieInfo(anyString()))
+                .thenReturn(Mono.error(new MoviesInfoClientException("MovieNotFound", 404)));
+
+        when(reviewsRestClient.retrieveReviews(anyString()))
+                .thenReturn(Flux.just(new Review(null, 1L, "Awesome Movie", 9.0))
+                        .delayElements(Duration.ofSeconds(5))
+                        .doOnCancel(() -> reviewsCancelled.set(true)));
+
+        //when
+        webTestClient.get()
+                .uri("/v1/movies/{id}", "abc")
+                .exchange()
+                .expectStatus().isNotFound();
+
+        //then
+        assertTrue(reviewsCancelled.get());
+    }
+
     @Test
     void retrieveMovieById_500() {
 
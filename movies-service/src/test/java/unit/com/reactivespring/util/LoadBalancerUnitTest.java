@@ -0,0 +1,140 @@
+package com.reactivespring.util;
+
+import com.reactivespring.config.LoadBalancerProperties;
+import com.reactivespring.config.LoadBalancingStrategy;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class LoadBalancerUnitTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void leastOutstanding_picksTheLeastLoadedInstance() {
+        //given
+        var loadBalancer = loadBalancer(policy(LoadBalancingStrategy.LEAST_OUTSTANDING, Duration.ofSeconds(30)), "a", "b", "c");
+        var instances = loadBalancer.instances();
+        instances.get(0).outstanding.set(3);
+        instances.get(1).outstanding.set(1);
+        instances.get(2).outstanding.set(2);
+
+        //when
+        var chosen = IntStream.range(0, 20)
+                .mapToObj(i -> loadBalancer.choose().url)
+                .distinct()
+                .toArray();
+
+        //then
+        assertEquals(List.of("b"), List.of(chosen));
+    }
+
+    @Test
+    void powerOfTwoChoices_neverPicksTheMostLoadedInstance() {
+        //given
+        var loadBalancer = loadBalancer(policy(LoadBalancingStrategy.POWER_OF_TWO_CHOICES, Duration.ofSeconds(30)), "a", "b", "c");
+        loadBalancer.instances().get(0).outstanding.set(10);
+
+        //when
+        var chosen = IntStream.range(0, 100)
+                .mapToObj(i -> loadBalancer.choose().url)
+                .filter("a"::equals)
+                .count();
+
+        //then
+        assertEquals(0, chosen);
+    }
+
+    @Test
+    void ejectsAfterConsecutiveFailures_andReadmitsAfterEjectionTime() throws InterruptedException {
+        //given
+        var loadBalancer = loadBalancer(policy(LoadBalancingStrategy.LEAST_OUTSTANDING, Duration.ofMillis(200)), "a", "b");
+
+        //when
+        forceFailures(loadBalancer, "a", 3);
+
+        //then
+        assertEquals(1.0, meterRegistry.get("movies.client.loadbalancer.ejections").tag("instance", "a").counter().count());
+        IntStream.range(0, 20).forEach(i -> assertNotEquals("a", loadBalancer.choose().url));
+
+        Thread.sleep(300);
+        loadBalancer.instances().get(0).outstanding.set(-1);
+        assertEquals("a", loadBalancer.choose().url);
+    }
+
+    @Test
+    void clientErrorsDoNotEject() {
+        //given
+        var loadBalancer = loadBalancer(policy(LoadBalancingStrategy.LEAST_OUTSTANDING, Duration.ofSeconds(30)), "a", "b");
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            StepVerifier.create(loadBalancer.mono(url -> Mono.error(new MoviesInfoClientException("Not Found", 404))))
+                    .expectError(MoviesInfoClientException.class)
+                    .verify();
+        }
+
+        //then
+        assertEquals(0.0, meterRegistry.get("movies.client.loadbalancer.ejections").tag("instance", "a").counter().count());
+        assertEquals(0.0, meterRegistry.get("movies.client.loadbalancer.ejections").tag("instance", "b").counter().count());
+    }
+
+    @Test
+    void neverEjectsMoreThanMaxEjectionPercent() {
+        //given
+        var loadBalancer = loadBalancer(policy(LoadBalancingStrategy.LEAST_OUTSTANDING, Duration.ofSeconds(30)), "a", "b");
+
+        //when
+        forceFailures(loadBalancer, "a", 3);
+        forceFailures(loadBalancer, "b", 3);
+
+        //then
+        var ejections = meterRegistry.get("movies.client.loadbalancer.ejections").counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+        assertEquals(1.0, ejections);
+    }
+
+    private void forceFailures(LoadBalancer loadBalancer, String url, int failures) {
+        var instance = loadBalancer.instances().stream()
+                .filter(candidate -> candidate.url.equals(url))
+                .findFirst()
+                .orElseThrow();
+        for (int i = 0; i < failures; i++) {
+            // keeps the target instance the least loaded one, so LEAST_OUTSTANDING routes the call to it
+            instance.outstanding.set(-10);
+            StepVerifier.create(loadBalancer.mono(chosen -> failingCall(chosen, url)))
+                    .expectError()
+                    .verify();
+        }
+        instance.outstanding.set(0);
+    }
+
+    private Mono<String> failingCall(String chosen, String failingUrl) {
+        return chosen.equals(failingUrl)
+                ? Mono.error(new MoviesInfoServerException("Service Unavailable"))
+                : Mono.just(chosen);
+    }
+
+    private LoadBalancer loadBalancer(LoadBalancerProperties.Policy policy, String... urls) {
+        return new LoadBalancer("test", List.of(urls), policy, ex -> ex instanceof MoviesInfoServerException, meterRegistry);
+    }
+
+    private static LoadBalancerProperties.Policy policy(LoadBalancingStrategy strategy, Duration baseEjectionTime) {
+        var policy = new LoadBalancerProperties.Policy();
+        policy.setStrategy(strategy);
+        policy.setFailureThreshold(3);
+        policy.setBaseEjectionTime(baseEjectionTime);
+        return policy;
+    }
+}
@@ -0,0 +1,107 @@
+package com.reactivespring.util;
+
+import com.reactivespring.config.RetryProperties;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RetryUtilUnitTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void retriesServerErrorsWithBackoff() {
+        //given
+        var policy = policy(0, 10);
+        var attempts = new AtomicInteger();
+        var call = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.<String>error(new MoviesInfoServerException("Service Unavailable"));
+        });
+
+        //when
+        StepVerifier.create(call.retryWhen(RetryUtil.retrySpec(policy, budget(policy))))
+                .verifyErrorMessage("Service Unavailable");
+
+        //then
+        assertEquals(4, attempts.get());
+        assertEquals(3.0, meterRegistry.get("movies.client.retries").counter().count());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        //given
+        var policy = policy(0, 10);
+        var attempts = new AtomicInteger();
+        var call = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.<String>error(new MoviesInfoClientException("MovieNotFound", 404));
+        });
+
+        //when
+        StepVerifier.create(call.retryWhen(RetryUtil.retrySpec(policy, budget(policy))))
+                .verifyError(MoviesInfoClientException.class);
+
+        //then
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void budgetCapsRetries() {
+        //given : a single token and no deposits
+        var policy = policy(0, 1);
+        var retrySpec = RetryUtil.retrySpec(policy, budget(policy));
+        var attempts = new AtomicInteger();
+        var call = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.<String>error(new MoviesInfoServerException("Service Unavailable"));
+        });
+
+        //when
+        StepVerifier.create(call.retryWhen(retrySpec))
+                .verifyErrorMessage("Service Unavailable");
+        StepVerifier.create(call.retryWhen(retrySpec))
+                .verifyErrorMessage("Service Unavailable");
+
+        //then : one retry for the first call, none for the second
+        assertEquals(3, attempts.get());
+        assertEquals(1.0, meterRegistry.get("movies.client.retries").counter().count());
+        assertEquals(2.0, meterRegistry.get("movies.client.retry.budget.exhausted").counter().count());
+    }
+
+    @Test
+    void budgetIsRefilledByTraffic() {
+        //given : 50% budget, empty bucket after the first retry
+        var policy = policy(50, 1);
+        var budget = budget(policy);
+        budget.tryWithdraw();
+
+        //when
+        budget.deposit();
+        budget.deposit();
+
+        //then
+        assertEquals(1.0, budget.availableTokens());
+    }
+
+    private RetryProperties.Policy policy(double budgetPercent, long budgetMaxTokens) {
+        var policy = new RetryProperties.Policy();
+        policy.setMinBackoff(Duration.ofMillis(1));
+        policy.setMaxBackoff(Duration.ofMillis(5));
+        policy.setBudgetPercent(budgetPercent);
+        policy.setBudgetMaxTokens(budgetMaxTokens);
+        return policy;
+    }
+
+    private RetryBudget budget(RetryProperties.Policy policy) {
+        return new RetryBudget("test", policy.getBudgetPercent(), policy.getBudgetMaxTokens(), meterRegistry);
+    }
+}
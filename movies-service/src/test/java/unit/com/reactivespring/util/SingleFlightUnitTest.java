@@ -0,0 +1,126 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SingleFlightUnitTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight singleFlight = new SingleFlight("test", meterRegistry);
+
+    @Test
+    void concurrentCallsForSameKeyShareOneExecution() {
+        //given
+        var executions = new AtomicInteger();
+        var response = Sinks.<String>one();
+
+        //when
+        var first = singleFlight.mono("abc", () -> {
+            executions.incrementAndGet();
+            return response.asMono();
+        });
+        var second = singleFlight.mono("abc", () -> {
+            executions.incrementAndGet();
+            return response.asMono();
+        });
+
+        //then
+        StepVerifier.create(Flux.merge(first, second))
+                .then(() -> response.tryEmitValue("Batman Begins"))
+                .expectNext("Batman Begins", "Batman Begins")
+                .verifyComplete();
+        assertEquals(1, executions.get());
+        assertEquals(0.5, singleFlight.coalescingRatio());
+    }
+
+    @Test
+    void lateJoinerGetsTheWholeSequence() {
+        //given
+        var response = Sinks.many().unicast().<Integer>onBackpressureBuffer();
+        var first = singleFlight.flux("abc", response::asFlux);
+        var late = singleFlight.flux("abc", () -> Flux.just(-1));
+        var lateElements = new ArrayList<Integer>();
+
+        //when
+        StepVerifier.create(first)
+                .then(() -> response.tryEmitNext(0))
+                .expectNext(0)
+                // joins once 0 was emitted, the call is still in flight
+                .then(() -> late.subscribe(lateElements::add))
+                .then(() -> response.tryEmitNext(1))
+                .then(() -> response.tryEmitNext(2))
+                .then(response::tryEmitComplete)
+                .expectNext(1, 2)
+                .verifyComplete();
+
+        //then
+        assertEquals(List.of(0, 1, 2), lateElements);
+    }
+
+    @Test
+    void lateMonoJoinerGetsTheValue() {
+        //given
+        // a response whose completion comes after its value, as a body decoded in several chunks
+        var response = Sinks.many().unicast().<String>onBackpressureBuffer();
+        var first = singleFlight.mono("abc", () -> Mono.fromDirect(response.asFlux()));
+        var late = singleFlight.mono("abc", () -> Mono.just("other"));
+        var lateValue = new ArrayList<String>();
+
+        //when
+        StepVerifier.create(first.flux())
+                .then(() -> response.tryEmitNext("Batman Begins"))
+                // joins between the value and the completion
+                .then(() -> late.subscribe(lateValue::add))
+                .then(response::tryEmitComplete)
+                .expectNext("Batman Begins")
+                .verifyComplete();
+
+        //then
+        assertEquals(List.of("Batman Begins"), lateValue);
+    }
+
+    @Test
+    void keyIsDroppedOnceCallTerminates() {
+        //given
+        var executions = new AtomicInteger();
+
+        //when
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(singleFlight.mono("abc", () -> Mono.fromCallable(executions::incrementAndGet)))
+                    .expectNextCount(1)
+                    .verifyComplete();
+        }
+
+        //then
+        assertEquals(2, executions.get());
+        assertEquals(0.0, meterRegistry.get("movies.client.coalescing.inflight").gauge().value());
+    }
+
+    @Test
+    void errorsAreSharedAndKeyIsDropped() {
+        //given
+        var response = Sinks.<String>one();
+
+        //when
+        var first = singleFlight.mono("abc", response::asMono);
+        var second = singleFlight.mono("abc", response::asMono);
+
+        //then
+        StepVerifier.create(Flux.mergeDelayError(2, first, second))
+                .then(() -> response.tryEmitError(new RuntimeException("Service Unavailable")))
+                .verifyErrorSatisfies(ex -> Exceptions.unwrapMultiple(ex)
+                        .forEach(error -> assertEquals("Service Unavailable", error.getMessage())));
+        assertEquals(0.0, meterRegistry.get("movies.client.coalescing.inflight").gauge().value());
+    }
+}